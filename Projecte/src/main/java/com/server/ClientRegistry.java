@@ -1,6 +1,8 @@
 package com.server;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.Framedata;
+import org.json.JSONObject;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -76,6 +78,24 @@ public class ClientRegistry {
         return nameToSocket.get(name);
     }
 
+    /**
+     * Envia el mateix missatge a diversos jugadors: el text JSON i els frames
+     * es creen una sola vegada i es comparteixen entre tots els sockets.
+     */
+    public void sendToAll(JSONObject msg, String... names) {
+        List<Framedata> frames = null;
+        for (String name : names) {
+            WebSocket ws = socketByName(name);
+            if (ws == null) continue;
+            try {
+                if (frames == null) frames = ws.getDraft().createFrames(msg.toString(), false);
+                ws.sendFrame(frames);
+            } catch (Exception e) {
+                cleanupDisconnected(ws);
+            }
+        }
+    }
+
     /** Retorna una llista actualitzada de noms de clients connectats */
     public List<String> currentNames() {
         return new ArrayList<>(nameToSocket.keySet());
@@ -11,6 +11,8 @@ public class GameManager {
     private final ClientRegistry registry;
     private final Map<String,String> invitations = new ConcurrentHashMap<>();
     private final Map<String,GameSession> sessions = new ConcurrentHashMap<>();
+    // Jugador → id de su sesión, para no recorrer todas las sesiones en cada jugada
+    private final Map<String,String> sessionByPlayer = new ConcurrentHashMap<>();
 
     private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
 
@@ -50,6 +52,8 @@ public class GameManager {
         GameSession session = new GameSession(origin,acceptor);
         session.startCountdown(3);
         sessions.put(id,session);
+        sessionByPlayer.put(origin,id);
+        sessionByPlayer.put(acceptor,id);
         invitations.remove(origin);
 
         resp.put("ok",true).put("sessionId",id);
@@ -69,9 +73,14 @@ public class GameManager {
     }
 
     public String findSessionIdByPlayer(String playerName){
-        for(Map.Entry<String,GameSession> e:sessions.entrySet())
-            if(e.getValue().involves(playerName)) return e.getKey();
-        return null;
+        return sessionByPlayer.get(playerName);
+    }
+
+    private void removeSession(String id){
+        GameSession s = sessions.remove(id);
+        if(s==null) return;
+        sessionByPlayer.remove(s.getPlayerR(),id);
+        sessionByPlayer.remove(s.getPlayerY(),id);
     }
 
     private String sessionId(String a,String b){ return a.compareTo(b)<=0 ? a+"|"+b : b+"|"+a; }
@@ -102,15 +111,12 @@ public class GameManager {
                     removeKeys.add(e.getKey());
                 }
             }
-            removeKeys.forEach(sessions::remove);
+            removeKeys.forEach(this::removeSession);
         }catch(Exception ex){ ex.printStackTrace(); }
     }
 
     private void sendToBoth(GameSession s,JSONObject msg){
-        WebSocket wr = registry.socketByName(s.getPlayerR());
-        WebSocket wy = registry.socketByName(s.getPlayerY());
-        if(wr!=null) try{ wr.send(msg.toString()); } catch(Exception e){ registry.cleanupDisconnected(wr); }
-        if(wy!=null) try{ wy.send(msg.toString()); } catch(Exception e){ registry.cleanupDisconnected(wy); }
+        registry.sendToAll(msg,s.getPlayerR(),s.getPlayerY());
     }
 
     private void sendGameResult(GameSession s){
@@ -142,23 +148,20 @@ public class GameManager {
 
     public void handleDisconnect(String name){
         invitations.entrySet().removeIf(e->e.getKey().equals(name)||e.getValue().equals(name));
-        List<String> toRemove = new ArrayList<>();
-        for(Map.Entry<String,GameSession> e:sessions.entrySet()){
-            GameSession s = e.getValue();
-            if(s.involves(name)){
-                String other = s.getPlayerR().equals(name)?s.getPlayerY():s.getPlayerR();
-                WebSocket wsOther = registry.socketByName(other);
-                if(wsOther!=null){
-                    JSONObject msg = new JSONObject();
-                    msg.put("type","opponentDisconnected");
-                    msg.put("name",name);
-                    try{ wsOther.send(msg.toString()); } catch(Exception ex){ registry.cleanupDisconnected(wsOther); }
-                }
-                s.finish();
-                toRemove.add(e.getKey());
+        String id = sessionByPlayer.get(name);
+        GameSession s = id!=null ? sessions.get(id) : null;
+        if(s!=null){
+            String other = s.getPlayerR().equals(name)?s.getPlayerY():s.getPlayerR();
+            WebSocket wsOther = registry.socketByName(other);
+            if(wsOther!=null){
+                JSONObject msg = new JSONObject();
+                msg.put("type","opponentDisconnected");
+                msg.put("name",name);
+                try{ wsOther.send(msg.toString()); } catch(Exception ex){ registry.cleanupDisconnected(wsOther); }
             }
+            s.finish();
+            removeSession(id);
         }
-        toRemove.forEach(sessions::remove);
     }
 
     public JSONObject debug(){
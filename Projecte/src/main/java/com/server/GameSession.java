@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.shared.Bitboard;
 import com.shared.GameObject;
 
 public class GameSession {
@@ -17,13 +18,14 @@ public class GameSession {
     private final String playerR;
     private final String playerY;
 
-    private final char[][] board = new char[6][7];
+    private final Bitboard board = new Bitboard();
 
     private volatile String turn;
     private volatile Status status = Status.WAITING;
     private volatile String winner = "";
     private volatile int lastMoveCol = -1;
     private volatile int lastMoveRow = -1;
+    private int[] winLine = new int[0];
 
     private final AtomicInteger countdownSeconds = new AtomicInteger(0);
 
@@ -50,7 +52,8 @@ public class GameSession {
     }
 
     private void clearBoard() {
-        for (int r = 0; r < 6; r++) for (int c = 0; c < 7; c++) board[r][c] = ' ';
+        board.reset();
+        winLine = new int[0];
     }
 
     public String getPlayerR() { return playerR; }
@@ -81,18 +84,18 @@ public class GameSession {
         if (!playerName.equals(turn)) { resp.put("reason", "Not your turn"); return resp; }
         if (column < 0 || column > 6) { resp.put("reason", "Invalid column"); return resp; }
 
-        int row = dropRow(column);
+        // El torn el porta el motor: R sempre juga les jugades parells
+        int row = board.play(column);
         if (row == -1) { resp.put("reason", "Column full"); return resp; }
 
-        char piece = playerName.equals(playerR) ? 'R' : 'Y';
-        board[row][column] = piece;
         lastMoveCol = column;
         lastMoveRow = row;
 
-        if (checkWin(row, column, piece)) {
+        if (board.lastMoveWon()) {
             status = Status.WIN;
             winner = playerName;
-        } else if (isBoardFull()) {
+            winLine = board.winningCells(1 - board.currentPlayer());
+        } else if (board.isDraw()) {
             status = Status.DRAW;
             winner = "";
         } else {
@@ -103,32 +106,14 @@ public class GameSession {
         resp.put("lastMove", new JSONObject().put("col", column).put("row", row));
         resp.put("status", status.name());
         resp.put("winner", winner);
+        if (winLine.length > 0) resp.put("winLine", winLineJSON());
         return resp;
     }
 
-    private int dropRow(int col) {
-        for (int r = 5; r >= 0; r--) if (board[r][col] == ' ') return r;
-        return -1;
-    }
-
-    private boolean isBoardFull() {
-        for (int c = 0; c < 7; c++) if (board[0][c] == ' ') return false;
-        return true;
-    }
-
-    private boolean checkWin(int row, int col, char piece) {
-        int[][] dirs = {{0,1},{1,0},{1,1},{1,-1}};
-        for (int[] d : dirs) {
-            int count = 1 + countDirection(row,col,d[0],d[1],piece) + countDirection(row,col,-d[0],-d[1],piece);
-            if (count >= 4) return true;
-        }
-        return false;
-    }
-
-    private int countDirection(int r,int c,int dr,int dc,char piece) {
-        int rr=r+dr,cc=c+dc,cnt=0;
-        while(rr>=0 && rr<6 && cc>=0 && cc<7 && board[rr][cc]==piece){cnt++; rr+=dr; cc+=dc;}
-        return cnt;
+    private JSONArray winLineJSON() {
+        JSONArray arr = new JSONArray();
+        for (int cell : winLine) arr.put(new JSONObject().put("col", Bitboard.cellCol(cell)).put("row", Bitboard.cellRow(cell)));
+        return arr;
     }
 
     public void updateMouse(String player, double x, double y) {
@@ -160,7 +145,7 @@ public class GameSession {
         JSONArray boardArr = new JSONArray();
         for(int r=0;r<6;r++){
             JSONArray row = new JSONArray();
-            for(int c=0;c<7;c++) row.put(Character.toString(board[r][c]));
+            for(int c=0;c<7;c++) row.put(Character.toString(board.cellAt(r,c)));
             boardArr.put(row);
         }
         game.put("board",boardArr);
@@ -169,6 +154,7 @@ public class GameSession {
         else game.put("lastMove", JSONObject.NULL);
 
         game.put("winner",winner==null?"":winner);
+        if(winLine.length>0) game.put("winLine", winLineJSON());
 
         res.put("game",game);
         return res;
@@ -180,11 +166,7 @@ public class GameSession {
     }
 
     public void broadcastState(ClientRegistry registry){
-        JSONObject msg = toServerData();
-        WebSocket wr = registry.socketByName(playerR);
-        WebSocket wy = registry.socketByName(playerY);
-        if(wr!=null) try{ wr.send(msg.toString()); } catch(Exception e){ registry.cleanupDisconnected(wr); }
-        if(wy!=null) try{ wy.send(msg.toString()); } catch(Exception e){ registry.cleanupDisconnected(wy); }
+        registry.sendToAll(toServerData(),playerR,playerY);
     }
 
     public void finish(){ setStatus(Status.FINISHED); }
@@ -0,0 +1,186 @@
+package com.shared;
+
+/**
+ * Motor de Conecta 4 basado en bitboards.
+ *
+ * Cada columna ocupa 7 bits (6 filas + 1 bit centinela), así que el tablero
+ * cabe en un long por color. El bit de la casilla (fila, columna) es
+ * columna * 7 + filaDesdeAbajo. Tirar, deshacer, detectar victoria y empate
+ * son O(1) y no reservan memoria.
+ *
+ * Las filas que reciben y devuelven los métodos públicos siguen el convenio de
+ * GameData.board: la fila 0 es la de ARRIBA.
+ */
+public final class Bitboard {
+
+    public static final int ROWS = 6;
+    public static final int COLS = 7;
+    public static final int CELLS = ROWS * COLS;
+
+    // Altura de una columna dentro del long (incluye el bit centinela)
+    public static final int H1 = ROWS + 1;
+
+    public static final int RED = 0;
+    public static final int YELLOW = 1;
+
+    // Bit inferior de cada columna
+    public static final long BOTTOM_MASK = bottomMask();
+    // Todas las casillas jugables (sin centinelas)
+    public static final long BOARD_MASK = BOTTOM_MASK * ((1L << ROWS) - 1);
+
+    // Desplazamientos: vertical, horizontal, diagonal / y diagonal \
+    private static final int[] DIRECTIONS = {1, H1, H1 - 1, H1 + 1};
+
+    private final long[] pieces = new long[2];
+    private final byte[] heights = new byte[COLS];
+    private final byte[] moves = new byte[CELLS];
+    private int moveCount;
+
+    public Bitboard() {}
+
+    public Bitboard(Bitboard other) {
+        copyFrom(other);
+    }
+
+    public void copyFrom(Bitboard other) {
+        pieces[RED] = other.pieces[RED];
+        pieces[YELLOW] = other.pieces[YELLOW];
+        System.arraycopy(other.heights, 0, heights, 0, COLS);
+        System.arraycopy(other.moves, 0, moves, 0, other.moveCount);
+        moveCount = other.moveCount;
+    }
+
+    public void reset() {
+        pieces[RED] = 0;
+        pieces[YELLOW] = 0;
+        for (int c = 0; c < COLS; c++) heights[c] = 0;
+        moveCount = 0;
+    }
+
+    // ===== MOVIMIENTOS =====
+
+    public boolean canPlay(int col) {
+        return col >= 0 && col < COLS && heights[col] < ROWS;
+    }
+
+    /**
+     * Deja caer una ficha del jugador al que le toca en la columna.
+     * @return la fila (0 = arriba) donde ha quedado, o -1 si la columna no es válida o está llena
+     */
+    public int play(int col) {
+        if (!canPlay(col)) return -1;
+        int h = heights[col];
+        pieces[moveCount & 1] |= 1L << (col * H1 + h);
+        heights[col] = (byte) (h + 1);
+        moves[moveCount++] = (byte) col;
+        return ROWS - 1 - h;
+    }
+
+    /** Deshace la última jugada. @return la columna deshecha, o -1 si no había jugadas */
+    public int undo() {
+        if (moveCount == 0) return -1;
+        int col = moves[--moveCount];
+        int h = heights[col] - 1;
+        pieces[moveCount & 1] &= ~(1L << (col * H1 + h));
+        heights[col] = (byte) h;
+        return col;
+    }
+
+    // ===== ESTADO =====
+
+    /** Jugador al que le toca (RED o YELLOW) */
+    public int currentPlayer() { return moveCount & 1; }
+
+    public int getMoveCount() { return moveCount; }
+
+    public int getHeight(int col) { return heights[col]; }
+
+    public long getPieces(int player) { return pieces[player]; }
+
+    public long getMask() { return pieces[RED] | pieces[YELLOW]; }
+
+    public int getMove(int index) { return moves[index]; }
+
+    public boolean isFull() { return moveCount == CELLS; }
+
+    public boolean isWin(int player) { return hasFour(pieces[player]); }
+
+    /** Comprueba si la última jugada ha ganado la partida */
+    public boolean lastMoveWon() {
+        return moveCount > 0 && hasFour(pieces[(moveCount - 1) & 1]);
+    }
+
+    /** Empate: tablero lleno y la última ficha no ha hecho cuatro en raya */
+    public boolean isDraw() {
+        return isFull() && !lastMoveWon();
+    }
+
+    /**
+     * Contenido de una casilla con el convenio del tablero de texto.
+     * @return 'R', 'Y' o ' '
+     */
+    public char cellAt(int row, int col) {
+        long bit = 1L << (col * H1 + (ROWS - 1 - row));
+        if ((pieces[RED] & bit) != 0) return 'R';
+        if ((pieces[YELLOW] & bit) != 0) return 'Y';
+        return ' ';
+    }
+
+    // ===== DETECCIÓN DE CUATRO EN RAYA =====
+
+    /** Shift-and-mask en las cuatro direcciones: vertical, horizontal y las dos diagonales */
+    public static boolean hasFour(long bb) {
+        long m = bb & (bb >>> 1);
+        if ((m & (m >>> 2)) != 0) return true;
+        m = bb & (bb >>> H1);
+        if ((m & (m >>> 2 * H1)) != 0) return true;
+        m = bb & (bb >>> (H1 - 1));
+        if ((m & (m >>> 2 * (H1 - 1))) != 0) return true;
+        m = bb & (bb >>> (H1 + 1));
+        return (m & (m >>> 2 * (H1 + 1))) != 0;
+    }
+
+    /**
+     * Bits de las cuatro casillas de una línea ganadora del jugador, o 0 si no hay.
+     * Si hay más de una línea devuelve la primera que encuentra.
+     */
+    public long winningLine(int player) {
+        long bb = pieces[player];
+        for (int d : DIRECTIONS) {
+            long m = bb & (bb >>> d);
+            m &= m >>> (2 * d);
+            if (m != 0) {
+                long start = Long.lowestOneBit(m);
+                return start | (start << d) | (start << 2 * d) | (start << 3 * d);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Casillas de la línea ganadora codificadas con cell(fila, columna),
+     * ordenadas de un extremo al otro. Array vacío si el jugador no ha ganado.
+     */
+    public int[] winningCells(int player) {
+        long line = winningLine(player);
+        int[] cells = new int[Long.bitCount(line)];
+        for (int i = 0; line != 0; i++) {
+            int bit = Long.numberOfTrailingZeros(line);
+            cells[i] = cell(ROWS - 1 - bit % H1, bit / H1);
+            line &= line - 1;
+        }
+        return cells;
+    }
+
+    public static int cell(int row, int col) { return row * COLS + col; }
+
+    public static int cellRow(int cell) { return cell / COLS; }
+
+    public static int cellCol(int cell) { return cell % COLS; }
+
+    private static long bottomMask() {
+        long mask = 0;
+        for (int c = 0; c < COLS; c++) mask |= 1L << (c * H1);
+        return mask;
+    }
+}
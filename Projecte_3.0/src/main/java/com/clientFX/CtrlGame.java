@@ -366,7 +366,7 @@ public class CtrlGame implements Initializable {
                 msg.put("x", x);
                 msg.put("y", y);
                 msg.put("pieceColor", color);
-                Main.wsClient.safeSend(msg.toString());
+                Main.wsClient.safeSend(msg);
             } catch (Exception e) {
                 System.err.println("Error sending drag info: " + e.getMessage());
             }
@@ -556,6 +556,11 @@ public class CtrlGame implements Initializable {
                         activeAnimations.stream().filter(anim -> anim.isActive).count());
     }
 
+    public void updateOpponentCursor(double x, double y) {
+        opponentMouseX = x;
+        opponentMouseY = y;
+    }
+
     public void updateOpponentDragInfo(boolean dragging, double x, double y, String color) {
         System.out.println("🎯 ACTUALIZANDO DRAG OPONENTE: " + 
                           dragging + " at (" + x + "," + y + ") color=" + color);
@@ -762,7 +767,30 @@ public class CtrlGame implements Initializable {
     }
 
     private void drawWinLine(GameState gameState) {
-        // Para implementación futura
+        if (gameState == null || gameState.getGame() == null) return;
+        
+        // El servidor ya envía las 4 casillas ganadoras, no hace falta recorrer el tablero
+        List<Move> winLine = gameState.getGame().getWinLine();
+        if (winLine == null || winLine.size() < 2) return;
+        
+        Move first = winLine.get(0);
+        Move last = winLine.get(winLine.size() - 1);
+        double x1 = first.getCol() * CELL_SIZE + BOARD_OFFSET_X + CELL_SIZE / 2;
+        double y1 = first.getRow() * CELL_SIZE + BOARD_OFFSET_Y + CELL_SIZE / 2;
+        double x2 = last.getCol() * CELL_SIZE + BOARD_OFFSET_X + CELL_SIZE / 2;
+        double y2 = last.getRow() * CELL_SIZE + BOARD_OFFSET_Y + CELL_SIZE / 2;
+        
+        gc.setStroke(Color.LIMEGREEN);
+        gc.setLineWidth(8);
+        gc.strokeLine(x1, y1, x2, y2);
+        
+        double radius = (CELL_SIZE - 4) / 2;
+        gc.setLineWidth(4);
+        for (Move cell : winLine) {
+            double cx = cell.getCol() * CELL_SIZE + BOARD_OFFSET_X + CELL_SIZE / 2;
+            double cy = cell.getRow() * CELL_SIZE + BOARD_OFFSET_Y + CELL_SIZE / 2;
+            gc.strokeOval(cx - radius, cy - radius, radius * 2, radius * 2);
+        }
     }
 
     // ===== MÉTODOS AUXILIARES =====
@@ -7,6 +7,8 @@ import javafx.scene.control.Label;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
 import java.net.URL;
 import java.util.ResourceBundle;
 import com.shared.GameState;
@@ -20,6 +22,28 @@ public class CtrlOpponentSelection implements Initializable {
     
     @FXML
     private Label lblStatus;
+    
+    @FXML
+    private ChoiceBox<String> choiceBotDifficulty;
+    
+    @FXML
+    private ChoiceBox<String> choiceBotEngine;
+    
+    @FXML
+    private Button btnPlayBot;
+    
+    // Nivel que ve el usuario -> nivel que entiende el servidor (BotDifficulty)
+    private static final String[][] BOT_LEVELS = {
+        {"Fácil", "EASY"},
+        {"Normal", "MEDIUM"},
+        {"Difícil", "HARD"}
+    };
+    
+    // Motor que ve el usuario -> motor que entiende el servidor (BotEngine)
+    private static final String[][] BOT_ENGINES = {
+        {"Alfa-beta", "alphabeta"},
+        {"MCTS", "mcts"}
+    };
 
     @Override
     public void initialize(URL url, ResourceBundle rb) {
@@ -33,10 +57,55 @@ public class CtrlOpponentSelection implements Initializable {
             }
         });
         
+        // Niveles del bot
+        for (String[] level : BOT_LEVELS) {
+            choiceBotDifficulty.getItems().add(level[0]);
+        }
+        choiceBotDifficulty.setValue(BOT_LEVELS[1][0]);
+        for (String[] engine : BOT_ENGINES) {
+            choiceBotEngine.getItems().add(engine[0]);
+        }
+        choiceBotEngine.setValue(BOT_ENGINES[0][0]);
+        
         // Inicializar estado
         lblStatus.setText("Conectando al servidor...");
     }
     
+    @FXML
+    private void playAgainstBot() {
+        String difficulty = BOT_LEVELS[1][1];
+        for (String[] level : BOT_LEVELS) {
+            if (level[0].equals(choiceBotDifficulty.getValue())) {
+                difficulty = level[1];
+            }
+        }
+        String engine = BOT_ENGINES[0][1];
+        for (String[] option : BOT_ENGINES) {
+            if (option[0].equals(choiceBotEngine.getValue())) {
+                engine = option[1];
+            }
+        }
+        
+        try {
+            JSONObject msg = new JSONObject();
+            msg.put("type", "clientPlayBot");
+            msg.put("difficulty", difficulty);
+            msg.put("engine", engine);
+            Main.wsClient.safeSend(msg);
+            
+            System.out.println("Partida contra el bot solicitada (" + difficulty + ", " + engine + ")");
+            UtilsViews.setViewAnimating("ViewWaitingRoom");
+            
+            CtrlWaitingRoom waitingCtrl = (CtrlWaitingRoom) UtilsViews.getController("ViewWaitingRoom");
+            if (waitingCtrl != null) {
+                waitingCtrl.updateStatus("Preparando partida contra el bot...");
+            }
+        } catch (Exception e) {
+            System.err.println("Error solicitando partida contra el bot: " + e.getMessage());
+            lblStatus.setText("Error al crear la partida contra el bot");
+        }
+    }
+    
     public void updatePlayersList(GameState gameState) {
         System.out.println("Actualizando lista de jugadores...");
         
@@ -58,8 +127,8 @@ public class CtrlOpponentSelection implements Initializable {
         for (ClientInfo client : gameState.getClientsList()) {
             String clientName = client.getName();
             
-            // Solo mostrar jugadores que no sean yo mismo
-            if (clientName != null && !clientName.equals(Main.playerName)) {
+            // Solo mostrar jugadores que no sean yo mismo ni estén ya en una partida
+            if (clientName != null && !clientName.equals(Main.playerName) && !client.isBusy()) {
                 listPlayers.getItems().add(clientName);
                 availablePlayers++;
                 System.out.println("Añadido jugador: " + clientName);
@@ -83,7 +152,7 @@ public class CtrlOpponentSelection implements Initializable {
             invitation.put("type", "clientInvite");
             invitation.put("opponent", opponentName);
             
-            Main.wsClient.safeSend(invitation.toString());
+            Main.wsClient.safeSend(invitation);
             
             // Marcar invitación pendiente
             Main.invitationPending = true;
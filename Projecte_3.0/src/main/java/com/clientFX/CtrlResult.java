@@ -56,7 +56,7 @@ public class CtrlResult implements Initializable {
             JSONObject backToLobbyMsg = new JSONObject();
             backToLobbyMsg.put("type", "clientBackToLobby");
             if (Main.wsClient != null) {
-                Main.wsClient.safeSend(backToLobbyMsg.toString());
+                Main.wsClient.safeSend(backToLobbyMsg);
             }
             
             // Cambiar a la vista de selección de oponentes
@@ -79,10 +79,11 @@ public class CtrlResult implements Initializable {
             JSONObject exitMsg = new JSONObject();
             exitMsg.put("type", "clientExit");
             if (Main.wsClient != null) {
-                Main.wsClient.safeSend(exitMsg.toString());
+                Main.wsClient.safeSend(exitMsg);
             }
             
-            // Cerrar la conexión WebSocket
+            // Cerrar la conexión WebSocket (sin intentar retomar la sesión)
+            Main.forgetSession();
             if (Main.wsClient != null) {
                 Main.wsClient.forceExit();
             }
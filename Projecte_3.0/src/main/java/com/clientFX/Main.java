@@ -6,12 +6,16 @@ import javafx.stage.Stage;
 import javafx.scene.Scene;
 import org.json.JSONObject;
 import org.json.JSONArray;
+import com.shared.Bitboard;
 import com.shared.GameState;
 import com.shared.ClientInfo;
 import com.shared.GameObject;
 import com.shared.GameData;
 import com.shared.Move;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Main extends Application {
 
     public static String playerName = "";
@@ -19,6 +23,14 @@ public class Main extends Application {
     public static boolean readyToPlay = false;
     public static UtilsWS wsClient = null;
     public static GameState currentGameState = null;
+    // Número del último serverData/serverPatch aplicado (-1: estado sin numerar, p. ej. el lobby)
+    private static long currentSeq = -1;
+    // Versión del lobby de currentGameState (-1: no estamos en el lobby)
+    private static long lobbyVersion = -1;
+    // Token del servidor para retomar la sesión si se corta la conexión (null: aún no conectados)
+    private static String resumeToken = null;
+    private static int resumeGraceMs = 0;  // Lo que el servidor guarda la sesión tras un corte
+    private static long droppedAt = 0;     // Cuándo se cortó la conexión (0: conectados)
     public static String myRole = "";
     public static boolean invitationPending = false;
     public static String pendingOpponent = "";
@@ -66,12 +78,7 @@ public class Main extends Application {
             
             wsClient.onOpen((message) -> {
                 System.out.println("Connected to server");
-                // Enviar mensaje de conexión con nombre de jugador
-                JSONObject connectMsg = new JSONObject();
-                connectMsg.put("type", "clientConnect");
-                connectMsg.put("playerName", playerName);
-                wsClient.safeSend(connectMsg.toString());
-                
+                sendClientConnect();
                 System.out.println("Conectado al servidor, esperando lista de jugadores...");
             });
             
@@ -82,14 +89,23 @@ public class Main extends Application {
             
             wsClient.onClose((message) -> {
                 System.out.println("Disconnected: " + message);
-                // Volver a configuración si fue desconexión inesperada
-                if (connectedByUser) {
-                    Platform.runLater(() -> {
-                        ((CtrlConfig)UtilsViews.getController("ViewConfig"))
-                            .showMessage("Desconectado del servidor", javafx.scene.paint.Color.RED);
-                        UtilsViews.setView("ViewConfig");
-                    });
+                if (resumeToken != null && wsClient.isReconnectPending()) {
+                    // Mientras el servidor guarde la sesión, UtilsWS reconecta y con el token
+                    // se vuelve a la misma pantalla (y partida)
+                    long now = System.currentTimeMillis();
+                    if (droppedAt == 0) {
+                        droppedAt = now;
+                        long dropped = droppedAt;
+                        pauseDuring(resumeGraceMs, () -> {
+                            if (droppedAt == dropped) showDisconnected(); // No ha vuelto a tiempo
+                        });
+                    }
+                    if (now - droppedAt < resumeGraceMs) {
+                        System.out.println("🔄 Conexión perdida, reconectando para retomar la sesión...");
+                        return;
+                    }
                 }
+                showDisconnected();
             });
             
             wsClient.onError((message) -> {
@@ -100,6 +116,11 @@ public class Main extends Application {
                 });
             });
             
+            // Misma URL que el intento anterior (p. ej. el nombre estaba en uso): la conexión ya está abierta
+            if (wsClient.isOpen()) {
+                sendClientConnect();
+            }
+            
         } catch (Exception e) {
             e.printStackTrace();
             Platform.runLater(() -> {
@@ -109,10 +130,48 @@ public class Main extends Application {
         }
     }
     
-    private static void handleServerMessage(String message) {
+    // La sesión ya no se puede retomar: volver a configuración si fue desconexión inesperada
+    private static void showDisconnected() {
+        forgetSession();
+        if (connectedByUser) {
+            Platform.runLater(() -> {
+                ((CtrlConfig)UtilsViews.getController("ViewConfig"))
+                    .showMessage("Desconectado del servidor", javafx.scene.paint.Color.RED);
+                UtilsViews.setView("ViewConfig");
+            });
+        }
+    }
+    
+    // Al salir o al dar la sesión por perdida: la próxima conexión empieza de cero
+    public static void forgetSession() {
+        resumeToken = null;
+        droppedAt = 0;
+    }
+    
+    // Enviar mensaje de conexión con nombre de jugador (y, al reconectar, con qué retomar la sesión)
+    private static void sendClientConnect() {
+        JSONObject connectMsg = new JSONObject();
+        connectMsg.put("type", "clientConnect");
+        connectMsg.put("playerName", playerName);
+        if (resumeToken != null) {
+            connectMsg.put("resumeToken", resumeToken);
+            connectMsg.put("lastSeq", currentSeq);
+        }
+        wsClient.safeSend(connectMsg);
+    }
+    
+    // El servidor acepta el nombre: guarda el token para volver si se corta
+    private static void handleWelcome(JSONObject welcome) {
+        resumeToken = welcome.optString("resumeToken", null);
+        resumeGraceMs = welcome.optInt("graceMs", 0);
+        droppedAt = 0;
+        if (welcome.optBoolean("resumed", false)) {
+            System.out.println("✅ Sesión retomada; el servidor reenvía lo que faltaba desde el seq " + currentSeq);
+        }
+    }
+    
+    private static void handleServerMessage(JSONObject jsonMessage) {
         try {
-            JSONObject jsonMessage = new JSONObject(message);
-            
             if (jsonMessage.has("type")) {
                 String type = jsonMessage.getString("type");
                 System.out.println("📨 Mensaje recibido - Tipo: " + type);
@@ -121,6 +180,9 @@ public class Main extends Application {
                     case "serverData":
                         handleServerData(jsonMessage);
                         break;
+                    case "serverPatch":
+                        handleServerPatch(jsonMessage);
+                        break;
                     case "countdown":
                         System.out.println("🎮 Mensaje COUNTDOWN recibido del servidor");
                         handleCountdown(jsonMessage);
@@ -131,6 +193,18 @@ public class Main extends Application {
                     case "dragUpdate": // ✅ AÑADIR ESTE CASE
                         handleDragUpdate(jsonMessage);
                         break;
+                    case "cursorUpdate":
+                        handleCursorUpdate(jsonMessage);
+                        break;
+                    case "lobbyPresence":
+                        handleLobbyPresence(jsonMessage);
+                        break;
+                    case "lobbyHeartbeat":
+                        handleLobbyHeartbeat(jsonMessage);
+                        break;
+                    case "welcome":
+                        handleWelcome(jsonMessage);
+                        break;
                     case "error":
                         handleErrorMessage(jsonMessage);
                         break;
@@ -147,11 +221,79 @@ public class Main extends Application {
         try {
             GameState gameState = parseGameState(serverData);
             currentGameState = gameState;
+            currentSeq = serverData.optLong("seq", -1);
+            lobbyVersion = serverData.optLong("lobbyVersion", -1);
             updateGameState(gameState);
         } catch (Exception e) {
             System.err.println("Error parsing serverData: " + e.getMessage());
         }
     }
+    
+    private static void handleServerPatch(JSONObject patch) {
+        long seq = patch.getLong("seq");
+        if (currentGameState == null || currentSeq < 0 || seq != currentSeq + 1) {
+            // Falta algún parche: pedir la foto completa y descartar este
+            System.out.println("⚠️ serverPatch " + seq + " sin base (último " + currentSeq + "), pidiendo estado completo");
+            currentSeq = -1;
+            requestResync();
+            return;
+        }
+        try {
+            GameState gameState = parseGameState(patch, currentGameState);
+            currentGameState = gameState;
+            currentSeq = seq;
+            updateGameState(gameState);
+        } catch (Exception e) {
+            System.err.println("Error aplicando serverPatch: " + e.getMessage());
+            currentSeq = -1;
+            requestResync();
+        }
+    }
+
+    // Alguien entra, sale, empieza o termina una partida: se cambia solo esa entrada de la lista
+    private static void handleLobbyPresence(JSONObject presence) {
+        if (lobbyVersion < 0 || currentGameState == null) return; // No estamos en el lobby
+        long version = presence.getLong("version");
+        if (version != lobbyVersion + 1) {
+            System.out.println("⚠️ Evento del lobby " + version + " sin base (último " + lobbyVersion + "), pidiendo la lista completa");
+            lobbyVersion = -1;
+            requestResync();
+            return;
+        }
+        lobbyVersion = version;
+        
+        String name = presence.getString("name");
+        List<ClientInfo> clients = currentGameState.getClientsList();
+        switch (presence.getString("event")) {
+            case "joined":
+                ClientInfo client = new ClientInfo();
+                client.setName(name);
+                client.setColor("GRAY");
+                client.setRole("");
+                clients.add(client);
+                break;
+            case "left":
+                clients.removeIf(c -> name.equals(c.getName()));
+                break;
+            case "busy":
+            case "available":
+                boolean busy = presence.getString("event").equals("busy");
+                for (ClientInfo c : clients) {
+                    if (name.equals(c.getName())) c.setBusy(busy);
+                }
+                break;
+        }
+        updateOpponentSelection(currentGameState);
+    }
+    
+    // Sin cambios el servidor solo envía su versión: si no coincide, nos hemos perdido algo
+    private static void handleLobbyHeartbeat(JSONObject heartbeat) {
+        if (lobbyVersion >= 0 && heartbeat.getLong("version") != lobbyVersion) {
+            System.out.println("⚠️ Lobby desactualizado (v" + lobbyVersion + " de " + heartbeat.getLong("version") + "), pidiendo la lista completa");
+            lobbyVersion = -1;
+            requestResync();
+        }
+    }
 
     private static void handleDragUpdate(JSONObject dragMsg) {
         String player = dragMsg.getString("player");
@@ -173,6 +315,41 @@ public class Main extends Application {
         });
     }
     
+    // Cursor y arrastre de los dos jugadores, agrupados por el servidor a ritmo fijo
+    private static void handleCursorUpdate(JSONObject cursorMsg) {
+        JSONArray cursors = cursorMsg.getJSONArray("cursors");
+        Platform.runLater(() -> {
+            CtrlGame gameCtrl = (CtrlGame) UtilsViews.getController("ViewGame");
+            if (gameCtrl == null || !"ViewGame".equals(UtilsViews.getActiveView())) return;
+            
+            for (int i = 0; i < cursors.length(); i++) {
+                JSONObject cursor = cursors.getJSONObject(i);
+                String player = cursor.getString("player");
+                if (player.equals(Main.playerName)) continue; // Solo el oponente
+                
+                if (cursor.has("x")) {
+                    double x = cursor.getDouble("x");
+                    double y = cursor.getDouble("y");
+                    // También en el estado guardado, para que el próximo serverPatch no lo devuelva atrás
+                    if (currentGameState != null) {
+                        for (ClientInfo client : currentGameState.getClientsList()) {
+                            if (client.getName().equals(player)) {
+                                client.setMouseX(x);
+                                client.setMouseY(y);
+                            }
+                        }
+                    }
+                    gameCtrl.updateOpponentCursor(x, y);
+                }
+                if (cursor.has("dragging")) {
+                    gameCtrl.updateOpponentDragInfo(cursor.getBoolean("dragging"),
+                        cursor.getDouble("dragX"), cursor.getDouble("dragY"), cursor.getString("color"));
+                }
+            }
+            if (currentGameState != null) gameCtrl.render(currentGameState);
+        });
+    }
+    
     // EN Main.java - MODIFICAR parseGameState para parsear lastMove:
     private static GameState parseGameState(JSONObject json) {
         GameState gameState = new GameState();
@@ -191,6 +368,7 @@ public class Main extends Application {
                 if (clientJson.has("mouseX")) client.setMouseX(clientJson.getDouble("mouseX"));
                 if (clientJson.has("mouseY")) client.setMouseY(clientJson.getDouble("mouseY"));
                 if (clientJson.has("role")) client.setRole(clientJson.getString("role"));
+                client.setBusy(clientJson.optBoolean("busy", false));
                 gameState.getClientsList().add(client);
             }
         }
@@ -220,10 +398,7 @@ public class Main extends Application {
             
             // ✅ PARSEAR lastMove
             if (gameJson.has("lastMove")) {
-                JSONObject moveJson = gameJson.getJSONObject("lastMove");
-                Move move = new Move();
-                if (moveJson.has("col")) move.setCol(moveJson.getInt("col"));
-                if (moveJson.has("row")) move.setRow(moveJson.getInt("row"));
+                Move move = parseMove(gameJson.getJSONObject("lastMove"));
                 gameData.setLastMove(move);
                 System.out.println("📥 LastMove parseado: col=" + move.getCol() + ", row=" + move.getRow());
             } else {
@@ -244,12 +419,94 @@ public class Main extends Application {
                 gameData.setBoard(board);
             }
             
+            // Línea ganadora (solo llega cuando alguien ha ganado)
+            if (gameJson.has("winLine")) {
+                gameData.setWinLine(parseMoves(gameJson.getJSONArray("winLine")));
+            }
+            
             gameState.setGame(gameData);
         }
         
         return gameState;
     }
     
+    /**
+     * Aplica un serverPatch sobre el estado que ya tenemos. Devuelve un
+     * GameState nuevo (la vista puede estar pintando el anterior): se copian
+     * el tablero y los clientes, la lista de objetos no cambia nunca.
+     */
+    private static GameState parseGameState(JSONObject patch, GameState base) {
+        GameState gameState = new GameState();
+        gameState.setType(base.getType());
+        gameState.setClientName(base.getClientName());
+        gameState.setObjectsList(base.getObjectsList());
+        
+        for (ClientInfo baseClient : base.getClientsList()) {
+            ClientInfo client = new ClientInfo();
+            client.setName(baseClient.getName());
+            client.setColor(baseClient.getColor());
+            client.setMouseX(baseClient.getMouseX());
+            client.setMouseY(baseClient.getMouseY());
+            client.setRole(baseClient.getRole());
+            client.setDragInfo(baseClient.getDragInfo());
+            gameState.getClientsList().add(client);
+        }
+        
+        GameData baseGame = base.getGame() != null ? base.getGame() : new GameData();
+        GameData gameData = new GameData();
+        gameData.setStatus(baseGame.getStatus());
+        gameData.setTurn(baseGame.getTurn());
+        gameData.setWinner(baseGame.getWinner());
+        gameData.setWinLine(baseGame.getWinLine());
+        
+        String[][] board = new String[Bitboard.ROWS][];
+        for (int row = 0; row < board.length; row++) {
+            board[row] = baseGame.getBoard() != null && row < baseGame.getBoard().length
+                ? baseGame.getBoard()[row].clone() : new String[Bitboard.COLS];
+        }
+        gameData.setBoard(board);
+        
+        if (patch.has("game")) {
+            JSONObject gameJson = patch.getJSONObject("game");
+            if (gameJson.has("status")) gameData.setStatus(gameJson.getString("status"));
+            if (gameJson.has("turn")) gameData.setTurn(gameJson.getString("turn"));
+            if (gameJson.has("winner")) gameData.setWinner(gameJson.getString("winner"));
+            
+            // lastMove solo llega en el parche de la jugada; si no viene, no hay nada que animar
+            if (gameJson.has("lastMove")) {
+                gameData.setLastMove(parseMove(gameJson.getJSONObject("lastMove")));
+            }
+            if (gameJson.has("cells")) {
+                JSONArray cells = gameJson.getJSONArray("cells");
+                for (int i = 0; i < cells.length(); i++) {
+                    JSONObject cell = cells.getJSONObject(i);
+                    board[cell.getInt("row")][cell.getInt("col")] = cell.getString("v");
+                }
+            }
+            if (gameJson.has("winLine")) {
+                gameData.setWinLine(parseMoves(gameJson.getJSONArray("winLine")));
+            }
+        }
+        
+        gameState.setGame(gameData);
+        return gameState;
+    }
+    
+    private static Move parseMove(JSONObject moveJson) {
+        Move move = new Move();
+        if (moveJson.has("col")) move.setCol(moveJson.getInt("col"));
+        if (moveJson.has("row")) move.setRow(moveJson.getInt("row"));
+        return move;
+    }
+    
+    private static List<Move> parseMoves(JSONArray movesArray) {
+        List<Move> moves = new ArrayList<>();
+        for (int i = 0; i < movesArray.length(); i++) {
+            moves.add(parseMove(movesArray.getJSONObject(i)));
+        }
+        return moves;
+    }
+    
     private static void updateGameState(GameState gameState) {
         // Determinar mi rol - SOLO si no está asignado o si es una nueva partida
         if (gameState.getClientsList() != null) {
@@ -372,6 +629,20 @@ public class Main extends Application {
                 if (selectionCtrl != null) {
                     selectionCtrl.updateStatus("Invitación rechazada por " + fromPlayer);
                 }
+            } else if ("expired".equals(type)) {
+                // El servidor la da por caducada: sin respuesta en 30 s
+                if (invitationPending && fromPlayer.equals(pendingOpponent)) {
+                    invitationPending = false;
+                    pendingOpponent = "";
+                    UtilsViews.setViewAnimating("ViewOpponentSelection");
+                }
+                System.out.println("⌛ Invitación con " + fromPlayer + " caducada");
+                
+                CtrlOpponentSelection selectionCtrl = (CtrlOpponentSelection) 
+                    UtilsViews.getController("ViewOpponentSelection");
+                if (selectionCtrl != null) {
+                    selectionCtrl.updateStatus("La invitación con " + fromPlayer + " ha caducado");
+                }
             }
         });
     }
@@ -467,20 +738,28 @@ public class Main extends Application {
                 msg.put("type", "clientMouseMoving");
                 msg.put("x", x);
                 msg.put("y", y);
-                wsClient.safeSend(msg.toString());
+                wsClient.safeSend(msg);
             } catch (Exception e) {
                 System.err.println("Error sending mouse move: " + e.getMessage());
             }
         }
     }
     
+    private static void requestResync() {
+        if (wsClient != null && wsClient.isOpen()) {
+            JSONObject msg = new JSONObject();
+            msg.put("type", "clientResync");
+            wsClient.safeSend(msg);
+        }
+    }
+    
     public static void sendPlay(int column) {
         if (wsClient != null && wsClient.isOpen()) {
             try {
                 JSONObject msg = new JSONObject();
                 msg.put("type", "clientPlay");
                 msg.put("column", column);
-                wsClient.safeSend(msg.toString());
+                wsClient.safeSend(msg);
             } catch (Exception e) {
                 System.err.println("Error sending play: " + e.getMessage());
             }
@@ -493,7 +772,7 @@ public class Main extends Application {
                 JSONObject msg = new JSONObject();
                 msg.put("type", "clientInvite");
                 msg.put("opponent", opponentName);
-                wsClient.safeSend(msg.toString());
+                wsClient.safeSend(msg);
             } catch (Exception e) {
                 System.err.println("Error sending invitation: " + e.getMessage());
             }
@@ -506,7 +785,7 @@ public class Main extends Application {
                 JSONObject msg = new JSONObject();
                 msg.put("type", "clientAcceptInvite");
                 msg.put("from", fromPlayer);
-                wsClient.safeSend(msg.toString());
+                wsClient.safeSend(msg);
             } catch (Exception e) {
                 System.err.println("Error accepting invitation: " + e.getMessage());
             }
@@ -519,7 +798,7 @@ public class Main extends Application {
                 JSONObject msg = new JSONObject();
                 msg.put("type", "clientRejectInvite");
                 msg.put("from", fromPlayer);
-                wsClient.safeSend(msg.toString());
+                wsClient.safeSend(msg);
             } catch (Exception e) {
                 System.err.println("Error rejecting invitation: " + e.getMessage());
             }
@@ -568,6 +847,7 @@ public class Main extends Application {
 
     @Override
     public void stop() {
+        forgetSession();
         if (wsClient != null) {
             wsClient.forceExit();
         }
@@ -4,11 +4,20 @@ import javafx.application.Platform;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.drafts.Draft_6455;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.json.JSONObject;
+
+import com.shared.JsonCodec;
+import com.shared.MessageCodec;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 public class UtilsWS {
@@ -19,11 +28,22 @@ public class UtilsWS {
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private static final AtomicBoolean exitRequested = new AtomicBoolean(false);
 
+    // Reintentos con espera exponencial y aleatoria ("full jitter"): entre 0 y
+    // min(MAX, BASE * 2^intento), para que los clientes cortados a la vez no
+    // vuelvan todos juntos. Se reinicia al conectar.
+    private static final long RECONNECT_BASE_MS = 500;
+    private static final long RECONNECT_MAX_MS = 30000;
+    private final AtomicInteger reconnectAttempts = new AtomicInteger();
+    private final AtomicBoolean reconnectScheduled = new AtomicBoolean(false); // onError y onClose llegan juntos
+
     private Consumer<String> onOpenCallBack;
-    private Consumer<String> onMessageCallBack;
+    private Consumer<JSONObject> onMessageCallBack;
     private Consumer<String> onCloseCallBack;
     private Consumer<String> onErrorCallBack;
 
+    // Códec acordado con el servidor en el handshake (JSON hasta que se abre la conexión)
+    private volatile MessageCodec codec = new JsonCodec();
+
     private UtilsWS(String location) {
         this.location = location;
         createNewWebSocketClient();
@@ -31,29 +51,51 @@ public class UtilsWS {
 
     private void createNewWebSocketClient() {
         try {
-            this.client = new WebSocketClient(new URI(location), new Draft_6455()) {
+            // Se ofrece el binario y JSON; "" acepta servidores que no devuelven protocolo (JSON)
+            List<IProtocol> protocols = List.of(
+                new Protocol(MessageCodec.BINARY_PROTOCOL),
+                new Protocol(MessageCodec.JSON_PROTOCOL),
+                new Protocol(""));
+            this.client = new WebSocketClient(new URI(location), new Draft_6455(List.of(), protocols)) {
 
                 @Override
                 public void onOpen(ServerHandshake handshake) {
-                    String message = "WS connected to: " + getURI();
+                    IProtocol protocol = getProtocol();
+                    codec = MessageCodec.forProtocol(protocol != null ? protocol.getProvidedProtocol() : null);
+                    reconnectAttempts.set(0);
+                    String message = "WS connected to: " + getURI() + " (" + codec.getProtocol() + ")";
                     System.out.println(message);
                     runLaterIfSet(onOpenCallBack, message);
                 }
 
                 @Override
                 public void onMessage(String message) {
-                    runLaterIfSet(onMessageCallBack, message);
+                    try {
+                        runLaterIfSet(onMessageCallBack, new JSONObject(message));
+                    } catch (Exception e) {
+                        System.err.println("WS Error parsing message: " + e.getMessage());
+                    }
+                }
+
+                @Override
+                public void onMessage(ByteBuffer bytes) {
+                    try {
+                        runLaterIfSet(onMessageCallBack, codec.decode(bytes));
+                    } catch (Exception e) {
+                        System.err.println("WS Error decoding binary message: " + e.getMessage());
+                    }
                 }
 
                 @Override
                 public void onClose(int code, String reason, boolean remote) {
                     String message = "WS closed: " + reason + " (remote=" + remote + ")";
                     System.out.println(message);
-                    runLaterIfSet(onCloseCallBack, message);
 
+                    // Antes del aviso, para que quien lo reciba sepa si se va a reconectar
                     if (!exitRequested.get() && remote) {
                         scheduleReconnect();
                     }
+                    runLaterIfSet(onCloseCallBack, message);
                 }
 
                 @Override
@@ -76,20 +118,24 @@ public class UtilsWS {
         }
     }
 
-    private void runLaterIfSet(Consumer<String> callback, String msg) {
+    private <T> void runLaterIfSet(Consumer<T> callback, T msg) {
         if (callback != null) {
             Platform.runLater(() -> callback.accept(msg));
         }
     }
 
     private void scheduleReconnect() {
-        if (!exitRequested.get()) {
-            System.out.println("WS scheduling reconnect in 5 seconds...");
-            scheduler.schedule(this::reconnect, 5, TimeUnit.SECONDS);
+        if (!exitRequested.get() && reconnectScheduled.compareAndSet(false, true)) {
+            int attempt = reconnectAttempts.getAndIncrement();
+            long ceiling = Math.min(RECONNECT_MAX_MS, RECONNECT_BASE_MS << Math.min(attempt, 16));
+            long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            System.out.println("WS scheduling reconnect in " + delay + " ms (attempt " + (attempt + 1) + ")...");
+            scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
         }
     }
 
     private void reconnect() {
+        reconnectScheduled.set(false);
         if (exitRequested.get()) return;
 
         System.out.println("WS reconnecting to: " + this.location);
@@ -117,16 +163,21 @@ public class UtilsWS {
 
     public void onOpen(Consumer<String> callback) { this.onOpenCallBack = callback; }
 
-    public void onMessage(Consumer<String> callback) { this.onMessageCallBack = callback; }
+    public void onMessage(Consumer<JSONObject> callback) { this.onMessageCallBack = callback; }
 
     public void onClose(Consumer<String> callback) { this.onCloseCallBack = callback; }
 
     public void onError(Consumer<String> callback) { this.onErrorCallBack = callback; }
 
-    public void safeSend(String text) {
+    public void safeSend(JSONObject message) {
         try {
             if (client != null && client.isOpen()) {
-                client.send(text);
+                MessageCodec current = codec;
+                if (current.isBinary()) {
+                    client.send(current.encode(message));
+                } else {
+                    client.send(message.toString());
+                }
             } else {
                 System.out.println("WS Warning: not connected, scheduling reconnect...");
                 scheduleReconnect();
@@ -151,6 +202,11 @@ public class UtilsWS {
         }
     }
 
+    /** Hay un reintento de conexión programado (o en curso) */
+    public boolean isReconnectPending() {
+        return reconnectScheduled.get() || (!exitRequested.get() && client != null && !client.isOpen() && !client.isClosed());
+    }
+
     public boolean isOpen() {
         return client != null && client.isOpen();
     }
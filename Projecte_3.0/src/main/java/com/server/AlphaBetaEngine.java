@@ -0,0 +1,36 @@
+package com.server;
+
+import com.shared.Bitboard;
+
+/**
+ * Motor alfa-beta del bot: LazySmpSearch con la profundidad, el tiempo y los
+ * hilos del nivel.
+ */
+public class AlphaBetaEngine implements BotEngine {
+
+    // 2^18 entradas (4 MB) por bot; la tabla se conserva entre jugadas de la misma partida
+    private static final int TABLE_SIZE_BITS = 18;
+
+    private final BotDifficulty difficulty;
+    private final LazySmpSearch search;
+
+    public AlphaBetaEngine(BotDifficulty difficulty) {
+        this.difficulty = difficulty;
+        this.search = new LazySmpSearch(difficulty.getThreads(), TABLE_SIZE_BITS);
+    }
+
+    @Override
+    public SearchResult search(Bitboard position) {
+        return search.search(position, difficulty.getMaxDepth(), difficulty.getBudgetMillis());
+    }
+
+    @Override
+    public void stop() {
+        search.stop();
+    }
+
+    @Override
+    public String getLabel() {
+        return "alfa-beta";
+    }
+}
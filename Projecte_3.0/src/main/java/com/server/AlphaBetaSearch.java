@@ -0,0 +1,276 @@
+package com.server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.shared.Bitboard;
+
+/**
+ * Búsqueda negamax con poda alfa-beta para el bot.
+ *
+ * - Ordenación de jugadas: jugada de la tabla de transposiciones, después las
+ *   que crean más amenazas y, a igualdad, las más centradas.
+ * - Tabla de transposiciones indexada por el hash Zobrist del Bitboard.
+ * - Profundización iterativa con un presupuesto de milisegundos por jugada:
+ *   si se acaba el tiempo se descarta la iteración a medias y se usa la anterior.
+ *
+ * Una instancia no es thread-safe, pero varias instancias pueden compartir la
+ * misma TranspositionTable (así trabajan los hilos de LazySmpSearch).
+ */
+public class AlphaBetaSearch {
+
+    public static final int WIN_SCORE = 10000;
+    // A partir de aquí la puntuación es una victoria/derrota forzada, no heurística
+    public static final int WIN_THRESHOLD = WIN_SCORE - Bitboard.CELLS - 2;
+    // budgetMillis sin límite (también para MctsSearch): el mayor que, en nanosegundos y sumado a nanoTime, no desborda
+    public static final long NO_TIME_LIMIT = Long.MAX_VALUE / 2_000_000L;
+
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int MAX_PLY = Bitboard.CELLS + 1;
+    private static final int[] COLUMN_ORDER = {3, 2, 4, 1, 5, 0, 6};
+
+    // Órdenes alternativos para los hilos auxiliares: así no recorren el árbol igual que el principal
+    private static final int[][] HELPER_COLUMN_ORDERS = {
+        {3, 4, 2, 5, 1, 6, 0},
+        {2, 3, 4, 1, 5, 0, 6},
+        {4, 3, 2, 5, 1, 6, 0},
+    };
+
+    private final TranspositionTable table;
+    private int[] columnOrder = COLUMN_ORDER;
+    private int startDepth = 1;
+
+    // Buffers de ordenación por ply: la búsqueda no reserva memoria
+    private final int[][] moveBuffer = new int[MAX_PLY][Bitboard.COLS];
+    private final int[][] orderBuffer = new int[MAX_PLY][Bitboard.COLS];
+
+    private long nodes;
+    private long tableProbes;
+    private long tableHits;
+    private long deadline;
+    private boolean aborted;
+    private volatile AtomicBoolean stopFlag = new AtomicBoolean();
+    private int rootBestMove;
+
+    public AlphaBetaSearch(int tableSizeBits) {
+        this(new TranspositionTable(tableSizeBits));
+    }
+
+    public AlphaBetaSearch(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Convierte esta instancia en un hilo auxiliar de Lazy SMP: cambia el orden
+     * de columnas a igualdad de valor y, en los impares, empieza un nivel más profundo.
+     * El índice 0 es el hilo principal.
+     */
+    public void setHelperIndex(int index) {
+        this.columnOrder = index == 0 ? COLUMN_ORDER : HELPER_COLUMN_ORDERS[(index - 1) % HELPER_COLUMN_ORDERS.length];
+        this.startDepth = 1 + (index & 1);
+    }
+
+    /**
+     * Busca la mejor columna para el jugador al que le toca.
+     * @param maxDepth profundidad máxima en plies
+     * @param budgetMillis tiempo máximo para esta jugada
+     */
+    public SearchResult search(Bitboard position, int maxDepth, long budgetMillis) {
+        return search(position, maxDepth, budgetMillis, new AtomicBoolean());
+    }
+
+    /**
+     * Igual que search(position, maxDepth, budgetMillis) pero con un flag de parada
+     * compartido: en cuanto alguien lo activa, la búsqueda termina.
+     */
+    public SearchResult search(Bitboard position, int maxDepth, long budgetMillis, AtomicBoolean stop) {
+        this.stopFlag = stop;
+        long start = System.nanoTime();
+        deadline = start + budgetMillis * 1_000_000L;
+        nodes = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        aborted = false;
+
+        Bitboard board = new Bitboard(position);
+        SearchResult result = new SearchResult();
+        result.setMove(firstColumn(board.playableMask()));
+
+        int limit = Math.min(maxDepth, Bitboard.CELLS - board.getMoveCount());
+        for (int depth = Math.min(startDepth, limit); depth <= limit && !stop.get(); depth++) {
+            rootBestMove = -1;
+            int score = negamax(board, depth, -INFINITY, INFINITY, 0);
+            if (aborted) break;
+
+            if (rootBestMove >= 0) result.setMove(rootBestMove);
+            result.setScore(score);
+            result.setDepth(depth);
+
+            // Resultado forzado: buscar más profundo no lo va a cambiar
+            if (Math.abs(score) >= WIN_THRESHOLD) break;
+        }
+
+        result.setNodes(nodes);
+        result.setTableProbes(tableProbes);
+        result.setTableHits(tableHits);
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000L);
+        return result;
+    }
+
+    /** Pide parar la búsqueda en curso (se puede llamar desde otro hilo) */
+    public void stop() {
+        stopFlag.set(true);
+    }
+
+    public void clearTable() {
+        table.clear();
+    }
+
+    private int negamax(Bitboard board, int depth, int alpha, int beta, int ply) {
+        nodes++;
+        if ((nodes & 1023) == 0 && (stopFlag.get() || System.nanoTime() > deadline)) {
+            aborted = true;
+        }
+        if (aborted) return 0;
+
+        int me = board.currentPlayer();
+        long own = board.getPieces(me);
+        long opp = board.getPieces(1 - me);
+        long mask = own | opp;
+        long playable = board.playableMask();
+
+        // Victoria inmediata
+        long wins = Bitboard.winningSpots(own, mask) & playable;
+        if (wins != 0) {
+            setRootMove(ply, wins);
+            return WIN_SCORE - ply - 1;
+        }
+
+        // La última casilla no puede ganar (ya lo habríamos visto): tablas
+        if (board.getMoveCount() >= Bitboard.CELLS - 1) {
+            setRootMove(ply, playable);
+            return 0;
+        }
+
+        // Amenazas del rival: si tiene dos inmediatas hemos perdido, si tiene una hay que taparla
+        long oppWins = Bitboard.winningSpots(opp, mask);
+        long forced = playable & oppWins;
+        if (forced != 0) {
+            if ((forced & (forced - 1)) != 0) {
+                setRootMove(ply, forced);
+                return -(WIN_SCORE - ply - 2);
+            }
+            playable = forced;
+        }
+
+        // Descartar jugadas que dejan una casilla ganadora del rival justo encima
+        long candidates = playable & ~(oppWins >>> 1);
+        if (candidates == 0) {
+            setRootMove(ply, playable);
+            return -(WIN_SCORE - ply - 2);
+        }
+
+        if (depth == 0) {
+            return PositionEvaluator.evaluate(own, opp);
+        }
+
+        long key = board.getHash();
+        int entry = table.probe(key);
+        int ttMove = -1;
+        tableProbes++;
+        if (entry != 0) {
+            tableHits++;
+            ttMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int ttScore = fromTable(TranspositionTable.score(entry), ply);
+                switch (TranspositionTable.flag(entry)) {
+                    case TranspositionTable.EXACT:
+                        return ttScore;
+                    case TranspositionTable.LOWER:
+                        alpha = Math.max(alpha, ttScore);
+                        break;
+                    case TranspositionTable.UPPER:
+                        beta = Math.min(beta, ttScore);
+                        break;
+                }
+                if (alpha >= beta) return ttScore;
+            }
+        }
+
+        int count = orderMoves(candidates, own, mask, ttMove, ply);
+        int[] moves = moveBuffer[ply];
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = moves[0];
+        for (int i = 0; i < count; i++) {
+            int col = moves[i];
+            board.play(col);
+            int score = -negamax(board, depth - 1, -beta, -alpha, ply + 1);
+            board.undo();
+            if (aborted) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = col;
+                if (ply == 0) rootBestMove = col;
+            }
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) break;
+        }
+
+        int flag = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                 : bestScore >= beta ? TranspositionTable.LOWER
+                 : TranspositionTable.EXACT;
+        table.store(key, toTable(bestScore, ply), depth, flag, bestMove);
+        return bestScore;
+    }
+
+    /**
+     * Ordena las jugadas candidatas en moveBuffer[ply].
+     * @return número de jugadas
+     */
+    private int orderMoves(long candidates, long own, long mask, int ttMove, int ply) {
+        int[] moves = moveBuffer[ply];
+        int[] order = orderBuffer[ply];
+        int count = 0;
+        for (int col : columnOrder) {
+            long bit = candidates & Bitboard.columnMask(col);
+            if (bit == 0) continue;
+
+            int value = col == ttMove ? Integer.MAX_VALUE
+                      : Long.bitCount(Bitboard.winningSpots(own | bit, mask | bit));
+
+            // Inserción estable: a igual valor se mantiene el orden central
+            int i = count++;
+            while (i > 0 && order[i - 1] < value) {
+                moves[i] = moves[i - 1];
+                order[i] = order[i - 1];
+                i--;
+            }
+            moves[i] = col;
+            order[i] = value;
+        }
+        return count;
+    }
+
+    private void setRootMove(int ply, long bits) {
+        if (ply == 0) rootBestMove = firstColumn(bits);
+    }
+
+    private static int firstColumn(long bits) {
+        return bits == 0 ? -1 : Long.numberOfTrailingZeros(bits) / Bitboard.H1;
+    }
+
+    // Las victorias se guardan relativas a la posición, no a la raíz
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) return score + ply;
+        if (score <= -WIN_THRESHOLD) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) return score - ply;
+        if (score <= -WIN_THRESHOLD) return score + ply;
+        return score;
+    }
+}
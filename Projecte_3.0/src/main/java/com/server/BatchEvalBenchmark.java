@@ -0,0 +1,81 @@
+package com.server;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import com.shared.Bitboard;
+
+/**
+ * Compara ScalarBatchEvaluator con la evaluación vectorial en un solo hilo:
+ * comprueba que dan lo mismo y mide posiciones evaluadas por segundo.
+ *
+ * Uso: ./run.sh com.server.BatchEvalBenchmark [posiciones por lote] [segundos]
+ * (run.sh ya añade --add-modules jdk.incubator.vector)
+ */
+public class BatchEvalBenchmark {
+
+    public static void main(String[] args) {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2.0;
+
+        long[] own = new long[batchSize];
+        long[] opp = new long[batchSize];
+        randomPositions(own, opp, new SplittableRandom(7));
+
+        BatchEvaluator scalar = new ScalarBatchEvaluator();
+        BatchEvaluator best = BatchEvaluator.create();
+
+        long[] expected = new long[batchSize];
+        long[] actual = new long[batchSize];
+        scalar.evaluate(own, opp, expected, batchSize);
+        best.evaluate(own, opp, actual, batchSize);
+        if (!Arrays.equals(expected, actual)) {
+            System.err.println("❌ La evaluación " + best.getName() + " no coincide con la escalar");
+            return;
+        }
+
+        System.out.println("Lotes de " + batchSize + " posiciones, 1 hilo");
+        double scalarRate = measure(scalar, own, opp, actual, seconds);
+        System.out.printf("%-28s %,.0f posiciones/s%n", scalar.getName(), scalarRate);
+        if (!(best instanceof ScalarBatchEvaluator)) {
+            double bestRate = measure(best, own, opp, actual, seconds);
+            System.out.printf("%-28s %,.0f posiciones/s (%.2fx)%n", best.getName(), bestRate, bestRate / scalarRate);
+        } else {
+            System.out.println("Vector API no disponible: falta --add-modules jdk.incubator.vector");
+        }
+    }
+
+    /** Posiciones de partidas al azar cortadas en una jugada al azar, desde el jugador al que le toca */
+    private static void randomPositions(long[] own, long[] opp, SplittableRandom random) {
+        Bitboard board = new Bitboard();
+        for (int i = 0; i < own.length; i++) {
+            board.reset();
+            int length = random.nextInt(Bitboard.CELLS);
+            while (board.getMoveCount() < length) {
+                int col = random.nextInt(Bitboard.COLS);
+                if (!board.canPlay(col)) continue;
+                board.play(col);
+                if (board.lastMoveWon()) {
+                    board.undo();
+                    break;
+                }
+            }
+            own[i] = board.getPieces(board.currentPlayer());
+            opp[i] = board.getPieces(1 - board.currentPlayer());
+        }
+    }
+
+    private static double measure(BatchEvaluator evaluator, long[] own, long[] opp, long[] scores, double seconds) {
+        // Calentamiento del JIT
+        for (int i = 0; i < 2000; i++) evaluator.evaluate(own, opp, scores, own.length);
+
+        long evaluated = 0;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 100; i++) evaluator.evaluate(own, opp, scores, own.length);
+            evaluated += 100L * own.length;
+        }
+        return evaluated / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,29 @@
+package com.server;
+
+/**
+ * Evaluación de muchas posiciones a la vez, con el mismo resultado que
+ * PositionEvaluator.evaluate para cada una.
+ *
+ * Las posiciones llegan en forma de arrays: own[i] y opp[i] son las fichas
+ * del jugador que puntúa y del rival en la posición i.
+ */
+public interface BatchEvaluator {
+
+    /** Escribe en scores[i] la evaluación de (own[i], opp[i]) para i < count */
+    void evaluate(long[] own, long[] opp, long[] scores, int count);
+
+    String getName();
+
+    /**
+     * La versión vectorial si la JVM tiene el módulo jdk.incubator.vector
+     * (--add-modules jdk.incubator.vector); si no, la escalar.
+     */
+    static BatchEvaluator create() {
+        try {
+            return (BatchEvaluator) Class.forName("com.server.VectorBatchEvaluator")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarBatchEvaluator();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.server;
+
+import com.shared.Bitboard;
+
+/**
+ * Niveles del bot: profundidad máxima (alfa-beta), playouts por jugada (MCTS),
+ * tiempo por jugada, hilos de búsqueda (limitados por LazySmpSearch.MAX_THREADS)
+ * y probabilidad de hacer una jugada al azar en lugar de la mejor.
+ */
+public enum BotDifficulty {
+    EASY("Fácil", 3, 1_000, 150, 1, 0.30),
+    MEDIUM("Normal", 8, 30_000, 400, 2, 0.05),
+    HARD("Difícil", Bitboard.CELLS, 300_000, 1500, 4, 0.0);
+
+    private final String label;
+    private final int maxDepth;
+    private final int playouts;
+    private final long budgetMillis;
+    private final int threads;
+    private final double mistakeRate;
+
+    BotDifficulty(String label, int maxDepth, int playouts, long budgetMillis, int threads, double mistakeRate) {
+        this.label = label;
+        this.maxDepth = maxDepth;
+        this.playouts = playouts;
+        this.budgetMillis = budgetMillis;
+        this.threads = threads;
+        this.mistakeRate = mistakeRate;
+    }
+
+    public String getLabel() { return label; }
+    public int getMaxDepth() { return maxDepth; }
+    public int getPlayouts() { return playouts; }
+    public long getBudgetMillis() { return budgetMillis; }
+    public int getThreads() { return threads; }
+    public double getMistakeRate() { return mistakeRate; }
+
+    /** Nivel a partir del texto que envía el cliente; MEDIUM si no se reconoce */
+    public static BotDifficulty fromString(String value) {
+        if (value != null) {
+            for (BotDifficulty difficulty : values()) {
+                if (difficulty.name().equalsIgnoreCase(value)) return difficulty;
+            }
+        }
+        return MEDIUM;
+    }
+}
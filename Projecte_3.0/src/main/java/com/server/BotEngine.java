@@ -0,0 +1,36 @@
+package com.server;
+
+import com.shared.Bitboard;
+
+/**
+ * Motor de búsqueda que usa un BotPlayer para elegir columna.
+ *
+ * BotPlayer se encarga del pool, la cancelación, el libro y la tabla de
+ * finales; el motor solo busca. Las implementaciones no son reentrantes:
+ * cada bot tiene la suya y la llama desde un único hilo a la vez.
+ */
+public interface BotEngine {
+
+    String ALPHA_BETA = "alphabeta";
+    String MCTS = "mcts";
+
+    /** Busca la mejor columna para el jugador al que le toca */
+    SearchResult search(Bitboard position);
+
+    /** Corta la búsqueda en curso (se puede llamar desde otro hilo) */
+    void stop();
+
+    /** El bot ya no va a jugar más: libera la memoria de búsqueda (se puede llamar desde otro hilo) */
+    default void release() {}
+
+    /** Nombre corto para el nombre del bot y los logs */
+    String getLabel();
+
+    /** Motor a partir del texto que envía el cliente; alfa-beta si no se reconoce */
+    static BotEngine create(String type, BotDifficulty difficulty) {
+        if (MCTS.equalsIgnoreCase(type)) {
+            return new MctsSearch(difficulty);
+        }
+        return new AlphaBetaEngine(difficulty);
+    }
+}
@@ -0,0 +1,114 @@
+package com.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import com.shared.Bitboard;
+
+/**
+ * Jugador virtual controlado por el servidor.
+ *
+ * La búsqueda se ejecuta en un pool de cálculo propio, nunca en los hilos de
+ * Java-WebSocket: requestMove() vuelve enseguida y la columna elegida llega
+ * por callback desde un hilo del pool. La búsqueda la hace un BotEngine
+ * (alfa-beta con LazySmpSearch o MCTS) que, según el nivel, usa varios hilos
+ * dentro del límite global de hilos de bot. En la apertura, los niveles que
+ * buscan hasta el final consultan antes las jugadas resueltas del libro de
+ * aperturas compartido (OpeningBook).
+ *
+ * La tabla de finales (EndgameTablebase) no se consulta: con las semillas
+ * actuales casi ninguna posición de una partida real está en ella (ver el
+ * acierto que muestra EndgameTablebaseBuilder).
+ */
+public class BotPlayer {
+
+    private static final int POOL_SIZE = LazySmpSearch.MAX_THREADS;
+    private static final ExecutorService COMPUTE_POOL = Executors.newFixedThreadPool(POOL_SIZE, daemonThreads("bot-search-"));
+
+    private final String name;
+    private final BotDifficulty difficulty;
+    private final BotEngine engine;
+    private volatile boolean cancelled = false;
+
+    public BotPlayer(BotDifficulty difficulty) {
+        this(difficulty, BotEngine.ALPHA_BETA);
+    }
+
+    public BotPlayer(BotDifficulty difficulty, String engineType) {
+        this.difficulty = difficulty;
+        this.engine = BotEngine.create(engineType, difficulty);
+        this.name = engine instanceof MctsSearch
+            ? "Bot " + engine.getLabel() + " (" + difficulty.getLabel() + ")"
+            : "Bot (" + difficulty.getLabel() + ")";
+    }
+
+    /**
+     * Calcula la jugada para la posición dada en el pool de cálculo.
+     * La posición se copia, así que el llamante puede seguir usándola.
+     */
+    public void requestMove(Bitboard position, IntConsumer onMove) {
+        Bitboard copy = new Bitboard(position);
+        COMPUTE_POOL.execute(() -> {
+            if (cancelled) return;
+            int column = chooseMove(copy);
+            if (!cancelled && column >= 0) {
+                onMove.accept(column);
+            }
+        });
+    }
+
+    /** Búsqueda síncrona (la usa requestMove dentro del pool) */
+    public int chooseMove(Bitboard position) {
+        if (difficulty.getMistakeRate() > 0 && ThreadLocalRandom.current().nextDouble() < difficulty.getMistakeRate()) {
+            return randomColumn(position);
+        }
+        int bookMove = usesBook() ? OpeningBook.shared().lookupExact(position) : -1;
+        if (bookMove >= 0 && position.canPlay(bookMove)) {
+            System.out.println("🤖 " + name + " juega " + bookMove + " (libro de aperturas)");
+            return bookMove;
+        }
+        SearchResult result = engine.search(position);
+        System.out.println("🤖 " + name + " juega " + result);
+        return result.getMove();
+    }
+
+    /** Descarta cualquier jugada pendiente y corta la búsqueda en curso */
+    public void cancel() {
+        cancelled = true;
+        engine.stop();
+        engine.release();
+    }
+
+    // El libro solo tiene jugadas resueltas hasta el final: los niveles con menos
+    // profundidad jugarían por encima de su nivel, así que buscan como siempre
+    private boolean usesBook() {
+        return difficulty.getMaxDepth() >= OpeningBook.SEARCH_DEPTH;
+    }
+
+    private int randomColumn(Bitboard position) {
+        int[] columns = new int[Bitboard.COLS];
+        int count = 0;
+        for (int c = 0; c < Bitboard.COLS; c++) {
+            if (position.canPlay(c)) columns[count++] = c;
+        }
+        return count == 0 ? -1 : columns[ThreadLocalRandom.current().nextInt(count)];
+    }
+
+    static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public BotDifficulty getDifficulty() { return difficulty; }
+    public BotEngine getEngine() { return engine; }
+}
@@ -0,0 +1,139 @@
+package com.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.json.JSONObject;
+
+import com.shared.BinaryCodec;
+import com.shared.JsonCodec;
+import com.shared.MessageCodec;
+
+/**
+ * Envío y recepción con el códec que ha acordado cada conexión (ver
+ * MessageCodec). El códec lo guarda el ConnectionContext de cada conexión.
+ */
+final class Codecs {
+
+    private static final MessageCodec DEFAULT = new JsonCodec();
+
+    private Codecs() {}
+
+    /**
+     * Draft del servidor: prefiere el binario, luego JSON, y el protocolo
+     * vacío acepta a los clientes que no envían Sec-WebSocket-Protocol.
+     */
+    static List<Draft> serverDrafts() {
+        List<IProtocol> protocols = List.of(
+            new Protocol(MessageCodec.BINARY_PROTOCOL),
+            new Protocol(MessageCodec.JSON_PROTOCOL),
+            new Protocol(""));
+        return List.of(new Draft_6455(List.of(), protocols));
+    }
+
+    /** El códec del subprotocolo acordado en el handshake de una conexión recién abierta */
+    static MessageCodec negotiate(WebSocket conn) {
+        IProtocol protocol = conn.getProtocol();
+        return MessageCodec.forProtocol(protocol != null ? protocol.getProvidedProtocol() : null);
+    }
+
+    static MessageCodec of(WebSocket conn) {
+        ConnectionContext context = ConnectionContext.of(conn);
+        return context != null ? context.getCodec() : DEFAULT;
+    }
+
+    /** Mensajes puntuales (invitaciones, errores): salen enseguida, por delante de lo que espere en la cola */
+    static void send(WebSocket conn, JSONObject message) {
+        if (conn == null || !conn.isOpen()) return;
+        ConnectionContext context = ConnectionContext.of(conn);
+        if (context != null) {
+            context.getOutbound().send(message);
+        } else {
+            write(conn, DEFAULT, message);
+        }
+    }
+
+    /**
+     * Envía un mensaje ya escrito con JsonFrameWriter por la cola de salida
+     * de la conexión (ver OutboundQueue.Kind para qué puede esperar o
+     * sustituirse). stream es el tema al que pertenece: una foto solo
+     * sustituye a lo pendiente de su mismo tema.
+     */
+    static void send(WebSocket conn, JsonFrame frame, OutboundQueue.Kind kind, String stream) {
+        if (conn == null || !conn.isOpen()) return;
+        ConnectionContext context = ConnectionContext.of(conn);
+        if (context != null) {
+            context.getOutbound().send(frame, kind, stream);
+        } else {
+            write(conn, DEFAULT, frame);
+        }
+    }
+
+    // Escritura en la librería, desde OutboundQueue; devuelven los bytes del payload
+
+    static int write(ConnectionContext context, JSONObject message) {
+        context.countFrameSent();
+        return write(context.getConnection(), context.getCodec(), message);
+    }
+
+    static int write(ConnectionContext context, JsonFrame frame) {
+        context.countFrameSent();
+        return write(context.getConnection(), context.getCodec(), frame);
+    }
+
+    private static int write(WebSocket conn, MessageCodec codec, JSONObject message) {
+        if (!conn.isOpen()) return 0;
+        try {
+            if (!codec.isBinary()) {
+                // Los bytes UTF-8, no los caracteres: es lo que cuentan las marcas de agua
+                byte[] bytes = message.toString().getBytes(StandardCharsets.UTF_8);
+                TextFrame text = new TextFrame();
+                text.setPayload(ByteBuffer.wrap(bytes));
+                text.setFin(true);
+                conn.sendFrame(text);
+                return bytes.length;
+            }
+            // Los nombres que recuerda el códec cambian al codificar: codificar y encolar sin intercalar otros envíos
+            synchronized (codec) {
+                ByteBuffer payload = codec.encode(message);
+                int size = payload.remaining();
+                conn.send(payload);
+                return size;
+            }
+        } catch (WebsocketNotConnectedException e) {
+            return 0; // Se ha cerrado entre la comprobación y el envío
+        }
+    }
+
+    // Los clientes JSON reciben una vista de los mismos bytes JSON (sin pasar por
+    // JSONObject ni por String); sendFrame, con los bloqueos y comprobaciones de
+    // estado de la librería, los enmarca copiándolos para cada destinatario
+    private static int write(WebSocket conn, MessageCodec codec, JsonFrame frame) {
+        if (!conn.isOpen()) return 0;
+        try {
+            if (!codec.isBinary()) {
+                TextFrame text = new TextFrame();
+                text.setPayload(frame.json());
+                text.setFin(true);
+                conn.sendFrame(text);
+                return frame.size();
+            }
+            synchronized (codec) {
+                ByteBuffer payload = codec instanceof BinaryCodec binary ? frame.binary(binary) : codec.encode(frame.tree());
+                int size = payload.remaining();
+                conn.send(payload);
+                return size;
+            }
+        } catch (WebsocketNotConnectedException e) {
+            return 0; // Se ha cerrado entre la comprobación y el envío
+        }
+    }
+}
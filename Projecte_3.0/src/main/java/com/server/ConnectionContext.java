@@ -0,0 +1,107 @@
+package com.server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.java_websocket.WebSocket;
+
+import com.shared.MessageCodec;
+
+/**
+ * Todo lo que el servidor sabe de una conexión, guardado como adjunto del
+ * WebSocket en onOpen: con conn.getAttachment() se llega en O(1) al nombre,
+ * la partida, el códec y el carril de ConnectionPipeline, sin buscar en
+ * ningún mapa en cada mensaje. También lleva su cola de salida
+ * (OutboundQueue), por la que pasa todo lo que se le envía.
+ *
+ * El nombre se fija una vez en clientConnect (GameWebSocketServer mantiene
+ * el índice nombre → contexto, con nombres únicos) y la sesión, con sus
+ * suscripciones en TopicBus, cambia al empezar y terminar cada partida (o al
+ * mirar una como espectador).
+ *
+ * Con el nombre se le da un resumeToken. Si la conexión se corta en mitad de
+ * una partida, el contexto se guarda un tiempo de gracia (detach) y una
+ * conexión nueva con ese token lo retoma; retire marca, una sola vez, que el
+ * contexto ya ha terminado: retomado por otra conexión o caducado.
+ */
+final class ConnectionContext {
+
+    private final WebSocket connection;
+    private final MessageCodec codec;
+    private final Mailbox lane;
+    private final OutboundQueue outbound = new OutboundQueue(this);
+    private final long openedAt = System.currentTimeMillis();
+
+    private volatile String name;          // null hasta clientConnect
+    private volatile GameSession session;  // null si está en el lobby
+    private volatile GameSession watching; // Partida que mira como espectador (solo lectura)
+    private final Set<String> topics = ConcurrentHashMap.newKeySet(); // Suscripciones en TopicBus
+    private volatile String resumeToken;   // Para retomarlo desde otra conexión
+    private volatile long detachedAt = 0;  // Cuándo se cortó, si está en el tiempo de gracia
+    private WheelTimer.Timeout grace;      // Fin del tiempo de gracia (con el lock del contexto)
+    private boolean retired = false;       // Retomado o caducado (con el lock del contexto)
+
+    // Contadores
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+
+    ConnectionContext(WebSocket connection, MessageCodec codec, Mailbox lane) {
+        this.connection = connection;
+        this.codec = codec;
+        this.lane = lane;
+    }
+
+    /** El contexto de una conexión, o null si aún no ha pasado por onOpen */
+    static ConnectionContext of(WebSocket conn) {
+        return conn != null && conn.getAttachment() instanceof ConnectionContext context ? context : null;
+    }
+
+    WebSocket getConnection() { return connection; }
+    MessageCodec getCodec() { return codec; }
+    Mailbox getLane() { return lane; }
+    OutboundQueue getOutbound() { return outbound; }
+    long getOpenedAt() { return openedAt; }
+
+    String getName() { return name; }
+    void setName(String name) { this.name = name; }
+
+    GameSession getSession() { return session; }
+    void setSession(GameSession session) { this.session = session; }
+
+    boolean isInGame() { return session != null; }
+
+    GameSession getWatching() { return watching; }
+    void setWatching(GameSession watching) { this.watching = watching; }
+
+    Set<String> getTopics() { return topics; }
+
+    String getResumeToken() { return resumeToken; }
+    void setResumeToken(String resumeToken) { this.resumeToken = resumeToken; }
+
+    long getDetachedAt() { return detachedAt; }
+    boolean isDetached() { return detachedAt != 0; }
+
+    /** La conexión se ha cortado: espera a que vuelva hasta grace. False si ya está retirado */
+    synchronized boolean detach(WheelTimer.Timeout grace) {
+        if (retired) return false;
+        this.grace = grace;
+        this.detachedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /** Lo retoma otra conexión o caduca, lo que pase primero; true solo para el primero */
+    synchronized boolean retire() {
+        if (retired) return false;
+        retired = true;
+        if (grace != null) grace.cancel();
+        return true;
+    }
+
+    synchronized boolean isRetired() { return retired; }
+
+    void countMessageReceived() { messagesReceived.incrementAndGet(); }
+    void countFrameSent() { framesSent.incrementAndGet(); }
+    long getMessagesReceived() { return messagesReceived.get(); }
+    long getFramesSent() { return framesSent.get(); }
+}
@@ -0,0 +1,76 @@
+package com.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Etapa entre el hilo del WebSocket y los manejadores de mensajes: onMessage
+ * solo encola, y un pool propio y acotado (un hilo por núcleo) hace el resto
+ * (decodificar, atender, escribir la respuesta). Así un manejador lento ya no
+ * retrasa a las demás conexiones que comparten hilo de lectura.
+ *
+ * Cada conexión tiene su carril (newLane(), guardado en su ConnectionContext),
+ * un Mailbox sobre este pool: los mensajes de una misma conexión se atienden
+ * de uno en uno y en el orden en que llegaron, y los de conexiones distintas
+ * en paralelo. El cierre también pasa por el
+ * carril, detrás de los mensajes que aún estaban en cola.
+ *
+ * Métricas: tiempo en cola (de onMessage a empezar), tiempo del manejador y
+ * lo que tarda el propio onMessage en encolar, que debe quedarse en micros.
+ */
+final class ConnectionPipeline {
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), BotPlayer.daemonThreads("pipeline-"));
+
+    private final AtomicInteger lanes = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram handlerLatency = new LatencyHistogram();
+    private final LatencyHistogram enqueueLatency = new LatencyHistogram();
+
+    /** Carril para una conexión recién abierta */
+    Mailbox newLane() {
+        lanes.incrementAndGet();
+        return new Mailbox(POOL);
+    }
+
+    /** Encola el manejo de un mensaje; lo llama el hilo del WebSocket */
+    void submit(ConnectionContext context, Runnable handler) {
+        long received = System.nanoTime();
+        context.countMessageReceived();
+        queued.incrementAndGet();
+        context.getLane().execute(() -> run(handler, received));
+        enqueueLatency.record(System.nanoTime() - received);
+    }
+
+    /** Encola la limpieza de una conexión cerrada, la última tarea de su carril */
+    void close(ConnectionContext context, Runnable cleanup) {
+        long received = System.nanoTime();
+        queued.incrementAndGet();
+        lanes.decrementAndGet();
+        context.getLane().execute(() -> run(cleanup, received));
+    }
+
+    private void run(Runnable handler, long received) {
+        long start = System.nanoTime();
+        queued.decrementAndGet();
+        queueLatency.record(start - received);
+        try {
+            handler.run();
+        } catch (Exception e) {
+            System.err.println("Error procesando mensaje: " + e.getMessage());
+        } finally {
+            handlerLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Mensajes esperando en todos los carriles */
+    int getQueuedMessages() { return queued.get(); }
+    int getLanes() { return lanes.get(); }
+    LatencyHistogram getQueueLatency() { return queueLatency; }
+    LatencyHistogram getHandlerLatency() { return handlerLatency; }
+    LatencyHistogram getEnqueueLatency() { return enqueueLatency; }
+}
@@ -0,0 +1,75 @@
+package com.server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envío agrupado de cursores y arrastres.
+ *
+ * Los clientMouseMoving y clientDragPiece solo guardan la última posición en
+ * la sesión (la nueva pisa a la anterior). Una tarea periódica de WheelTimer,
+ * compartida por todas las sesiones, recorre las registradas a ritmo fijo y cada
+ * una envía, si algo ha cambiado, un solo cursorUpdate con los dos jugadores.
+ * Así los mensajes de cursor por partida tienen un techo (el ritmo) en lugar
+ * de ir uno por evento de ratón.
+ *
+ * Las jugadas, el estado y la cuenta atrás no pasan por aquí: se envían al
+ * momento.
+ *
+ * Los espectadores reciben los cursores a menos ritmo, solo en uno de cada
+ * hz / spectatorHz ticks: con miles mirando una partida es lo que más pesa,
+ * y para mirar basta con menos fluidez.
+ *
+ * Ritmo configurable con -Dcursor.hz=N (por defecto 30) y
+ * -Dcursor.spectatorHz=N (por defecto 10).
+ */
+public class CursorConflator {
+
+    public static final int DEFAULT_HZ = 30;
+    public static final int DEFAULT_SPECTATOR_HZ = 10;
+
+    private static final CursorConflator SHARED = new CursorConflator(
+        Integer.getInteger("cursor.hz", DEFAULT_HZ), Integer.getInteger("cursor.spectatorHz", DEFAULT_SPECTATOR_HZ));
+
+    private final Set<GameSession> sessions = ConcurrentHashMap.newKeySet();
+    private final int hz;
+    private final int spectatorEvery; // Ticks entre envíos a los espectadores
+    private long ticks = 0;           // Solo lo toca el hilo de WheelTimer
+
+    CursorConflator(int hz, int spectatorHz) {
+        this.hz = Math.max(1, hz);
+        this.spectatorEvery = Math.max(1, this.hz / Math.max(1, spectatorHz));
+        long periodMicros = 1_000_000L / this.hz;
+        // Para toda la vida del servidor: nunca se cancela
+        WheelTimer.shared().scheduleAtFixedRate(this::flush, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    public static CursorConflator shared() {
+        return SHARED;
+    }
+
+    public void register(GameSession session) {
+        sessions.add(session);
+    }
+
+    public void unregister(GameSession session) {
+        sessions.remove(session);
+    }
+
+    public int getHz() { return hz; }
+    public int getSpectatorHz() { return hz / spectatorEvery; }
+    public int getSessionCount() { return sessions.size(); }
+
+    private void flush() {
+        boolean spectatorTick = ++ticks % spectatorEvery == 0;
+        for (GameSession session : sessions) {
+            try {
+                session.flushCursors(spectatorTick);
+            } catch (Exception e) {
+                // Una sesión con problemas no puede parar el envío de las demás
+                System.err.println("Error enviando cursores de la sesión " + session.getSessionId() + ": " + e.getMessage());
+            }
+        }
+    }
+}
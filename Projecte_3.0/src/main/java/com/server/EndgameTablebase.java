@@ -0,0 +1,172 @@
+package com.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.shared.Bitboard;
+
+/**
+ * Tabla de finales en disco: resultado exacto (victoria/tablas/derrota) y
+ * distancia en plies para posiciones con pocas casillas libres.
+ *
+ * Formato (big-endian), generado por EndgameTablebaseBuilder:
+ *   cabecera: MAGIC (int), VERSION (int), número de registros (int), casillas libres máximas (int)
+ *   registros de 8 bytes ordenados: (clave canónica << 8) | valor
+ *
+ * La clave es Bitboard.canonicalKey() (49 bits, única por posición salvo
+ * simetría), así que clave y valor caben en un solo long y ordenar los
+ * registros es ordenar por clave. El valor es el resultado para el jugador
+ * al que le toca en los 2 bits altos y la distancia en los 6 bajos.
+ * Igual que OpeningBook, el fichero se mapea en memoria y no ocupa heap.
+ *
+ * Solo cubre los árboles de las semillas de EndgameTablebaseBuilder, así que
+ * en partidas de verdad apenas acierta; por eso BotPlayer no la consulta.
+ */
+public class EndgameTablebase {
+
+    static final int MAGIC = 0x43344542; // "C4EB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 8;
+
+    public static final int NOT_FOUND = -1;
+    public static final int WIN = 1;
+    public static final int DRAW = 2;
+    public static final int LOSS = 3;
+
+    public static final Path DEFAULT_PATH = Path.of("data", "endgame.bin");
+
+    private static volatile EndgameTablebase shared = empty();
+
+    private final ByteBuffer records;
+    private final int count;
+    private final int maxEmpty;
+
+    private EndgameTablebase(ByteBuffer records, int count, int maxEmpty) {
+        this.records = records;
+        this.count = count;
+        this.maxEmpty = maxEmpty;
+    }
+
+    public static EndgameTablebase empty() {
+        return new EndgameTablebase(ByteBuffer.allocate(0), 0, -1);
+    }
+
+    public static EndgameTablebase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Formato de tabla de finales no válido: " + path);
+            }
+            int count = buffer.getInt(8);
+            int maxEmpty = buffer.getInt(12);
+            if (buffer.limit() < HEADER_SIZE + (long) count * RECORD_SIZE) {
+                throw new IOException("Tabla de finales truncada: " + path);
+            }
+            return new EndgameTablebase(buffer, count, maxEmpty);
+        }
+    }
+
+    /** Carga la tabla compartida (los bots aún no la consultan: ver BotPlayer) */
+    public static void loadShared(Path path) {
+        if (!Files.exists(path)) {
+            System.out.println("🏁 Sin tabla de finales en " + path + " (genera una con EndgameTablebaseBuilder)");
+            return;
+        }
+        try {
+            shared = open(path);
+            System.out.println("🏁 Tabla de finales cargada: " + shared.count + " posiciones con hasta "
+                + shared.maxEmpty + " casillas libres");
+        } catch (IOException e) {
+            System.err.println("Error cargando tabla de finales: " + e.getMessage());
+        }
+    }
+
+    public static EndgameTablebase shared() {
+        return shared;
+    }
+
+    /** @return el valor de la posición (ver result/distance) o NOT_FOUND */
+    public int probe(Bitboard position) {
+        if (Bitboard.CELLS - position.getMoveCount() > maxEmpty) return NOT_FOUND;
+        return probeKey(position.canonicalKey());
+    }
+
+    int probeKey(long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long record = records.getLong(HEADER_SIZE + mid * RECORD_SIZE);
+            long midKey = record >>> 8;
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return (int) (record & 0xFF);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Mejor columna según la tabla: la victoria más rápida, si no tablas y,
+     * si todo pierde, la derrota más lenta.
+     * @return la columna, o -1 si la posición no está en la tabla
+     */
+    public int bestMove(Bitboard position) {
+        if (probe(position) == NOT_FOUND) return -1;
+
+        // Las posiciones con victoria inmediata se guardan sin sus hijas
+        long wins = Bitboard.winningSpots(position.getPieces(position.currentPlayer()), position.getMask())
+                  & position.playableMask();
+        if (wins != 0) return Long.numberOfTrailingZeros(wins) / Bitboard.H1;
+
+        Bitboard board = new Bitboard(position);
+        int bestColumn = -1;
+        int bestRank = Integer.MIN_VALUE;
+        for (int col = 0; col < Bitboard.COLS; col++) {
+            if (!board.canPlay(col)) continue;
+            board.play(col);
+            // El valor de la hija es para el rival
+            int child = board.isFull() ? value(DRAW, 0) : probe(board);
+            board.undo();
+            if (child == NOT_FOUND) return -1;
+
+            int rank = switch (result(child)) {
+                case LOSS -> Bitboard.CELLS - distance(child);
+                case WIN -> distance(child) - Bitboard.CELLS;
+                default -> 0;
+            };
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestColumn = col;
+            }
+        }
+        return bestColumn;
+    }
+
+    static int value(int result, int distance) {
+        return (result << 6) | distance;
+    }
+
+    public static int result(int value) {
+        return value >>> 6;
+    }
+
+    /** Plies hasta el final de la partida jugando perfecto (incluida la jugada ganadora) */
+    public static int distance(int value) {
+        return value & 0x3F;
+    }
+
+    // Getters
+    public int getCount() { return count; }
+    public int getMaxEmpty() { return maxEmpty; }
+    public long getSizeInBytes() { return HEADER_SIZE + (long) count * RECORD_SIZE; }
+}
@@ -0,0 +1,282 @@
+package com.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.shared.Bitboard;
+
+/**
+ * Genera la tabla de finales que lee EndgameTablebase.
+ *
+ * Todas las posiciones con K casillas libres no caben en ningún sitio para K
+ * razonables, así que se parte de posiciones semilla: partidas de
+ * autojuego con la política GREEDY de SelfPlaySimulator (gana si puede, tapa
+ * si debe; con semilla fija, el resultado es reproducible) hasta dejar K
+ * casillas libres. Cada semilla se resuelve por minimax completo, sin poda,
+ * para tener la distancia exacta, y se guardan todas las posiciones de su árbol.
+ *
+ * Con una lista de K (por ejemplo 6,8,10) genera data/endgame-K.bin para
+ * cada una y muestra tamaño, tiempo de generación, latencia de consulta y
+ * acierto: de las posiciones con K casillas libres o menos de otras partidas
+ * de autojuego (con otra semilla), cuántas están en la tabla.
+ *
+ * Uso: ./run.sh com.server.EndgameTablebaseBuilder [K[,K...]] [semillas] [fichero]
+ */
+public class EndgameTablebaseBuilder {
+
+    private static final int DEFAULT_MAX_EMPTY = 10;
+    private static final int DEFAULT_SEEDS = 2000;
+    private static final long RANDOM_SEED = 0x434F4E45435441L;
+    private static final long TEST_SEED = RANDOM_SEED + 1;
+    private static final int TEST_GAMES = 10_000;
+    private static final int LOOKUPS = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        int[] maxEmpties = args.length > 0
+            ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+            : new int[] { DEFAULT_MAX_EMPTY };
+        int seeds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SEEDS;
+
+        System.out.println("K\tposiciones\tbytes\tgeneración(ms)\tacierto(ns)\tfallo(ns)\tacierto(%)");
+        for (int maxEmpty : maxEmpties) {
+            Path output = args.length > 2 && maxEmpties.length == 1 ? Path.of(args[2])
+                        : maxEmpties.length == 1 ? EndgameTablebase.DEFAULT_PATH
+                        : Path.of("data", "endgame-" + maxEmpty + ".bin");
+
+            long start = System.currentTimeMillis();
+            long[] records = build(maxEmpty, seeds);
+            write(output, maxEmpty, records);
+            long buildMillis = System.currentTimeMillis() - start;
+
+            EndgameTablebase table = EndgameTablebase.open(output);
+            System.out.printf("%d\t%d\t%d\t%d\t%.0f\t%.0f\t%.2f%n", maxEmpty, table.getCount(), table.getSizeInBytes(),
+                buildMillis, hitLatencyNanos(table, records), missLatencyNanos(table, maxEmpty),
+                hitRate(table, maxEmpty) * 100);
+        }
+    }
+
+    /** @return registros (clave << 8 | valor) ordenados y sin repetir */
+    static long[] build(int maxEmpty, int seeds) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Bitboard[] roots = seedPositions(maxEmpty, seeds, new SplittableRandom(RANDOM_SEED));
+
+        // Cada hilo resuelve un trozo de semillas con su propia memoria; las
+        // posiciones que se repiten entre trozos se quitan al final
+        List<long[]> parts = IntStream.range(0, threads).parallel()
+            .mapToObj(t -> {
+                Solver solver = new Solver();
+                for (int i = t; i < roots.length; i += threads) {
+                    solver.solve(roots[i]);
+                }
+                return solver.records();
+            })
+            .collect(Collectors.toList());
+
+        long[] all = new long[parts.stream().mapToInt(p -> p.length).sum()];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, offset, part.length);
+            offset += part.length;
+        }
+        Arrays.parallelSort(all);
+
+        int unique = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (unique == 0 || all[i] != all[unique - 1]) all[unique++] = all[i];
+        }
+        return Arrays.copyOf(all, unique);
+    }
+
+    private static Bitboard[] seedPositions(int maxEmpty, int seeds, SplittableRandom random) {
+        Bitboard[] roots = new Bitboard[seeds];
+        for (int i = 0; i < seeds; i++) {
+            Bitboard board = new Bitboard();
+            while (board.getMoveCount() < Bitboard.CELLS - maxEmpty) {
+                board.play(greedyColumn(board, random));
+                if (board.lastMoveWon()) board.reset();
+            }
+            roots[i] = board;
+        }
+        return roots;
+    }
+
+    // Una jugada de autojuego, como SelfPlaySimulator.Policy.GREEDY
+    private static int greedyColumn(Bitboard board, SplittableRandom random) {
+        long own = board.getPieces(board.currentPlayer());
+        long opp = board.getMask() ^ own;
+        long choices = SelfPlaySimulator.Policy.GREEDY.candidates(own, opp, board.getMask(), board.playableMask());
+        for (int k = random.nextInt(Long.bitCount(choices)); k > 0; k--) {
+            choices &= choices - 1;
+        }
+        return Long.numberOfTrailingZeros(choices) / Bitboard.H1;
+    }
+
+    /**
+     * Fracción de posiciones con maxEmpty casillas libres o menos, en partidas
+     * de autojuego que no han servido de semilla, que la tabla resuelve.
+     */
+    private static double hitRate(EndgameTablebase table, int maxEmpty) {
+        SplittableRandom random = new SplittableRandom(TEST_SEED);
+        long probes = 0;
+        long hits = 0;
+        for (int game = 0; game < TEST_GAMES; game++) {
+            Bitboard board = new Bitboard();
+            while (true) {
+                board.play(greedyColumn(board, random));
+                if (board.lastMoveWon() || board.isFull()) break;
+                if (Bitboard.CELLS - board.getMoveCount() <= maxEmpty) {
+                    probes++;
+                    if (table.probe(board) != EndgameTablebase.NOT_FOUND) hits++;
+                }
+            }
+        }
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    private static void write(Path output, int maxEmpty, long[] records) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.writeInt(EndgameTablebase.MAGIC);
+            out.writeInt(EndgameTablebase.VERSION);
+            out.writeInt(records.length);
+            out.writeInt(maxEmpty);
+            for (long record : records) {
+                out.writeLong(record);
+            }
+        }
+    }
+
+    private static double hitLatencyNanos(EndgameTablebase table, long[] records) {
+        if (records.length == 0) return 0;
+        SplittableRandom random = new SplittableRandom(RANDOM_SEED);
+        long[] keys = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = records[random.nextInt(records.length)] >>> 8;
+        }
+        return lookupNanos(table, keys);
+    }
+
+    private static double missLatencyNanos(EndgameTablebase table, int maxEmpty) {
+        Bitboard[] boards = seedPositions(maxEmpty, 1000, new SplittableRandom(RANDOM_SEED));
+        long[] keys = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            // Semillas nuevas con la misma cantidad de fichas; la mayoría no están
+            keys[i] = boards[i % boards.length].canonicalKey() ^ 1L << (i % Bitboard.CELLS);
+        }
+        return lookupNanos(table, keys);
+    }
+
+    private static double lookupNanos(EndgameTablebase table, long[] keys) {
+        long checksum = 0;
+        // Una pasada de calentamiento para el JIT y la caché de páginas
+        for (long key : keys) checksum += table.probeKey(key);
+        long start = System.nanoTime();
+        for (long key : keys) checksum += table.probeKey(key);
+        long elapsed = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) System.out.println(checksum);
+        return (double) elapsed / keys.length;
+    }
+
+    /**
+     * Minimax exacto con memoria (clave canónica -> valor) en una tabla hash
+     * de direccionamiento abierto sobre arrays primitivos.
+     */
+    private static class Solver {
+        private long[] keys = new long[1 << 16];
+        private byte[] values = new byte[1 << 16];
+        private int size = 0;
+
+        int solve(Bitboard board) {
+            long key = board.canonicalKey();
+            int slot = find(key);
+            if (keys[slot] == key) return values[slot] & 0xFF;
+
+            int value = evaluate(board);
+            put(key, value);
+            return value;
+        }
+
+        private int evaluate(Bitboard board) {
+            int me = board.currentPlayer();
+            long own = board.getPieces(me);
+            long mask = board.getMask();
+            if ((Bitboard.winningSpots(own, mask) & board.playableMask()) != 0) {
+                return EndgameTablebase.value(EndgameTablebase.WIN, 1);
+            }
+            // Sin victoria inmediata, llenar la última casilla son tablas
+            if (board.getMoveCount() == Bitboard.CELLS - 1) {
+                return EndgameTablebase.value(EndgameTablebase.DRAW, 1);
+            }
+
+            int bestWin = Integer.MAX_VALUE;
+            int drawDistance = -1;
+            int worstLoss = -1;
+            for (int col = 0; col < Bitboard.COLS; col++) {
+                if (!board.canPlay(col)) continue;
+                board.play(col);
+                int child = solve(board);
+                board.undo();
+
+                int distance = EndgameTablebase.distance(child) + 1;
+                switch (EndgameTablebase.result(child)) {
+                    case EndgameTablebase.LOSS -> bestWin = Math.min(bestWin, distance);
+                    case EndgameTablebase.DRAW -> drawDistance = Math.max(drawDistance, distance);
+                    default -> worstLoss = Math.max(worstLoss, distance);
+                }
+            }
+            if (bestWin != Integer.MAX_VALUE) return EndgameTablebase.value(EndgameTablebase.WIN, bestWin);
+            if (drawDistance >= 0) return EndgameTablebase.value(EndgameTablebase.DRAW, drawDistance);
+            return EndgameTablebase.value(EndgameTablebase.LOSS, worstLoss);
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void put(long key, int value) {
+            if (size * 2 >= keys.length) grow();
+            int slot = find(key);
+            keys[slot] = key;
+            values[slot] = (byte) value;
+            size++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            byte[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new byte[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        long[] records() {
+            long[] records = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) records[n++] = keys[i] << 8 | (values[i] & 0xFF);
+            }
+            return records;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+
+/**
+ * CPU y memoria por envío del mismo mensaje a 2, 100 y 10.000 destinatarios
+ * (una foto del lobby con 50 jugadores), comparando los dos caminos de la
+ * librería para un cliente JSON:
+ *
+ * - send(String): convertir a UTF-8, crear el frame y copiarlo (lo que hace
+ *   conn.send(texto), como el antiguo broadcastPlayerList).
+ * - TextFrame compartido: el JSON se escribe una vez (JsonFrame.json()) y
+ *   sendFrame solo crea y copia el frame para cada uno (lo que hace Codecs).
+ *   Es lo que envía el servidor: la copia por destinatario sigue ahí.
+ *
+ * Cada "destinatario" es una cola como el outQueue de la conexión, con lo que
+ * la librería le añade en sendFrame (Draft.createBinaryFrame); no hay
+ * sockets, así que se mide solo el trabajo de preparar el envío. Antes de
+ * medir comprueba que los dos caminos dan los mismos bytes.
+ *
+ * Uso: ./run.sh com.server.FanoutBenchmark
+ */
+public class FanoutBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final Draft_6455 DRAFT = new Draft_6455();
+
+    public static void main(String[] args) {
+        Lobby lobby = new Lobby();
+        for (int i = 0; i < 50; i++) {
+            lobby.join("jugador" + i);
+        }
+        JsonFrame frame = lobby.snapshot();
+        String text = frame.toString();
+
+        if (!viaString(text).equals(viaSharedPayload(frame))) {
+            System.err.println("❌ El TextFrame compartido no coincide con el de send(String)");
+            System.exit(1);
+        }
+
+        System.out.println("Por envío de un mensaje de " + frame.size() + " bytes (1 hilo)");
+        System.out.printf("%-14s %-22s %14s %14s%n", "destinatarios", "", "CPU (µs)", "memoria (KB)");
+        for (int recipients : new int[] {2, 100, 10_000}) {
+            List<ArrayDeque<ByteBuffer>> queues = queues(recipients);
+            int repeats = Math.max(20, 200_000 / recipients);
+            report(recipients, "send(String)", repeats, () -> {
+                for (ArrayDeque<ByteBuffer> queue : queues) queue.add(viaString(text));
+            }, queues);
+            report(recipients, "TextFrame compartido", repeats, () -> {
+                for (ArrayDeque<ByteBuffer> queue : queues) queue.add(viaSharedPayload(frame));
+            }, queues);
+        }
+    }
+
+    private static void report(int recipients, String name, int repeats, Runnable fanout, List<ArrayDeque<ByteBuffer>> queues) {
+        // Calentamiento del JIT
+        for (int i = 0; i < repeats; i++) {
+            fanout.run();
+            clear(queues);
+        }
+        long cpu = 0, allocated = 0;
+        for (int i = 0; i < repeats; i++) {
+            long startCpu = THREADS.getCurrentThreadCpuTime();
+            long startAllocated = THREADS.getCurrentThreadAllocatedBytes();
+            fanout.run();
+            cpu += THREADS.getCurrentThreadCpuTime() - startCpu;
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - startAllocated;
+            clear(queues); // Como si el socket ya lo hubiera escrito
+        }
+        System.out.printf("%-14d %-22s %14.1f %14.1f%n", recipients, name,
+            cpu / 1e3 / repeats, allocated / 1024.0 / repeats);
+    }
+
+    // conn.send(String): la librería crea los frames del texto y los enmarca
+    private static ByteBuffer viaString(String text) {
+        List<Framedata> frames = DRAFT.createFrames(text, false);
+        return DRAFT.createBinaryFrame(frames.get(0));
+    }
+
+    // conn.sendFrame(TextFrame) con el payload compartido: solo se ahorra la conversión a UTF-8
+    private static ByteBuffer viaSharedPayload(JsonFrame frame) {
+        TextFrame text = new TextFrame();
+        text.setPayload(frame.json());
+        text.setFin(true);
+        return DRAFT.createBinaryFrame(text);
+    }
+
+    private static List<ArrayDeque<ByteBuffer>> queues(int count) {
+        List<ArrayDeque<ByteBuffer>> queues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) queues.add(new ArrayDeque<>());
+        return queues;
+    }
+
+    private static void clear(List<ArrayDeque<ByteBuffer>> queues) {
+        for (ArrayDeque<ByteBuffer> queue : queues) queue.clear();
+    }
+}
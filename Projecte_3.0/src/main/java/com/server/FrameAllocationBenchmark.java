@@ -0,0 +1,304 @@
+package com.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.shared.BinaryCodec;
+import com.shared.ClientInfo;
+import com.shared.GameData;
+import com.shared.GameObject;
+import com.shared.GameState;
+import com.shared.Move;
+
+/**
+ * Memoria reservada por mensaje al escribir los mensajes del servidor con
+ * org.json (JSONObject + toString + bytes UTF-8, como antes) y con
+ * JsonFrameWriter, y al leer los mensajes de ratón y arrastre con
+ * new JSONObject(...) y con JsonPullParser. Antes de medir comprueba que los
+ * dos caminos dan el mismo JSON.
+ *
+ * Para los clientes binarios el frame se vuelve a leer con org.json y se pasa
+ * por BinaryCodec: se mide también ese camino, con dos destinatarios por
+ * mensaje, codificando para cada uno y reutilizando lo codificado
+ * (JsonFrame.binary).
+ *
+ * Uso: ./run.sh com.server.FrameAllocationBenchmark [mensajes por medida]
+ */
+public class FrameAllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final String MOUSE = "{\"x\":412.5,\"y\":233,\"type\":\"clientMouseMoving\"}";
+    private static final String DRAG = "{\"pieceColor\":\"R\",\"x\":398.25,\"y\":120.5,\"type\":\"clientDragPiece\",\"isDragging\":true}";
+
+    // Para que el JIT no elimine el trabajo medido
+    private static long sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        GameState state = sampleState();
+
+        if (!same(oldSnapshot(state, 7), GameSession.convertGameStateToJson(state, 7))
+                || !same(oldCursors(state), newCursors(state))
+                || !same(oldPatch(), newPatch())) {
+            System.err.println("❌ JsonFrameWriter no escribe el mismo JSON que org.json");
+            System.exit(1);
+        }
+
+        System.out.println("Bytes reservados por mensaje (" + count + " mensajes, 1 hilo)");
+        System.out.printf("%-26s %12s %12s%n", "", "org.json", "streaming");
+        compare("serverData (foto)", count / 10,
+            () -> sink += bytes(oldSnapshot(state, 7)).length,
+            () -> sink += GameSession.convertGameStateToJson(state, 7).size());
+        compare("serverPatch (jugada)", count,
+            () -> sink += bytes(oldPatch()).length,
+            () -> sink += newPatch().size());
+        compare("cursorUpdate", count,
+            () -> sink += bytes(oldCursors(state)).length,
+            () -> sink += newCursors(state).size());
+        compare("clientMouseMoving (leer)", count,
+            () -> {
+                JSONObject message = new JSONObject(MOUSE);
+                sink += (long) (message.getDouble("x") + message.getDouble("y"));
+            },
+            () -> {
+                JsonPullParser in = JsonPullParser.of(MOUSE);
+                while (in.next()) {
+                    if (in.nameIs("x") || in.nameIs("y")) sink += (long) in.number();
+                }
+            });
+        compare("clientDragPiece (leer)", count,
+            () -> {
+                JSONObject message = new JSONObject(DRAG);
+                sink += message.getBoolean("isDragging") ? message.getString("pieceColor").length() : 0;
+            },
+            () -> {
+                JsonPullParser in = JsonPullParser.of(DRAG);
+                while (in.next()) {
+                    if (in.nameIs("isDragging") && in.bool()) sink++;
+                    else if (in.nameIs("pieceColor") && in.stringIs("R")) sink++;
+                }
+            });
+
+        // Los dos jugadores, binarios, con la tabla de nombres de la misma foto
+        BinaryCodec[] players = {new BinaryCodec(), new BinaryCodec()};
+        JsonFrame snapshot = GameSession.convertGameStateToJson(state, 7);
+        for (BinaryCodec codec : players) codec.encode(snapshot.tree());
+
+        System.out.println();
+        System.out.println("Clientes binarios, 2 destinatarios por mensaje (leer el JSON incluido)");
+        System.out.printf("%-26s %12s %12s%n", "", "cada uno", "compartido");
+        compare("serverPatch (binario)", count,
+            () -> {
+                JsonFrame frame = newPatch();
+                for (BinaryCodec codec : players) sink += codec.encode(frame.tree()).remaining();
+            },
+            () -> {
+                JsonFrame frame = newPatch();
+                for (BinaryCodec codec : players) sink += frame.binary(codec).remaining();
+            });
+        compare("cursorUpdate (binario)", count,
+            () -> {
+                JsonFrame frame = newCursors(state);
+                for (BinaryCodec codec : players) sink += codec.encode(frame.tree()).remaining();
+            },
+            () -> {
+                JsonFrame frame = newCursors(state);
+                for (BinaryCodec codec : players) sink += frame.binary(codec).remaining();
+            });
+    }
+
+    private static void compare(String name, int count, Runnable before, Runnable after) {
+        double beforeBytes = measure(before, count);
+        double afterBytes = measure(after, count);
+        System.out.printf("%-26s %12.0f %12.0f%n", name, beforeBytes, afterBytes);
+    }
+
+    private static double measure(Runnable encode, int count) {
+        // Calentamiento del JIT (el análisis de escape cambia mucho lo que se reserva)
+        for (int i = 0; i < count; i++) encode.run();
+        long start = THREADS.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < count; i++) encode.run();
+        return (THREADS.getCurrentThreadAllocatedBytes() - start) / (double) count;
+    }
+
+    private static boolean same(JSONObject expected, JsonFrame actual) {
+        return expected.similar(new JSONObject(actual.toString()));
+    }
+
+    // conn.send(String) convierte el texto a UTF-8 antes de enmarcarlo
+    private static byte[] bytes(JSONObject message) {
+        return message.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Una partida a medias: dos jugadores, 42 fichas y el tablero con unas cuantas jugadas */
+    private static GameState sampleState() {
+        GameState state = new GameState();
+        state.setType("serverData");
+        List<ClientInfo> clients = new ArrayList<>();
+        String[][] players = {{"Ana", "RED", "R"}, {"Bernat", "YELLOW", "Y"}};
+        for (String[] player : players) {
+            ClientInfo client = new ClientInfo();
+            client.setName(player[0]);
+            client.setColor(player[1]);
+            client.setRole(player[2]);
+            client.setMouseX(412.5);
+            client.setMouseY(233);
+            clients.add(client);
+        }
+        state.setClientsList(clients);
+
+        List<GameObject> objects = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            for (String role : new String[]{"R", "Y"}) {
+                GameObject piece = new GameObject();
+                piece.setId(role + "_" + i);
+                piece.setX(610.0 + (i % 7) * 60);
+                piece.setY(80.0 + (i / 7) * 60);
+                piece.setRole(role);
+                objects.add(piece);
+            }
+        }
+        state.setObjectsList(objects);
+
+        GameData game = new GameData();
+        String[][] board = new String[6][7];
+        for (String[] row : board) Arrays.fill(row, " ");
+        board[5][3] = "R";
+        board[5][4] = "Y";
+        board[4][3] = "R";
+        game.setBoard(board);
+        game.setStatus("playing");
+        game.setTurn("Bernat");
+        game.setWinner("");
+        game.setWinLine(new ArrayList<>());
+        state.setGame(game);
+        return state;
+    }
+
+    // Lo que hacía GameSession.convertGameStateToJson con org.json
+    private static JSONObject oldSnapshot(GameState gameState, long seq) {
+        JSONObject json = new JSONObject();
+        json.put("type", "serverData");
+        json.put("seq", seq);
+        JSONArray clientsArray = new JSONArray();
+        for (ClientInfo client : gameState.getClientsList()) {
+            JSONObject clientJson = new JSONObject();
+            clientJson.put("name", client.getName());
+            clientJson.put("color", client.getColor());
+            clientJson.put("mouseX", client.getMouseX());
+            clientJson.put("mouseY", client.getMouseY());
+            clientJson.put("role", client.getRole());
+            clientsArray.put(clientJson);
+        }
+        json.put("clientsList", clientsArray);
+        JSONArray objectsArray = new JSONArray();
+        for (GameObject obj : gameState.getObjectsList()) {
+            JSONObject objJson = new JSONObject();
+            objJson.put("id", obj.getId());
+            objJson.put("x", obj.getX());
+            objJson.put("y", obj.getY());
+            objJson.put("role", obj.getRole());
+            objectsArray.put(objJson);
+        }
+        json.put("objectsList", objectsArray);
+        GameData gameData = gameState.getGame();
+        JSONObject gameJson = new JSONObject();
+        gameJson.put("status", gameData.getStatus());
+        gameJson.put("turn", gameData.getTurn());
+        gameJson.put("winner", gameData.getWinner());
+        JSONArray boardArray = new JSONArray();
+        for (String[] row : gameData.getBoard()) {
+            JSONArray rowArray = new JSONArray();
+            for (String cell : row) rowArray.put(cell);
+            boardArray.put(rowArray);
+        }
+        gameJson.put("board", boardArray);
+        json.put("game", gameJson);
+        return json;
+    }
+
+    // El parche de una jugada: una casilla, el turno y lastMove
+    private static JSONObject oldPatch() {
+        JSONObject cell = new JSONObject();
+        cell.put("row", 4);
+        cell.put("col", 4);
+        cell.put("v", "Y");
+        JSONObject lastMove = new JSONObject();
+        lastMove.put("col", 4);
+        lastMove.put("row", 4);
+        JSONObject gameJson = new JSONObject();
+        gameJson.put("cells", new JSONArray().put(cell));
+        gameJson.put("turn", "Ana");
+        gameJson.put("lastMove", lastMove);
+        JSONObject patch = new JSONObject();
+        patch.put("type", "serverPatch");
+        patch.put("seq", 12);
+        patch.put("game", gameJson);
+        return patch;
+    }
+
+    private static JsonFrame newPatch() {
+        Move lastMove = new Move();
+        lastMove.setCol(4);
+        lastMove.setRow(4);
+        return JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "serverPatch")
+            .field("seq", 12)
+            .name("game").beginObject()
+            .name("cells").beginArray()
+            .beginObject().field("row", 4).field("col", 4).field("v", "Y").endObject()
+            .endArray()
+            .field("turn", "Ana")
+            .name("lastMove").beginObject().field("col", lastMove.getCol()).field("row", lastMove.getRow()).endObject()
+            .endObject()
+            .endObject()
+            .toFrame();
+    }
+
+    private static JSONObject oldCursors(GameState state) {
+        JSONArray cursors = new JSONArray();
+        for (ClientInfo client : state.getClientsList()) {
+            JSONObject cursor = new JSONObject();
+            cursor.put("player", client.getName());
+            cursor.put("x", client.getMouseX());
+            cursor.put("y", client.getMouseY());
+            cursor.put("dragging", true);
+            cursor.put("dragX", 398.25);
+            cursor.put("dragY", 120.5);
+            cursor.put("color", client.getRole());
+            cursors.put(cursor);
+        }
+        JSONObject message = new JSONObject();
+        message.put("type", "cursorUpdate");
+        message.put("cursors", cursors);
+        return message;
+    }
+
+    private static JsonFrame newCursors(GameState state) {
+        JsonFrameWriter out = JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "cursorUpdate")
+            .name("cursors").beginArray();
+        for (ClientInfo client : state.getClientsList()) {
+            out.beginObject()
+                .field("player", client.getName())
+                .field("x", client.getMouseX())
+                .field("y", client.getMouseY())
+                .field("dragging", true)
+                .field("dragX", 398.25)
+                .field("dragY", 120.5)
+                .field("color", client.getRole())
+                .endObject();
+        }
+        return out.endArray().endObject().toFrame();
+    }
+}
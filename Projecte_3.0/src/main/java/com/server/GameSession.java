@@ -2,10 +2,16 @@ package com.server;
 
 import org.java_websocket.WebSocket;
 import org.json.JSONObject;
-import org.json.JSONArray;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
+import com.shared.Bitboard;
 import com.shared.GameState;
 import com.shared.ClientInfo;
 import com.shared.GameObject;
@@ -13,19 +19,49 @@ import com.shared.GameData;
 import com.shared.Move;
 import com.shared.DragInfo;
 
+/**
+ * Una partida. Todo lo que cambia o envía su estado pasa por su Mailbox y se
+ * procesa de uno en uno (modelo de actor), así que no hay locks: los métodos
+ * públicos solo encolan, y el resto de métodos ya se ejecutan dentro del buzón.
+ * Los campos volatile son los que se consultan desde fuera (el servidor, los
+ * getters).
+ *
+ * Los espectadores (solo lectura) tienen sus propios temas en TopicBus. Cada
+ * frame de estado se escribe una vez y se entrega a los jugadores desde el
+ * buzón; el reparto a los espectadores, que pueden ser miles, se encola en
+ * spectatorLane, otro buzón en un pool aparte, para no retrasar a los
+ * jugadores. Quien llega a media partida recibe la foto guardada y después
+ * los parches; los cursores les llegan a menos ritmo (ver CursorConflator).
+ */
 public class GameSession {
+    private static final ExecutorService SPECTATOR_WORKERS = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2), BotPlayer.daemonThreads("spectators-"));
+    
+    private final Mailbox mailbox = new Mailbox();
+    private final Mailbox spectatorLane = new Mailbox(SPECTATOR_WORKERS); // Reparto a los espectadores, en orden
     private String sessionId;
-    private WebSocket player1;
-    private WebSocket player2;
-    private String player1Name;
-    private String player2Name;
-    private String currentTurn;
-    private String[][] board;
-    private boolean gameStarted = false;
-    private boolean gameFinished = false;
-    private String winner = "";
+    private volatile WebSocket player1;
+    private volatile WebSocket player2;
+    private volatile String player1Name;
+    private volatile String player2Name;
+    private volatile String currentTurn;
+    private final Bitboard engine = new Bitboard();
+    private String[][] board; // Vista de texto del motor, solo para enviar al cliente
+    private List<Move> winLine = new ArrayList<>();
+    private volatile boolean gameStarted = false;
+    private volatile boolean gameFinished = false;
+    private volatile String winner = "";
     private List<GameObject> gameObjects;
     private boolean countdownInProgress = false;
+    private WheelTimer.Timeout countdownTimer; // Inicio de la partida al acabar la cuenta atrás
+    private volatile BotPlayer bot; // Jugador virtual en lugar del jugador 2 (null en partidas entre personas)
+    // Temas de TopicBus: el estado de la partida y los cursores; el servidor suscribe a los jugadores
+    private final String topic;
+    private final String cursorTopic;
+    private final String spectatorTopic;
+    private final String spectatorCursorTopic;
+    private volatile boolean watched = false; // Ha tenido algún espectador: hay que repartirles
+    private volatile boolean quiet; // Partida sin conexiones (torneos): no se escribe nada por consola
 
     private GameState gameState;
 
@@ -34,22 +70,70 @@ public class GameSession {
     // Para tracking del drag & drop
     private Map<String, DragInfo> playerDragInfo = new ConcurrentHashMap<>();
     
+    // Cursores y arrastres pendientes de enviar (ver CursorConflator)
+    private final AtomicBoolean cursorsDirty = new AtomicBoolean();
+    private final AtomicBoolean spectatorCursorsDirty = new AtomicBoolean();
+    private final AtomicLong cursorEvents = new AtomicLong();
+    private final AtomicLong cursorFrames = new AtomicLong();
+    private static final AtomicLong TOTAL_CURSOR_EVENTS = new AtomicLong();
+    private static final AtomicLong TOTAL_CURSOR_FRAMES = new AtomicLong();
+    
+    // Sincronización por diferencias: una foto completa (serverData) y luego
+    // parches (serverPatch) numerados con lo que ha cambiado desde el último envío
+    private long stateSeq = 0;
+    private boolean snapshotPending = true;
+    private String[][] sentBoard = new String[Bitboard.ROWS][Bitboard.COLS];
+    private String sentStatus;
+    private String sentTurn;
+    private String sentWinner;
+    private boolean sentWinLine;
+    
+    // Versión del estado: sube con cada cambio. Mientras no cambie no se vuelve
+    // a montar nada, y la foto completa se guarda ya serializada para reenviarla
+    private volatile long stateVersion = 1;
+    private long sentVersion = 0;
+    private JsonFrame cachedSnapshot;
+    private long cachedSnapshotVersion = -1;
+    private volatile long cacheHits = 0;     // Solo los escribe el buzón
+    private volatile long cacheRebuilds = 0;
+    private final int[] changedCells = new int[Bitboard.ROWS * Bitboard.COLS]; // Reutilizado por createPatch
+    // Los últimos frames numerados, para quien vuelve tras un corte (ver resume)
+    private static final int REPLAY_FRAMES = 64;
+    private final ReplayBuffer replay = new ReplayBuffer(REPLAY_FRAMES);
+    private static final AtomicLong TOTAL_CACHE_HITS = new AtomicLong();
+    private static final AtomicLong TOTAL_CACHE_REBUILDS = new AtomicLong();
+    
     // Constantes del juego
-    private static final int ROWS = 6;
-    private static final int COLS = 7;
+    private static final int ROWS = Bitboard.ROWS;
+    private static final int COLS = Bitboard.COLS;
     
     public GameSession(String sessionId, WebSocket player1, String player1Name) {
+        this(sessionId, player1, player1Name, false);
+    }
+    
+    // Sin conexiones ni consola: la monta startHeadless/headless (TournamentRunner)
+    private GameSession(String sessionId, WebSocket player1, String player1Name, boolean quiet) {
+        this.quiet = quiet;
         this.sessionId = sessionId;
+        this.topic = TopicBus.sessionTopic(sessionId);
+        this.cursorTopic = TopicBus.cursorTopic(sessionId);
+        this.spectatorTopic = TopicBus.spectatorTopic(sessionId);
+        this.spectatorCursorTopic = TopicBus.spectatorCursorTopic(sessionId);
         this.player1 = player1;
         this.player1Name = player1Name;
         this.currentTurn = player1Name;
         initializeBoard();
         initializeGameObjects();
         
-        System.out.println("🎮 Nueva sesión: " + player1Name + " será ROJO (R)");
+        log("🎮 Nueva sesión: " + player1Name + " será ROJO (R)");
+    }
+    
+    private void log(String message) {
+        if (!quiet) System.out.println(message);
     }
     
     private void initializeBoard() {
+        engine.reset();
         board = new String[ROWS][COLS];
         for (int i = 0; i < ROWS; i++) {
             for (int j = 0; j < COLS; j++) {
@@ -79,31 +163,85 @@ public class GameSession {
     }
     
     public void addPlayer2(WebSocket player2, String player2Name) {
+        // Visible enseguida para el servidor (getPlayer2, hasPlayerWithName); el resto, en el buzón
         this.player2 = player2;
         this.player2Name = player2Name;
+        mailbox.execute(this::startWithPlayer2);
+    }
+    
+    private void startWithPlayer2() {
         this.gameStarted = true;
         this.countdownInProgress = true;
+        this.snapshotPending = true; // Cambia la lista de jugadores: foto completa
+        markChanged();
+        CursorConflator.shared().register(this);
         
-        System.out.println("🎮 Jugador 2 unido: " + player2Name + " será AMARILLO (Y)");
-        System.out.println("🎯 Partida: " + player1Name + " (R) vs " + player2Name + " (Y)");
+        log("🎮 Jugador 2 unido: " + player2Name + " será AMARILLO (Y)");
+        log("🎯 Partida: " + player1Name + " (R) vs " + player2Name + " (Y)");
         
         // Enviar estado INMEDIATAMENTE con roles asignados
-        broadcastGameState();
+        publishState();
         
         // Luego iniciar countdown
         sendCountdown();
     }
     
+    // NUEVO MÉTODO: El jugador 2 es un bot del servidor
+    public void addBotPlayer(BotPlayer bot) {
+        this.bot = bot;
+        this.player2Name = bot.getName();
+        mailbox.execute(this::startWithBot);
+    }
+    
+    private void startWithBot() {
+        this.gameStarted = true;
+        this.countdownInProgress = true;
+        this.snapshotPending = true;
+        markChanged();
+        CursorConflator.shared().register(this);
+        
+        log("🤖 Bot unido: " + player2Name + " será AMARILLO (Y)");
+        log("🎯 Partida: " + player1Name + " (R) vs " + player2Name + " (Y)");
+        
+        publishState();
+        sendCountdown();
+    }
+    
+    // NUEVO MÉTODO: Partida entre bots ya empezada, sin conexiones ni mensajes por consola
+    public static GameSession headless(String sessionId, String player1Name, String player2Name) {
+        GameSession session = new GameSession(sessionId, null, player1Name, true);
+        session.startHeadless(player2Name);
+        return session;
+    }
+    
+    // NUEVO MÉTODO: Partida sin conexiones ni cuenta atrás (torneos entre bots, TournamentRunner)
+    public void startHeadless(String player2Name) {
+        this.quiet = true;
+        mailbox.ask(() -> {
+            this.player2Name = player2Name;
+            this.gameStarted = true;
+            this.countdownInProgress = false;
+            return null;
+        });
+    }
+    
+    // NUEVO MÉTODO: Jugada por nombre, por el mismo camino que makeMove
+    // Espera a que se procese (TournamentRunner necesita saber si era válida)
+    public boolean playAs(String playerName, int column) {
+        return mailbox.ask(() -> playMove(playerName, column));
+    }
+    
     // NUEVO MÉTODO: Actualizar posición del mouse de un jugador
+    // Solo se guarda la última posición; la envía CursorConflator a ritmo fijo
     public void updatePlayerMousePosition(String playerName, double x, double y) {
-        if (playerMousePositions.containsKey(playerName)) {
-            playerMousePositions.put(playerName, new double[]{x, y});
-            System.out.println("Mouse actualizado - " + playerName + ": (" + x + ", " + y + ")");
-            // Enviar update a ambos jugadores
-            broadcastGameState();
-        } else {
-            System.out.println("x Jugador no encontrado en sesión: " + playerName);
-        }
+        mailbox.execute(() -> {
+            if (hasPlayerWithName(playerName)) {
+                playerMousePositions.put(playerName, new double[]{x, y});
+                markCursorsChanged();
+            } else {
+                log("x Jugador no encontrado en sesión: " + playerName);
+            }
+        });
     }
     
     // NUEVO MÉTODO: Verificar si un jugador está en esta sesión
@@ -112,57 +250,70 @@ public class GameSession {
     }
     
     private void sendCountdown() {
-        System.out.println("📤 [Sesión " + sessionId + "] Enviando countdown a jugadores");
-        
-        JSONObject countdownMsg = new JSONObject();
-        countdownMsg.put("type", "countdown");
-        countdownMsg.put("count", 3);
-        
-        broadcastToPlayers(countdownMsg.toString());
-        System.out.println("✅ [Sesión " + sessionId + "] Countdown enviado");
-        
-        // Programar inicio del juego después del countdown
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                System.out.println("⏰ [Sesión " + sessionId + "] Timer terminado - iniciando juego");
-                startGame();
-            }
-        }, 4000); // 4 segundos total
+        log("📤 [Sesión " + sessionId + "] Enviando countdown a jugadores");
+        
+        broadcastToPlayers(JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "countdown")
+            .field("count", 3)
+            .endObject()
+            .toFrame(), OutboundQueue.Kind.URGENT);
+        log("✅ [Sesión " + sessionId + "] Countdown enviado");
+        
+        // Programar inicio del juego después del countdown (en el temporizador compartido, sin hilo propio)
+        countdownTimer = WheelTimer.shared().schedule(() -> {
+            log("⏰ [Sesión " + sessionId + "] Timer terminado - iniciando juego");
+            mailbox.execute(this::startGame);
+        }, 4000, TimeUnit.MILLISECONDS); // 4 segundos total
     }
     
     private void startGame() {
         this.countdownInProgress = false;
         this.gameStarted = true;
+        markChanged();
         
-        System.out.println("¡Iniciando partida! Turno de: " + currentTurn);
+        log("¡Iniciando partida! Turno de: " + currentTurn);
         
         // Enviar estado con status: "playing"
-        broadcastGameState();
+        publishState();
+        requestBotMoveIfNeeded();
     }
     
     // EN GameSession.java - REEMPLAZAR el método makeMove completo:
     public void makeMove(WebSocket player, int column) {
-        if (gameFinished || !gameStarted) return;
-        
-        String playerName = getPlayerName(player);
-        if (!playerName.equals(currentTurn)) return;
-        
-        // Encontrar la fila disponible en la columna
-        int row = -1;
-        for (int i = ROWS - 1; i >= 0; i--) {
-            if (board[i][column].equals(" ")) {
-                row = i;
-                break;
-            }
+        mailbox.execute(() -> {
+            String playerName = getPlayerName(player);
+            if (playerName == null) return;
+            playMove(playerName, column);
+        });
+    }
+    
+    // Llega desde el pool de cálculo del bot
+    private void onBotMove(int column) {
+        mailbox.execute(() -> {
+            if (bot == null || !bot.getName().equals(currentTurn)) return;
+            playMove(bot.getName(), column);
+        });
+    }
+    
+    private void requestBotMoveIfNeeded() {
+        if (bot != null && !gameFinished && !countdownInProgress && bot.getName().equals(currentTurn)) {
+            bot.requestMove(engine, this::onBotMove);
         }
+    }
+    
+    private boolean playMove(String playerName, int column) {
+        if (gameFinished || !gameStarted || countdownInProgress) return false;
+        if (!playerName.equals(currentTurn)) return false;
         
-        if (row == -1) return; // Columna llena
+        // El motor bitboard valida la columna y devuelve la fila donde cae la ficha
+        int row = engine.play(column);
+        if (row == -1) return false; // Columna llena o inválida
         
-        // Hacer el movimiento
+        // Hacer el movimiento (vista de texto para el JSON)
         String piece = playerName.equals(player1Name) ? "R" : "Y";
         board[row][column] = piece;
+        markChanged();
         
         // ✅ CREAR lastMove con la posición exacta
         Move lastMove = new Move();
@@ -170,103 +321,272 @@ public class GameSession {
         lastMove.setRow(row);
         
         // Verificar victoria
-        if (checkWin(row, column, piece)) {
+        if (engine.lastMoveWon()) {
             gameFinished = true;
             winner = playerName;
-            // ✅ GUARDAR lastMove en gameData
-            if (gameState == null) {
-                gameState = createGameState();
-            }
-            gameState.getGame().setLastMove(lastMove);
-            broadcastGameState();
-            return;
-        }
-        
-        // Verificar empate
-        if (checkDraw()) {
+            winLine = toMoves(engine.winningCells(1 - engine.currentPlayer()));
+        } else if (engine.isDraw()) {
+            // Verificar empate
             gameFinished = true;
             winner = "draw";
-            // ✅ GUARDAR lastMove en gameData
-            if (gameState == null) {
-                gameState = createGameState();
-            }
-            gameState.getGame().setLastMove(lastMove);
-            broadcastGameState();
-            return;
+        } else {
+            // Cambiar turno
+            currentTurn = currentTurn.equals(player1Name) ? player2Name : player1Name;
         }
         
-        // Cambiar turno
-        currentTurn = currentTurn.equals(player1Name) ? player2Name : player1Name;
-        
         // ✅ GUARDAR lastMove en gameData antes del broadcast
         if (gameState == null) {
             gameState = createGameState();
         }
         gameState.getGame().setLastMove(lastMove);
-        broadcastGameState();
+        publishState();
+        requestBotMoveIfNeeded();
+        return true;
     }
     
-    private boolean checkWin(int row, int col, String piece) {
-        // Verificar horizontal
-        int count = 0;
-        for (int c = 0; c < COLS; c++) {
-            count = board[row][c].equals(piece) ? count + 1 : 0;
-            if (count >= 4) return true;
+    private List<Move> toMoves(int[] cells) {
+        List<Move> moves = new ArrayList<>();
+        for (int cell : cells) {
+            Move move = new Move();
+            move.setRow(Bitboard.cellRow(cell));
+            move.setCol(Bitboard.cellCol(cell));
+            moves.add(move);
         }
+        return moves;
+    }
+    
+    /**
+     * Envía a los jugadores lo que ha cambiado desde el último envío: la foto
+     * completa la primera vez (o si ha cambiado la lista de jugadores) y
+     * después un serverPatch. Si no ha cambiado nada no se envía nada.
+     */
+    public void broadcastGameState() {
+        mailbox.execute(this::publishState);
+    }
+    
+    private void publishState() {
+        if (sentVersion == stateVersion) {
+            // Nada nuevo desde el último envío (p. ej. un cliente que vuelve a pedir el estado)
+            countCacheHit();
+            return;
+        }
+        sentVersion = stateVersion;
+        countCacheRebuild();
         
-        // Verificar vertical
-        count = 0;
-        for (int r = 0; r < ROWS; r++) {
-            count = board[r][col].equals(piece) ? count + 1 : 0;
-            if (count >= 4) return true;
+        GameState gameState = createGameState();
+        if (snapshotPending) {
+            snapshotPending = false;
+            cachedSnapshot = convertGameStateToJson(gameState, ++stateSeq);
+            cachedSnapshotVersion = stateVersion;
+            rememberSent(gameState);
+            replay.add(stateSeq, cachedSnapshot);
+            broadcastToPlayers(cachedSnapshot, OutboundQueue.Kind.SNAPSHOT);
+        } else {
+            JsonFrame patch = createPatch(gameState);
+            if (patch != null) {
+                replay.add(stateSeq, patch);
+                broadcastToPlayers(patch, OutboundQueue.Kind.STATE);
+            }
         }
         
-        // Verificar diagonal \
-        count = 0;
-        for (int r = row, c = col; r >= 0 && c >= 0; r--, c--) {
-            if (board[r][c].equals(piece)) count++;
-            else break;
+        // ✅ OPCIONAL: Resetear lastMove después de enviarlo para evitar repeticiones
+        if (gameState.getGame() != null && gameState.getGame().getLastMove() != null) {
+            gameState.getGame().setLastMove(null);
+            cachedSnapshotVersion = -1; // La foto guardada lleva lastMove: no sirve para reenviar
         }
-        for (int r = row + 1, c = col + 1; r < ROWS && c < COLS; r++, c++) {
-            if (board[r][c].equals(piece)) count++;
-            else break;
+    }
+    
+    /**
+     * Foto completa a un solo jugador (cuando pide clientResync porque le
+     * falta algún parche). Antes se envían los cambios pendientes, para que la
+     * foto corresponda exactamente a stateSeq.
+     */
+    public void sendSnapshot(WebSocket conn) {
+        mailbox.execute(() -> publishSnapshot(conn));
+    }
+    
+    private void publishSnapshot(WebSocket conn) {
+        Codecs.send(conn, currentSnapshot(), OutboundQueue.Kind.SNAPSHOT, topic);
+    }
+    
+    // Foto completa del estado ya enviado (stateSeq); solo se rehace si ha cambiado
+    private JsonFrame currentSnapshot() {
+        publishState();
+        if (cachedSnapshotVersion == stateVersion) {
+            countCacheHit();
+        } else {
+            countCacheRebuild();
+            cachedSnapshot = convertGameStateToJson(createGameState(), stateSeq);
+            cachedSnapshotVersion = stateVersion;
+        }
+        return cachedSnapshot;
+    }
+    
+    /**
+     * Un jugador vuelve tras un corte con una conexión nueva (el servidor ya
+     * la ha puesto en lugar de la antigua con replacePlayer). Recibe lo que
+     * se ha perdido desde lastSeq, sacado de ReplayBuffer, o la foto completa
+     * si ya no está, y después se suscribe a los temas de la partida. Todo en
+     * el buzón, así que no se pierde ni se repite ningún parche.
+     *
+     * done recibe cuántos frames se han reenviado, o -1 si ha sido la foto.
+     */
+    public void resume(ConnectionContext player, long lastSeq, IntConsumer done) {
+        mailbox.execute(() -> {
+            publishState(); // Lo pendiente, al anillo
+            List<JsonFrame> missing = replay.since(lastSeq);
+            if (missing != null) {
+                for (JsonFrame frame : missing) {
+                    Codecs.send(player.getConnection(), frame, OutboundQueue.Kind.STATE, topic);
+                }
+            } else {
+                Codecs.send(player.getConnection(), currentSnapshot(), OutboundQueue.Kind.SNAPSHOT, topic);
+            }
+            TopicBus.shared().subscribe(topic, player);
+            TopicBus.shared().subscribe(cursorTopic, player);
+            done.accept(missing != null ? missing.size() : -1);
+        });
+    }
+    
+    /** La conexión nueva de un jugador que vuelve ocupa el lugar de la antigua; visible enseguida, como addPlayer2 */
+    public void replacePlayer(WebSocket previous, WebSocket current) {
+        if (player1 == previous) {
+            player1 = current;
+        } else if (player2 == previous) {
+            player2 = current;
         }
-        if (count >= 4) return true;
+    }
+    
+    /**
+     * Un espectador empieza a mirar la partida (o pide clientResync): recibe
+     * la foto guardada y, desde ese punto, los mismos parches que los
+     * jugadores. La suscripción y la foto van por spectatorLane, en orden con
+     * los parches ya encolados, así que no se pierde ni se repite ninguno.
+     */
+    public void addSpectator(ConnectionContext spectator) {
+        mailbox.execute(() -> {
+            JsonFrame snapshot = currentSnapshot();
+            watched = true;
+            spectatorLane.execute(() -> {
+                // Se ha ido antes de llegar aquí
+                if (spectator.getWatching() != this || !spectator.getConnection().isOpen()) return;
+                TopicBus.shared().subscribe(spectatorTopic, spectator);
+                TopicBus.shared().subscribe(spectatorCursorTopic, spectator);
+                Codecs.send(spectator.getConnection(), snapshot, OutboundQueue.Kind.SNAPSHOT, spectatorTopic);
+            });
+        });
+    }
+    
+    public void removeSpectator(ConnectionContext spectator) {
+        spectatorLane.execute(() -> {
+            TopicBus.shared().unsubscribe(spectatorTopic, spectator);
+            TopicBus.shared().unsubscribe(spectatorCursorTopic, spectator);
+        });
+    }
+    
+    public int getSpectatorCount() {
+        return TopicBus.shared().getSubscriberCount(spectatorTopic);
+    }
+    
+    private void markChanged() {
+        stateVersion++;
+    }
+    
+    private void countCacheHit() {
+        cacheHits++;
+        TOTAL_CACHE_HITS.incrementAndGet();
+    }
+    
+    private void countCacheRebuild() {
+        cacheRebuilds++;
+        TOTAL_CACHE_REBUILDS.incrementAndGet();
+    }
+    
+    /**
+     * Parche con los campos que difieren de lo último enviado, o null si no
+     * hay ninguno. lastMove solo viaja en el parche de la jugada.
+     * Primero se comparan los campos y luego se escribe el JSON de una vez.
+     */
+    private JsonFrame createPatch(GameState gameState) {
+        GameData gameData = gameState.getGame();
         
-        // Verificar diagonal /
-        count = 0;
-        for (int r = row, c = col; r >= 0 && c < COLS; r--, c++) {
-            if (board[r][c].equals(piece)) count++;
-            else break;
+        int changed = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                if (!board[row][col].equals(sentBoard[row][col])) {
+                    changedCells[changed++] = row * COLS + col;
+                    sentBoard[row][col] = board[row][col];
+                }
+            }
         }
-        for (int r = row + 1, c = col - 1; r < ROWS && c >= 0; r++, c--) {
-            if (board[r][c].equals(piece)) count++;
-            else break;
+        boolean statusChanged = !gameData.getStatus().equals(sentStatus);
+        boolean turnChanged = !Objects.equals(gameData.getTurn(), sentTurn);
+        boolean winnerChanged = !Objects.equals(gameData.getWinner(), sentWinner);
+        boolean hasLastMove = gameData.getLastMove() != null;
+        boolean winLineChanged = !sentWinLine && gameData.getWinLine() != null && !gameData.getWinLine().isEmpty();
+        
+        if (changed == 0 && !statusChanged && !turnChanged && !winnerChanged && !hasLastMove && !winLineChanged) {
+            return null;
         }
-        if (count >= 4) return true;
         
-        return false;
+        JsonFrameWriter out = JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "serverPatch")
+            .field("seq", ++stateSeq)
+            .name("game").beginObject();
+        if (changed > 0) {
+            out.name("cells").beginArray();
+            for (int i = 0; i < changed; i++) {
+                int row = changedCells[i] / COLS;
+                int col = changedCells[i] % COLS;
+                out.beginObject().field("row", row).field("col", col).field("v", board[row][col]).endObject();
+            }
+            out.endArray();
+        }
+        if (statusChanged) {
+            out.field("status", gameData.getStatus());
+            sentStatus = gameData.getStatus();
+        }
+        if (turnChanged) {
+            out.field("turn", gameData.getTurn());
+            sentTurn = gameData.getTurn();
+        }
+        if (winnerChanged) {
+            out.field("winner", gameData.getWinner());
+            sentWinner = gameData.getWinner();
+        }
+        if (hasLastMove) {
+            writeMove(out.name("lastMove"), gameData.getLastMove());
+        }
+        if (winLineChanged) {
+            writeMoves(out.name("winLine"), gameData.getWinLine());
+            sentWinLine = true;
+        }
+        return out.endObject().endObject().toFrame();
     }
     
-    private boolean checkDraw() {
-        for (int c = 0; c < COLS; c++) {
-            if (board[0][c].equals(" ")) {
-                return false;
-            }
+    // Lo que acaba de salir en una foto completa pasa a ser la base de los parches
+    private void rememberSent(GameState gameState) {
+        GameData gameData = gameState.getGame();
+        for (int row = 0; row < ROWS; row++) {
+            sentBoard[row] = board[row].clone();
         }
-        return true;
+        sentStatus = gameData.getStatus();
+        sentTurn = gameData.getTurn();
+        sentWinner = gameData.getWinner();
+        sentWinLine = gameData.getWinLine() != null && !gameData.getWinLine().isEmpty();
     }
     
-    public void broadcastGameState() {
-        GameState gameState = createGameState();
-        String gameStateJson = convertGameStateToJson(gameState);
-        broadcastToPlayers(gameStateJson);
-        
-        // ✅ OPCIONAL: Resetear lastMove después de enviarlo para evitar repeticiones
-        if (gameState.getGame() != null && gameState.getGame().getLastMove() != null) {
-            System.out.println("🔄 Reseteando lastMove después del broadcast");
-            gameState.getGame().setLastMove(null);
+    private static void writeMove(JsonFrameWriter out, Move move) {
+        out.beginObject().field("col", move.getCol()).field("row", move.getRow()).endObject();
+    }
+    
+    private static void writeMoves(JsonFrameWriter out, List<Move> moves) {
+        out.beginArray();
+        for (Move move : moves) {
+            writeMove(out, move);
         }
+        out.endArray();
     }
 
     private GameState createGameState() {
@@ -302,6 +622,7 @@ public class GameSession {
         gameData.setBoard(board);
         gameData.setTurn(currentTurn);
         gameData.setWinner(winner);
+        gameData.setWinLine(winLine);
         
         // ✅ lastMove se setea en makeMove, no aquí
         
@@ -316,6 +637,7 @@ public class GameSession {
         client1.setName(player1Name);
         client1.setColor("RED");
         client1.setRole("R");
+        setMousePosition(client1);
         
         // Asignar información de drag del jugador 1
         DragInfo dragInfo1 = playerDragInfo.get(player1Name);
@@ -325,12 +647,13 @@ public class GameSession {
         
         clients.add(client1);
         
-        // Jugador 2
-        if (player2 != null) {
+        // Jugador 2 (persona o bot)
+        if (player2 != null || bot != null) {
             ClientInfo client2 = new ClientInfo();
             client2.setName(player2Name);
             client2.setColor("YELLOW");
             client2.setRole("Y");
+            setMousePosition(client2);
             
             // Asignar información de drag del jugador 2
             DragInfo dragInfo2 = playerDragInfo.get(player2Name);
@@ -344,117 +667,169 @@ public class GameSession {
         return clients;
     }
     
+    private void setMousePosition(ClientInfo client) {
+        double[] position = playerMousePositions.get(client.getName());
+        if (position != null) {
+            client.setMouseX(position[0]);
+            client.setMouseY(position[1]);
+        }
+    }
+    
     // EN GameSession.java - MODIFICAR convertGameStateToJson para incluir lastMove:
-    private String convertGameStateToJson(GameState gameState) {
-        try {
-            JSONObject json = new JSONObject();
-            json.put("type", "serverData");
-            
-            // Clients list
-            JSONArray clientsArray = new JSONArray();
-            for (ClientInfo client : gameState.getClientsList()) {
-                JSONObject clientJson = new JSONObject();
-                clientJson.put("name", client.getName());
-                clientJson.put("color", client.getColor());
-                clientJson.put("mouseX", client.getMouseX());
-                clientJson.put("mouseY", client.getMouseY());
-                clientJson.put("role", client.getRole());
-                clientsArray.put(clientJson);
-            }
-            json.put("clientsList", clientsArray);
+    // Se escribe directamente con JsonFrameWriter, en el mismo formato de siempre
+    static JsonFrame convertGameStateToJson(GameState gameState, long seq) {
+        JsonFrameWriter out = JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "serverData")
+            .field("seq", seq);
+        
+        // Clients list
+        out.name("clientsList").beginArray();
+        for (ClientInfo client : gameState.getClientsList()) {
+            out.beginObject()
+                .field("name", client.getName())
+                .field("color", client.getColor())
+                .field("mouseX", client.getMouseX())
+                .field("mouseY", client.getMouseY())
+                .field("role", client.getRole())
+                .endObject();
+        }
+        out.endArray();
+        
+        // Objects list
+        out.name("objectsList").beginArray();
+        for (GameObject obj : gameState.getObjectsList()) {
+            out.beginObject()
+                .field("id", obj.getId())
+                .field("x", obj.getX())
+                .field("y", obj.getY())
+                .field("role", obj.getRole())
+                .endObject();
+        }
+        out.endArray();
+        
+        // Game data
+        if (gameState.getGame() != null) {
+            GameData gameData = gameState.getGame();
+            out.name("game").beginObject()
+                .field("status", gameData.getStatus())
+                .field("turn", gameData.getTurn())
+                .field("winner", gameData.getWinner());
             
-            // Objects list
-            JSONArray objectsArray = new JSONArray();
-            for (GameObject obj : gameState.getObjectsList()) {
-                JSONObject objJson = new JSONObject();
-                objJson.put("id", obj.getId());
-                objJson.put("x", obj.getX());
-                objJson.put("y", obj.getY());
-                objJson.put("role", obj.getRole());
-                objectsArray.put(objJson);
+            // ✅ AÑADIR lastMove AL JSON
+            if (gameData.getLastMove() != null) {
+                writeMove(out.name("lastMove"), gameData.getLastMove());
             }
-            json.put("objectsList", objectsArray);
             
-            // Game data
-            if (gameState.getGame() != null) {
-                JSONObject gameJson = new JSONObject();
-                GameData gameData = gameState.getGame();
-                
-                gameJson.put("status", gameData.getStatus());
-                gameJson.put("turn", gameData.getTurn());
-                gameJson.put("winner", gameData.getWinner());
-                
-                // ✅ AÑADIR lastMove AL JSON
-                if (gameData.getLastMove() != null) {
-                    JSONObject lastMoveJson = new JSONObject();
-                    lastMoveJson.put("col", gameData.getLastMove().getCol());
-                    lastMoveJson.put("row", gameData.getLastMove().getRow());
-                    gameJson.put("lastMove", lastMoveJson);
-                    System.out.println("📤 Enviando lastMove en JSON: col=" + gameData.getLastMove().getCol() + ", row=" + gameData.getLastMove().getRow());
-                } else {
-                    System.out.println("📤 No hay lastMove para enviar en JSON");
-                }
-                
-                // Board
-                JSONArray boardArray = new JSONArray();
-                String[][] board = gameData.getBoard();
-                if (board != null) {
-                    for (String[] row : board) {
-                        JSONArray rowArray = new JSONArray();
-                        for (String cell : row) {
-                            rowArray.put(cell != null ? cell : " ");
-                        }
-                        boardArray.put(rowArray);
+            // Board
+            out.name("board").beginArray();
+            String[][] board = gameData.getBoard();
+            if (board != null) {
+                for (String[] row : board) {
+                    out.beginArray();
+                    for (String cell : row) {
+                        out.value(cell != null ? cell : " ");
                     }
+                    out.endArray();
                 }
-                gameJson.put("board", boardArray);
-                
-                json.put("game", gameJson);
             }
+            out.endArray();
             
-            return json.toString();
-        } catch (Exception e) {
-            System.err.println("Error converting GameState to JSON: " + e.getMessage());
-            return "{\"type\":\"serverData\",\"clientsList\":[],\"game\":{\"status\":\"waiting\"}}";
+            // Línea ganadora calculada por el motor
+            if (gameData.getWinLine() != null && !gameData.getWinLine().isEmpty()) {
+                writeMoves(out.name("winLine"), gameData.getWinLine());
+            }
+            out.endObject();
         }
+        
+        return out.endObject().toFrame();
     }
 
     public void updatePlayerDragInfo(String playerName, boolean isDragging, double x, double y, String pieceColor) {
-        DragInfo dragInfo = playerDragInfo.get(playerName);
-        if (dragInfo == null) {
-            dragInfo = new DragInfo();
+        mailbox.execute(() -> {
+            DragInfo dragInfo = new DragInfo();
+            dragInfo.setDragging(isDragging);
+            dragInfo.setDragX(x);
+            dragInfo.setDragY(y);
+            dragInfo.setPieceColor(pieceColor);
+            
+            // Igual que el ratón: la última muestra pisa a la anterior hasta el próximo envío
             playerDragInfo.put(playerName, dragInfo);
+            markCursorsChanged();
+        });
+    }
+    
+    private void markCursorsChanged() {
+        cursorEvents.incrementAndGet();
+        TOTAL_CURSOR_EVENTS.incrementAndGet();
+        cursorsDirty.set(true);
+        spectatorCursorsDirty.set(true);
+    }
+    
+    /**
+     * Llamado por CursorConflator a ritmo fijo: si algún jugador ha movido el
+     * ratón o una ficha desde el último envío, manda un cursorUpdate con la
+     * última posición de los dos. A los espectadores solo en los ticks
+     * marcados (spectatorTick), a menos ritmo.
+     */
+    void flushCursors(boolean spectatorTick) {
+        if (cursorsDirty.getAndSet(false)) {
+            mailbox.execute(this::sendCursors);
+        }
+        if (spectatorTick && watched && spectatorCursorsDirty.getAndSet(false)) {
+            mailbox.execute(this::sendSpectatorCursors);
         }
-        
-        dragInfo.setDragging(isDragging);
-        dragInfo.setDragX(x);
-        dragInfo.setDragY(y);
-        dragInfo.setPieceColor(pieceColor);
-        
-        System.out.println("🔄 Drag actualizado: " + playerName + " - " + isDragging + " at (" + x + "," + y + ")");
-        
-        // BROADCAST INMEDIATO en lugar de esperar al gameState completo
-        broadcastDragUpdate(playerName, isDragging, x, y, pieceColor);
     }
-
-    private void broadcastDragUpdate(String playerName, boolean isDragging, double x, double y, String color) {
-        JSONObject dragMsg = new JSONObject();
-        dragMsg.put("type", "dragUpdate");
-        dragMsg.put("player", playerName);
-        dragMsg.put("dragging", isDragging);
-        dragMsg.put("x", x);
-        dragMsg.put("y", y);
-        dragMsg.put("color", color);
-        
-        broadcastToPlayers(dragMsg.toString());
+    
+    private void sendCursors() {
+        TopicBus.shared().publish(cursorTopic, cursorFrame(), OutboundQueue.Kind.CURSOR);
+        cursorFrames.incrementAndGet();
+        TOTAL_CURSOR_FRAMES.incrementAndGet();
     }
     
-    public void broadcastToPlayers(String message) {
-        if (player1 != null && player1.isOpen()) {
-            player1.send(message);
+    private void sendSpectatorCursors() {
+        JsonFrame frame = cursorFrame();
+        spectatorLane.execute(() -> TopicBus.shared().publish(spectatorCursorTopic, frame, OutboundQueue.Kind.CURSOR));
+    }
+    
+    private JsonFrame cursorFrame() {
+        JsonFrameWriter out = JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "cursorUpdate")
+            .name("cursors").beginArray();
+        for (int i = 0; i < 2; i++) {
+            String name = i == 0 ? player1Name : player2Name;
+            if (name == null) continue;
+            out.beginObject().field("player", name);
+            double[] mouse = playerMousePositions.get(name);
+            if (mouse != null) {
+                out.field("x", mouse[0]).field("y", mouse[1]);
+            }
+            DragInfo dragInfo = playerDragInfo.get(name);
+            if (dragInfo != null) {
+                out.field("dragging", dragInfo.isDragging())
+                    .field("dragX", dragInfo.getDragX())
+                    .field("dragY", dragInfo.getDragY())
+                    .field("color", dragInfo.getPieceColor());
+            }
+            out.endObject();
         }
-        if (player2 != null && player2.isOpen()) {
-            player2.send(message);
+        return out.endArray().endObject().toFrame();
+    }
+    
+    public void broadcastToPlayers(JSONObject message) {
+        TopicBus.shared().publish(topic, message);
+        if (watched) {
+            spectatorLane.execute(() -> TopicBus.shared().publish(spectatorTopic, message));
+        }
+    }
+    
+    // A los suscritos al tema de la partida, cada uno con su códec y su cola de
+    // salida; a los espectadores, el mismo frame desde spectatorLane
+    void broadcastToPlayers(JsonFrame frame, OutboundQueue.Kind kind) {
+        TopicBus.shared().publish(topic, frame, kind);
+        if (watched) {
+            spectatorLane.execute(() -> TopicBus.shared().publish(spectatorTopic, frame, kind));
         }
     }
     
@@ -469,27 +844,87 @@ public class GameSession {
     }
     
     public void removePlayer(WebSocket player) {
+        mailbox.execute(() -> dropPlayer(player));
+    }
+    
+    /**
+     * La partida ha terminado: sus temas se quitan detrás de lo que aún esté
+     * en cola (el resultado final), primero en el buzón y luego en el reparto
+     * a los espectadores.
+     */
+    void closeTopics() {
+        mailbox.execute(() -> {
+            TopicBus.shared().removeTopic(topic);
+            TopicBus.shared().removeTopic(cursorTopic);
+            spectatorLane.execute(() -> {
+                TopicBus.shared().removeTopic(spectatorTopic);
+                TopicBus.shared().removeTopic(spectatorCursorTopic);
+            });
+        });
+    }
+    
+    private void dropPlayer(WebSocket player) {
+        if (bot != null) {
+            bot.cancel();
+        }
+        if (countdownTimer != null) {
+            countdownTimer.cancel(); // La partida ya no va a empezar
+        }
+        // El rival (persona o bot) antes de vaciar el hueco del que se va
+        String opponent = player == player1 ? player2Name : player1Name;
         if (player == player1) {
             player1 = null;
         } else if (player == player2) {
             player2 = null;
         }
+        // Con un jugador fuera ya no hay cursores que compartir
+        CursorConflator.shared().unregister(this);
         
         // Si un jugador se desconecta, terminar la partida
         if (gameStarted && !gameFinished) {
             gameFinished = true;
-            winner = getPlayerName(player == player1 ? player2 : player1);
-            broadcastGameState();
+            winner = opponent;
+            markChanged();
+            publishState();
         }
     }
     
     // Getters
     public String getSessionId() { return sessionId; }
+    String getTopic() { return topic; }
+    String getCursorTopic() { return cursorTopic; }
     public boolean isGameStarted() { return gameStarted; }
     public boolean isGameFinished() { return gameFinished; }
-    public boolean hasTwoPlayers() { return player1 != null && player2 != null; }
+    public boolean hasTwoPlayers() { return player1 != null && (player2 != null || bot != null); }
+    public boolean hasBot() { return bot != null; }
     public WebSocket getPlayer1() { return player1; }
     public WebSocket getPlayer2() { return player2; }
     public String getPlayer1Name() { return player1Name; }
     public String getPlayer2Name() { return player2Name; }
+    public String getCurrentTurn() { return currentTurn; }
+    public String getWinner() { return winner; }
+    public Bitboard getBoardSnapshot() { return mailbox.ask(() -> new Bitboard(engine)); }
+    public long getStateVersion() { return stateVersion; }
+    public long getCacheHits() { return cacheHits; }
+    public long getCacheRebuilds() { return cacheRebuilds; }
+    
+    // Buzón: mensajes en espera y tiempo de proceso por mensaje
+    public int getMailboxDepth() { return mailbox.getDepth(); }
+    public int getMailboxMaxDepth() { return mailbox.getMaxDepth(); }
+    public long getMessagesProcessed() { return mailbox.getProcessed(); }
+    public double getAverageProcessingMicros() { return mailbox.getAverageProcessingMicros(); }
+    public double getMaxProcessingMicros() { return mailbox.getMaxProcessingMicros(); }
+    // Reparto a los espectadores
+    public int getSpectatorLaneDepth() { return spectatorLane.getDepth(); }
+    public int getSpectatorLaneMaxDepth() { return spectatorLane.getMaxDepth(); }
+    
+    public long getCursorEvents() { return cursorEvents.get(); }
+    public long getCursorFrames() { return cursorFrames.get(); }
+    
+    // Totales de todas las sesiones: envíos reaprovechados frente a estados reconstruidos
+    public static long getTotalCacheHits() { return TOTAL_CACHE_HITS.get(); }
+    public static long getTotalCacheRebuilds() { return TOTAL_CACHE_REBUILDS.get(); }
+    // ...y eventos de ratón/arrastre recibidos frente a cursorUpdate enviados
+    public static long getTotalCursorEvents() { return TOTAL_CURSOR_EVENTS.get(); }
+    public static long getTotalCursorFrames() { return TOTAL_CURSOR_FRAMES.get(); }
 }
\ No newline at end of file
@@ -1,111 +1,339 @@
 package com.server;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 import org.json.JSONObject;
-import org.json.JSONArray;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import com.shared.GameState;
-import com.shared.ClientInfo;
 import com.shared.GameObject;
-import com.shared.GameData;
 import com.shared.Move;
+import com.shared.MessageCodec;
 
 public class GameWebSocketServer extends WebSocketServer {
     
-    private Map<WebSocket, String> connectedClients = new ConcurrentHashMap<>();
+    // Nombre → conexión (nombres únicos); el resto de cada conexión va en su ConnectionContext
+    private Map<String, ConnectionContext> clientsByName = new ConcurrentHashMap<>();
     private Map<String, GameSession> gameSessions = new ConcurrentHashMap<>();
-    private Map<WebSocket, String> clientToSession = new ConcurrentHashMap<>();
+    private final Lobby lobby = new Lobby();
+    private final ConnectionPipeline pipeline = new ConnectionPipeline();
+    // Invitaciones sin responder ("invitador→invitado"), con su caducidad programada
+    private Map<String, WheelTimer.Timeout> pendingInvitations = new ConcurrentHashMap<>();
 
-    private static final int UPDATE_INTERVAL = 1000;
+    // Sin cambios en el lobby solo se envía un latido con la versión, de vez en cuando
+    private static final int HEARTBEAT_INTERVAL = 5000;
+    private static final int STATS_EVERY_TICKS = 12;
+    private static final int INVITATION_TIMEOUT = 30000;
+    private int heartbeats = 0; // Solo lo toca el hilo de WheelTimer
+    
+    // Quien se corta en mitad de una partida tiene este tiempo para volver con su resumeToken
+    private static final int RESUME_GRACE_MS = 30000;
+    private final AtomicLong resumeAttempts = new AtomicLong();
+    private final AtomicLong resumes = new AtomicLong();
+    private final AtomicLong resumesReplayed = new AtomicLong();  // Con los frames de ReplayBuffer
+    private final AtomicLong resumesSnapshot = new AtomicLong();  // Con la foto completa
+    private final AtomicLong graceExpired = new AtomicLong();
+    private final LatencyHistogram resumeLatency = new LatencyHistogram(); // De clientConnect a lo perdido en cola
+    private final LatencyHistogram resumeOutage = new LatencyHistogram();  // Del corte a la vuelta
+    
+    // Conexiones que no se identifican (clientConnect) en IDENTIFY_TIMEOUT. A las
+    // identificadas no se las cierra: en el lobby el cliente no envía nada y se reconectaría
+    private static final int IDENTIFY_TIMEOUT = 30000;
+    private static final int REAP_INTERVAL = 10000;
+    private final AtomicLong unidentifiedClosed = new AtomicLong();
     
     public GameWebSocketServer(int port) {
-        super(new InetSocketAddress(port));
+        super(new InetSocketAddress(port), Codecs.serverDrafts());
         startPeriodicUpdates(); 
     }
     
     public void startPeriodicUpdates() {
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                // CORRECCIÓN: Usar el método que respeta las sesiones de juego
-                for (WebSocket conn : connectedClients.keySet()) {
-                    sendCorrectGameStateToClient(conn);
+        WheelTimer.shared().scheduleAtFixedRate(this::sendHeartbeat, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+        WheelTimer.shared().scheduleAtFixedRate(this::closeUnidentifiedConnections, REAP_INTERVAL, REAP_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+    
+    // Desde WheelTimer: cierra las conexiones abiertas hace demasiado sin identificarse
+    private void closeUnidentifiedConnections() {
+        long now = System.currentTimeMillis();
+        for (WebSocket conn : getConnections()) {
+            ConnectionContext context = ConnectionContext.of(conn);
+            if (context == null || !conn.isOpen() || context.getName() != null) continue;
+            long open = now - context.getOpenedAt();
+            if (open > IDENTIFY_TIMEOUT) {
+                unidentifiedClosed.incrementAndGet();
+                System.out.println("💤 " + conn.getRemoteSocketAddress() + ": " + open / 1000
+                    + " s sin identificarse, se cierra la conexión");
+                conn.close(CloseFrame.POLICY_VALIDATION, "Sin clientConnect");
+            }
+        }
+    }
+    
+    private void sendHeartbeat() {
+        // Las partidas envían sus cambios al momento; aquí solo el latido del lobby
+        synchronized (lobby) {
+            broadcastToLobby(lobby.heartbeat(), OutboundQueue.Kind.HEARTBEAT);
+        }
+        if (++heartbeats % STATS_EVERY_TICKS == 0 && !clientsByName.isEmpty()) {
+            WheelTimer timer = WheelTimer.shared();
+            System.out.println("📊 Lobby v" + lobby.getVersion() + ": " + lobby.getPlayerCount() + " jugadores, "
+                + lobby.getEvents() + " eventos, " + lobby.getSnapshotsServed() + " fotos enviadas ("
+                + lobby.getSnapshotsBuilt() + " escritas)");
+            System.out.println("📊 Estado de sesiones: " + GameSession.getTotalCacheHits()
+                + " envíos sin cambios reaprovechados, " + GameSession.getTotalCacheRebuilds() + " reconstruidos, "
+                + GameSession.getTotalCursorEvents() + " eventos de cursor en " + GameSession.getTotalCursorFrames() + " envíos");
+            int depth = 0, maxDepth = 0;
+            double maxMicros = 0;
+            for (GameSession session : gameSessions.values()) {
+                depth += session.getMailboxDepth();
+                maxDepth = Math.max(maxDepth, session.getMailboxMaxDepth());
+                maxMicros = Math.max(maxMicros, session.getMaxProcessingMicros());
+            }
+            System.out.printf("📊 Buzones de %d sesiones: %d mensajes en cola (máx. %d), proceso más lento %.0f µs%n",
+                gameSessions.size(), depth, maxDepth, maxMicros);
+            int spectators = 0, watchedSessions = 0, spectatorDepth = 0, spectatorMaxDepth = 0;
+            for (GameSession session : gameSessions.values()) {
+                int count = session.getSpectatorCount();
+                spectators += count;
+                if (count > 0) watchedSessions++;
+                spectatorDepth += session.getSpectatorLaneDepth();
+                spectatorMaxDepth = Math.max(spectatorMaxDepth, session.getSpectatorLaneMaxDepth());
+            }
+            System.out.printf("📊 Espectadores: %d en %d partidas, %d envíos por repartir (máx. %d), cursores a %d Hz%n",
+                spectators, watchedSessions, spectatorDepth, spectatorMaxDepth, CursorConflator.shared().getSpectatorHz());
+            int queuedFrames = 0;
+            long replaced = 0, dropped = 0;
+            List<String> slowClients = new ArrayList<>();
+            for (ConnectionContext client : clientsByName.values()) {
+                OutboundQueue outbound = client.getOutbound();
+                queuedFrames += outbound.getDepth();
+                replaced += outbound.getReplaced();
+                dropped += outbound.getDropped();
+                if (outbound.getDepth() > 0 || outbound.getDropped() > 0 || outbound.isDowngraded()) {
+                    slowClients.add(client.getName() + ": " + outbound.summary());
                 }
             }
-        }, 0, UPDATE_INTERVAL); 
+            System.out.printf("📊 Salida: %d frames en cola, %d sustituidos, %d descartados, %d conexiones expulsadas, %d cerradas sin identificarse%n",
+                queuedFrames, replaced, dropped, OutboundQueue.getTotalEvictions(), unidentifiedClosed.get());
+            for (String slowClient : slowClients) {
+                System.out.println("📊    " + slowClient);
+            }
+            List<TopicBus.Topic> topics = TopicBus.shared().getTopics();
+            Map<TopicBus.Topic, Double> rates = new HashMap<>();
+            for (TopicBus.Topic topic : topics) rates.put(topic, topic.samplePublishRate());
+            topics.sort((a, b) -> Double.compare(rates.get(b), rates.get(a)));
+            StringBuilder busiest = new StringBuilder();
+            for (TopicBus.Topic topic : topics.subList(0, Math.min(3, topics.size()))) {
+                busiest.append(String.format(" %s %.1f/s (%d suscritos, %d entregas);", topic.getName(),
+                    rates.get(topic), topic.getSubscriberCount(), topic.getDelivered()));
+            }
+            System.out.printf("📊 Temas: %d, %d en el lobby; más activos:%s%n",
+                topics.size(), TopicBus.shared().getSubscriberCount(TopicBus.LOBBY), busiest);
+            if (resumeAttempts.get() > 0 || graceExpired.get() > 0) {
+                long detached = clientsByName.values().stream().filter(ConnectionContext::isDetached).count();
+                System.out.printf("📊 Reconexiones: %d de %d retomadas (%d con reenvío, %d con foto), %d caducadas, %d esperando%n",
+                    resumes.get(), resumeAttempts.get(), resumesReplayed.get(), resumesSnapshot.get(), graceExpired.get(), detached);
+                System.out.printf("📊    Retomar %s; corte medio %.0f ms (máx. %.0f ms)%n", resumeLatency.summary(),
+                    resumeOutage.getMeanMicros() / 1e3, resumeOutage.getMaxMicros() / 1e3);
+            }
+            System.out.printf("📊 Mensajes: %d carriles, %d en cola; encolar %s%n",
+                pipeline.getLanes(), pipeline.getQueuedMessages(), pipeline.getEnqueueLatency().summary());
+            System.out.println("📊    En cola " + pipeline.getQueueLatency().summary()
+                + "; manejador " + pipeline.getHandlerLatency().summary());
+            System.out.printf("📊 Temporizador: %d pendientes, %d ejecutados, retraso del tick %.1f ms (máx. %.1f ms)%n",
+                timer.getPendingTimers(), timer.getExpiredTimers(), timer.getLastTickLagMs(), timer.getMaxTickLagMs());
+        }
     }
     
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        System.out.println("Nueva conexión: " + conn.getRemoteSocketAddress());
+        MessageCodec codec = Codecs.negotiate(conn);
+        conn.setAttachment(new ConnectionContext(conn, codec, pipeline.newLane()));
+        System.out.println("Nueva conexión: " + conn.getRemoteSocketAddress() + " (" + codec.getProtocol() + ")");
     }
     
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        System.out.println("Conexión cerrada: " + conn.getRemoteSocketAddress());
-        
-        String playerName = connectedClients.remove(conn);
-        String sessionId = clientToSession.get(conn);
+        ConnectionContext context = ConnectionContext.of(conn);
+        if (context == null) return; // No llegó a abrirse
+        System.out.println("Conexión cerrada: " + conn.getRemoteSocketAddress() + " ("
+            + context.getMessagesReceived() + " mensajes recibidos, " + context.getFramesSent() + " enviados; "
+            + context.getOutbound().summary() + ")");
+        // Detrás de los mensajes de esta conexión que aún estén en cola
+        pipeline.close(context, () -> handleConnectionClosed(context));
+    }
+    
+    private void handleConnectionClosed(ConnectionContext context) {
+        // Fuera de todos los temas: ya no se le publica nada
+        TopicBus.shared().unsubscribeAll(context);
+        context.setWatching(null);
         
-        if (sessionId != null) {
-            GameSession session = gameSessions.get(sessionId);
-            if (session != null) {
-                session.removePlayer(conn);
-                if (!session.hasTwoPlayers()) {
-                    gameSessions.remove(sessionId);
-                }
+        if (context.getName() != null && context.isInGame()) {
+            // La partida se guarda un tiempo por si vuelve (clientConnect con su resumeToken)
+            WheelTimer.Timeout grace = WheelTimer.shared().schedule(
+                () -> context.getLane().execute(() -> expireGrace(context)), RESUME_GRACE_MS, TimeUnit.MILLISECONDS);
+            if (context.detach(grace)) {
+                System.out.println("⏸️ " + context.getName() + " desconectado en partida; se le espera "
+                    + RESUME_GRACE_MS / 1000 + " s");
+            } else {
+                grace.cancel(); // Ya lo ha retomado otra conexión
             }
-            clientToSession.remove(conn);
+            return;
         }
+        if (context.retire()) {
+            removeClient(context);
+        }
+    }
+    
+    // Desde WheelTimer (en el carril de la conexión): no ha vuelto a tiempo
+    private void expireGrace(ConnectionContext context) {
+        if (!context.retire()) return; // Ha vuelto justo antes
+        graceExpired.incrementAndGet();
+        System.out.println("⌛ " + context.getName() + " no ha vuelto a tiempo");
+        removeClient(context);
+    }
+    
+    /** Se va del todo: deja su nombre y su partida (que termina) y sale del lobby */
+    private void removeClient(ConnectionContext context) {
+        String playerName = context.getName();
+        if (playerName != null) clientsByName.remove(playerName, context);
+        TopicBus.shared().unsubscribeAll(context);
         
-        broadcastPlayerList();
+        GameSession session = context.getSession();
+        if (session != null) {
+            context.setSession(null);
+            // La sesión lo procesa en su buzón; sin uno de los dos jugadores se termina
+            session.removePlayer(context.getConnection());
+            endSession(session);
+        }
+        
+        synchronized (lobby) {
+            broadcastToLobby(lobby.leave(playerName));
+        }
     }
     
+    // El hilo del WebSocket solo encola; el mensaje se lee y se atiende en ConnectionPipeline
     @Override
     public void onMessage(WebSocket conn, String message) {
-        try {
-            JSONObject jsonMessage = new JSONObject(message);
-            String type = jsonMessage.getString("type");
-            
-            switch (type) {
-                case "clientConnect":
-                    handleClientConnect(conn, jsonMessage);
-                    break;
-                case "clientInvite":
-                    handleClientInvite(conn, jsonMessage);
-                    break;
-                case "clientAcceptInvite":
-                    handleClientAcceptInvite(conn, jsonMessage);
-                    break;
-                case "clientRejectInvite":
-                    handleClientRejectInvite(conn, jsonMessage);
-                    break;
-                case "clientPlay":
-                    handleClientPlay(conn, jsonMessage);
-                    break;
-                case "clientMouseMoving":
-                    handleClientMouseMoving(conn, jsonMessage);
-                    break;
-                case "clientBackToLobby":  // NUEVO: Volver al lobby
-                    handleClientBackToLobby(conn, jsonMessage);
-                    break;
-                case "clientExit":  // NUEVO: Salir
-                    handleClientExit(conn, jsonMessage);
-                    break;
-                case "clientDragPiece":
-                    handleClientDragPiece(conn, jsonMessage);
-                    break;
-                default:
-                    System.out.println("Tipo de mensaje desconocido: " + type);
+        pipeline.submit(ConnectionContext.of(conn), () -> {
+            try {
+                if (!handleFrequentMessage(conn, message)) {
+                    handleMessage(conn, new JSONObject(message));
+                }
+            } catch (Exception e) {
+                System.err.println("Error procesando mensaje: " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("Error procesando mensaje: " + e.getMessage());
+        });
+    }
+    
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        pipeline.submit(ConnectionContext.of(conn), () -> {
+            try {
+                handleMessage(conn, Codecs.of(conn).decode(message));
+            } catch (Exception e) {
+                System.err.println("Error procesando mensaje binario: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Ratón, arrastre y jugadas, los mensajes que más llegan, se leen campo a
+     * campo con JsonPullParser y se atienden sin crear un JSONObject.
+     * Devuelve false si es otro tipo de mensaje o trae algo inesperado, y
+     * entonces se procesa por handleMessage como siempre.
+     */
+    private boolean handleFrequentMessage(WebSocket conn, String message) {
+        JsonPullParser in = JsonPullParser.of(message);
+        String type = null;
+        double x = Double.NaN, y = Double.NaN;
+        int column = -1;
+        Boolean isDragging = null;
+        String pieceColor = null;
+        while (in.next()) {
+            if (in.nameIs("type")) {
+                if (in.stringIs("clientMouseMoving")) type = "clientMouseMoving";
+                else if (in.stringIs("clientDragPiece")) type = "clientDragPiece";
+                else if (in.stringIs("clientPlay")) type = "clientPlay";
+                else return false;
+            } else if (in.nameIs("x")) {
+                x = in.number();
+            } else if (in.nameIs("y")) {
+                y = in.number();
+            } else if (in.nameIs("column")) {
+                column = in.integer();
+            } else if (in.nameIs("isDragging")) {
+                isDragging = in.bool();
+            } else if (in.nameIs("pieceColor")) {
+                pieceColor = in.stringIs("R") ? "R" : in.stringIs("Y") ? "Y" : in.string();
+            }
+        }
+        if (in.failed() || type == null) return false;
+        
+        switch (type) {
+            case "clientMouseMoving":
+                if (Double.isNaN(x) || Double.isNaN(y)) return false;
+                handleClientMouseMoving(conn, x, y);
+                return true;
+            case "clientDragPiece":
+                if (Double.isNaN(x) || Double.isNaN(y) || isDragging == null || pieceColor == null) return false;
+                handleClientDragPiece(conn, isDragging, x, y, pieceColor);
+                return true;
+            default:
+                if (column < 0) return false;
+                handleClientPlay(conn, column);
+                return true;
+        }
+    }
+    
+    // Mensaje ya decodificado, venga del códec que venga
+    private void handleMessage(WebSocket conn, JSONObject jsonMessage) {
+        String type = jsonMessage.getString("type");
+        
+        switch (type) {
+            case "clientConnect":
+                handleClientConnect(conn, jsonMessage);
+                break;
+            case "clientInvite":
+                handleClientInvite(conn, jsonMessage);
+                break;
+            case "clientAcceptInvite":
+                handleClientAcceptInvite(conn, jsonMessage);
+                break;
+            case "clientRejectInvite":
+                handleClientRejectInvite(conn, jsonMessage);
+                break;
+            case "clientPlayBot":
+                handleClientPlayBot(conn, jsonMessage);
+                break;
+            case "clientPlay":
+                handleClientPlay(conn, jsonMessage);
+                break;
+            case "clientMouseMoving":
+                handleClientMouseMoving(conn, jsonMessage);
+                break;
+            case "clientBackToLobby":  // NUEVO: Volver al lobby
+                handleClientBackToLobby(conn, jsonMessage);
+                break;
+            case "clientExit":  // NUEVO: Salir
+                handleClientExit(conn, jsonMessage);
+                break;
+            case "clientDragPiece":
+                handleClientDragPiece(conn, jsonMessage);
+                break;
+            case "clientResync":  // Al cliente le falta un serverPatch
+                handleClientResync(conn);
+                break;
+            case "clientSpectate":  // Mirar una partida sin jugar
+                handleClientSpectate(conn, jsonMessage);
+                break;
+            default:
+                System.out.println("Tipo de mensaje desconocido: " + type);
         }
     }
     
@@ -122,123 +350,184 @@ public class GameWebSocketServer extends WebSocketServer {
     
     private void handleClientConnect(WebSocket conn, JSONObject message) {
         String playerName = message.getString("playerName");
-        connectedClients.put(conn, playerName);
+        ConnectionContext context = ConnectionContext.of(conn);
+        if (context.getName() != null) return; // Ya se había presentado
+        
+        // Vuelve tras un corte: con su token retoma el nombre y la partida de la conexión anterior
+        String token = message.optString("resumeToken", null);
+        if (token != null) {
+            resumeAttempts.incrementAndGet();
+            ConnectionContext previous = clientsByName.get(playerName);
+            if (previous != null && token.equals(previous.getResumeToken()) && previous.retire()) {
+                resumeClient(context, previous, message.optLong("lastSeq", -1));
+                return;
+            }
+            System.out.println("↩️ " + playerName + " no puede retomar su sesión (token caducado o no válido)");
+        }
+        
+        // El nombre identifica al jugador (invitaciones, partidas): no puede haber dos iguales
+        if (clientsByName.putIfAbsent(playerName, context) != null) {
+            System.out.println("❌ Nombre ya en uso: " + playerName);
+            JSONObject error = new JSONObject();
+            error.put("type", "error");
+            error.put("message", "El nombre " + playerName + " ya está en uso");
+            Codecs.send(conn, error);
+            return;
+        }
+        context.setName(playerName);
+        context.setResumeToken(UUID.randomUUID().toString());
         System.out.println("Jugador conectado: " + playerName);
+        sendWelcome(context, false);
+        
+        synchronized (lobby) {
+            // Suscrito antes del evento de entrada, como los demás; la foto va detrás
+            TopicBus.shared().subscribe(TopicBus.LOBBY, context);
+            broadcastToLobby(lobby.join(playerName));
+            // Enviar estado del juego actual al nuevo cliente
+            sendGameStateToClient(conn);
+        }
+    }
+    
+    /** Token con el que podrá volver si se corta, y si esta conexión ha retomado una anterior */
+    private void sendWelcome(ConnectionContext context, boolean resumed) {
+        JSONObject welcome = new JSONObject();
+        welcome.put("type", "welcome");
+        welcome.put("resumeToken", context.getResumeToken());
+        welcome.put("resumed", resumed);
+        welcome.put("graceMs", RESUME_GRACE_MS);
+        Codecs.send(context.getConnection(), welcome);
+    }
+    
+    /**
+     * La conexión nueva ocupa el lugar de la anterior (ya retirada): mismo
+     * nombre y token, y la partida si aún sigue, donde recibe lo que se ha
+     * perdido (GameSession.resume). Si la anterior sigue abierta (el servidor
+     * aún no ha notado el corte) se cierra. El lobby no cambia: para los
+     * demás no se ha ido.
+     */
+    private void resumeClient(ConnectionContext context, ConnectionContext previous, long lastSeq) {
+        long start = System.nanoTime();
+        String playerName = previous.getName();
+        context.setName(playerName);
+        context.setResumeToken(previous.getResumeToken());
+        clientsByName.replace(playerName, previous, context);
+        if (previous.isDetached()) {
+            resumeOutage.record((System.currentTimeMillis() - previous.getDetachedAt()) * 1_000_000);
+        }
+        
+        TopicBus.shared().unsubscribeAll(previous);
+        GameSession session = previous.getSession();
+        previous.setSession(null);
+        if (previous.getConnection().isOpen()) {
+            previous.getConnection().close(CloseFrame.NORMAL, "Sesión retomada desde otra conexión");
+        }
+        resumes.incrementAndGet();
+        sendWelcome(context, true);
         
-        // Enviar estado del juego actual al nuevo cliente
-        sendGameStateToClient(conn);
+        if (session != null && gameSessions.containsKey(session.getSessionId())) {
+            context.setSession(session);
+            session.replacePlayer(previous.getConnection(), context.getConnection());
+            session.resume(context, lastSeq, replayed -> {
+                (replayed >= 0 ? resumesReplayed : resumesSnapshot).incrementAndGet();
+                resumeLatency.record(System.nanoTime() - start);
+                System.out.println("▶️ " + playerName + " retoma la partida desde el seq " + lastSeq
+                    + (replayed >= 0 ? " (" + replayed + " frames reenviados)" : " (foto completa)"));
+            });
+            return;
+        }
         
-        broadcastPlayerList();
+        // Sin partida (o ya terminada): de vuelta al lobby, con la foto
+        synchronized (lobby) {
+            TopicBus.shared().subscribe(TopicBus.LOBBY, context);
+            broadcastToLobby(lobby.setBusy(playerName, false));
+            sendGameStateToClient(context.getConnection());
+        }
+        resumesSnapshot.incrementAndGet();
+        resumeLatency.record(System.nanoTime() - start);
+        System.out.println("▶️ " + playerName + " retoma su conexión en el lobby");
     }
     
     private void sendGameStateToClient(WebSocket conn) {
         try {
             // Verificar primero si el cliente está en una sesión
-            String sessionId = clientToSession.get(conn);
-            if (sessionId != null) {
-                GameSession session = gameSessions.get(sessionId);
-                if (session != null) {
-                    // Enviar estado de la sesión en lugar del estado global
-                    session.broadcastGameState();
-                    return;
-                }
+            GameSession session = ConnectionContext.of(conn).getSession();
+            if (session != null) {
+                // Enviar estado de la sesión en lugar del estado global
+                session.broadcastGameState();
+                return;
             }
             
-            // Solo enviar estado global si no está en una sesión
-            GameState gameState = createInitialGameState();
-            String gameStateJson = convertGameStateToJson(gameState);
-            conn.send(gameStateJson);
+            // Solo enviar el lobby si no está en una sesión (foto compartida por todos)
+            Codecs.send(conn, lobby.snapshot(), OutboundQueue.Kind.SNAPSHOT, TopicBus.LOBBY);
         } catch (Exception e) {
             System.err.println("Error enviando estado al cliente: " + e.getMessage());
         }
     }
     
-    private GameState createInitialGameState() {
-        GameState gameState = new GameState();
-        gameState.setType("serverData");
-        
-        // Crear lista de clientes conectados
-        List<ClientInfo> clients = new ArrayList<>();
-        for (Map.Entry<WebSocket, String> entry : connectedClients.entrySet()) {
-            ClientInfo client = new ClientInfo();
-            client.setName(entry.getValue());
-            client.setColor("GRAY"); // Color por defecto
-            client.setRole(""); // Rol vacío hasta que empiece el juego
-            client.setMouseX(0);
-            client.setMouseY(0);
-            clients.add(client);
-        }
-        
-        gameState.setClientsList(clients);
-        gameState.setObjectsList(new ArrayList<>());
-        
-        // Crear datos del juego vacíos
-        GameData gameData = new GameData();
-        gameData.setStatus("waiting");
-        gameData.setBoard(new String[6][7]); // Tablero vacío
-        gameData.setTurn("");
-        gameData.setWinner("");
-        
-        gameState.setGame(gameData);
-        
-        return gameState;
+    /** Envía un evento del lobby a los suscritos (los que no están en partida); llamar con el lock de lobby */
+    private void broadcastToLobby(JsonFrame frame) {
+        broadcastToLobby(frame, OutboundQueue.Kind.STATE);
     }
     
-    private String convertGameStateToJson(GameState gameState) {
-        try {
-            JSONObject json = new JSONObject();
-            json.put("type", "serverData");
-            
-            // Clients list
-            JSONArray clientsArray = new JSONArray();
-            for (ClientInfo client : gameState.getClientsList()) {
-                JSONObject clientJson = new JSONObject();
-                clientJson.put("name", client.getName());
-                clientJson.put("color", client.getColor());
-                clientJson.put("mouseX", client.getMouseX());
-                clientJson.put("mouseY", client.getMouseY());
-                clientJson.put("role", client.getRole());
-                clientsArray.put(clientJson);
+    private void broadcastToLobby(JsonFrame frame, OutboundQueue.Kind kind) {
+        if (frame == null) return;
+        TopicBus.shared().publish(TopicBus.LOBBY, frame, kind);
+    }
+    
+    /** Entra en una partida: deja el tema del lobby (o la partida que miraba) por los de la sesión */
+    private void joinSession(ConnectionContext context, GameSession session) {
+        stopWatching(context);
+        context.setSession(session);
+        TopicBus bus = TopicBus.shared();
+        bus.unsubscribe(TopicBus.LOBBY, context);
+        bus.subscribe(session.getTopic(), context);
+        bus.subscribe(session.getCursorTopic(), context);
+    }
+    
+    /** Sale de la partida por su cuenta: deja de recibirla y vuelve al lobby */
+    private void leaveSession(ConnectionContext context, GameSession session) {
+        context.setSession(null);
+        TopicBus bus = TopicBus.shared();
+        bus.unsubscribe(session.getTopic(), context);
+        bus.unsubscribe(session.getCursorTopic(), context);
+        bus.subscribe(TopicBus.LOBBY, context);
+    }
+    
+    /** Los jugadores de una partida nueva dejan de estar disponibles en el lobby */
+    private void markBusy(String... playerNames) {
+        synchronized (lobby) {
+            for (String name : playerNames) {
+                broadcastToLobby(lobby.setBusy(name, true));
             }
-            json.put("clientsList", clientsArray);
-            
-            // Objects list (vacío por ahora)
-            json.put("objectsList", new JSONArray());
-            
-            // Game data
-            JSONObject gameJson = new JSONObject();
-            if (gameState.getGame() != null) {
-                GameData gameData = gameState.getGame();
-                gameJson.put("status", gameData.getStatus());
-                gameJson.put("turn", gameData.getTurn());
-                gameJson.put("winner", gameData.getWinner());
-                
-                // Board
-                JSONArray boardArray = new JSONArray();
-                String[][] board = gameData.getBoard();
-                if (board != null) {
-                    for (String[] row : board) {
-                        JSONArray rowArray = new JSONArray();
-                        for (String cell : row) {
-                            rowArray.put(cell != null ? cell : " ");
-                        }
-                        boardArray.put(rowArray);
-                    }
+        }
+    }
+    
+    /**
+     * Elimina una sesión que se ha quedado sin uno de los jugadores (quien se
+     * va ya no la tiene en su contexto): el que queda vuelve a estar disponible en el lobby (la foto del lobby la recibe
+     * al volver con clientBackToLobby, sin salir ahora de la pantalla de resultado).
+     */
+    private void endSession(GameSession session) {
+        gameSessions.remove(session.getSessionId());
+        System.out.println("Sesión " + session.getSessionId() + " eliminada");
+        for (WebSocket remaining : new WebSocket[]{session.getPlayer1(), session.getPlayer2()}) {
+            ConnectionContext context = ConnectionContext.of(remaining);
+            if (context != null && context.getSession() == session) {
+                context.setSession(null);
+                synchronized (lobby) {
+                    // Si está cortado, al lobby se suscribe la conexión con la que vuelva
+                    if (!context.isDetached()) TopicBus.shared().subscribe(TopicBus.LOBBY, context);
+                    broadcastToLobby(lobby.setBusy(context.getName(), false));
                 }
-                gameJson.put("board", boardArray);
             }
-            json.put("game", gameJson);
-            
-            return json.toString();
-        } catch (Exception e) {
-            System.err.println("Error converting GameState to JSON: " + e.getMessage());
-            return "{\"type\":\"serverData\",\"clientsList\":[],\"game\":{\"status\":\"waiting\"}}";
         }
+        // Los espectadores se quedan con el resultado hasta que vuelven al lobby
+        session.closeTopics();
     }
     
     private void handleClientInvite(WebSocket conn, JSONObject message) {
         String opponentName = message.getString("opponent");
-        String playerName = connectedClients.get(conn);
+        String playerName = ConnectionContext.of(conn).getName();
         
         // Buscar la conexión del oponente
         WebSocket opponentConn = findConnectionByName(opponentName);
@@ -248,8 +537,14 @@ public class GameWebSocketServer extends WebSocketServer {
             invitation.put("from", playerName);
             invitation.put("invitationType", "received");
             
-            opponentConn.send(invitation.toString());
+            Codecs.send(opponentConn, invitation);
             System.out.println("Invitación enviada de " + playerName + " a " + opponentName);
+            
+            // Si nadie responde, caduca para los dos
+            String key = invitationKey(playerName, opponentName);
+            WheelTimer.Timeout previous = pendingInvitations.put(key, WheelTimer.shared().schedule(
+                () -> expireInvitation(playerName, opponentName), INVITATION_TIMEOUT, TimeUnit.MILLISECONDS));
+            if (previous != null) previous.cancel();
         } else {
             System.out.println("No se encontró al jugador: " + opponentName);
         }
@@ -257,18 +552,26 @@ public class GameWebSocketServer extends WebSocketServer {
     
     private void handleClientAcceptInvite(WebSocket conn, JSONObject message) {
         String fromPlayer = message.getString("from");
-        String playerName = connectedClients.get(conn);
+        String playerName = ConnectionContext.of(conn).getName();
+        
+        WheelTimer.Timeout expiry = pendingInvitations.remove(invitationKey(fromPlayer, playerName));
+        if (expiry == null || !expiry.cancel()) {
+            // Ya ha caducado (o no existe): no se crea la partida
+            sendInvitationExpired(conn, fromPlayer);
+            return;
+        }
         
         WebSocket inviterConn = findConnectionByName(fromPlayer);
         if (inviterConn != null) {
             // Crear nueva sesión de juego
             String sessionId = UUID.randomUUID().toString();
             GameSession session = new GameSession(sessionId, inviterConn, fromPlayer);
+            // Suscritos antes de que la sesión empiece a publicar
+            joinSession(ConnectionContext.of(inviterConn), session);
+            joinSession(ConnectionContext.of(conn), session);
             session.addPlayer2(conn, playerName);
             
             gameSessions.put(sessionId, session);
-            clientToSession.put(inviterConn, sessionId);
-            clientToSession.put(conn, sessionId);
             
             // Notificar a ambos jugadores que la invitación fue aceptada
             JSONObject acceptedMsg = new JSONObject();
@@ -276,21 +579,24 @@ public class GameWebSocketServer extends WebSocketServer {
             acceptedMsg.put("from", playerName);
             acceptedMsg.put("invitationType", "accepted");
             
-            inviterConn.send(acceptedMsg.toString());
-            conn.send(acceptedMsg.toString());
+            Codecs.send(inviterConn, acceptedMsg);
+            Codecs.send(conn, acceptedMsg);
             
             System.out.println("Partida creada: " + fromPlayer + " vs " + playerName);
             
             // CORRECCIÓN: Enviar el estado del juego inmediatamente
             session.broadcastGameState();
             
-            broadcastPlayerList();
+            markBusy(fromPlayer, playerName);
         }
     }
     
     private void handleClientRejectInvite(WebSocket conn, JSONObject message) {
         String fromPlayer = message.getString("from");
-        String playerName = connectedClients.get(conn);
+        String playerName = ConnectionContext.of(conn).getName();
+        
+        WheelTimer.Timeout expiry = pendingInvitations.remove(invitationKey(fromPlayer, playerName));
+        if (expiry != null) expiry.cancel();
         
         WebSocket inviterConn = findConnectionByName(fromPlayer);
         if (inviterConn != null) {
@@ -299,7 +605,7 @@ public class GameWebSocketServer extends WebSocketServer {
             rejectedMsg.put("from", playerName);
             rejectedMsg.put("invitationType", "rejected");
             
-            inviterConn.send(rejectedMsg.toString());
+            Codecs.send(inviterConn, rejectedMsg);
             System.out.println("Invitación rechazada: " + fromPlayer + " por " + playerName);
             
             // El que rechaza se queda en OpponentSelection
@@ -307,45 +613,127 @@ public class GameWebSocketServer extends WebSocketServer {
         }
     }
     
-    private void handleClientPlay(WebSocket conn, JSONObject message) {
-        int column = message.getInt("column");
-        String sessionId = clientToSession.get(conn);
+    private static String invitationKey(String from, String to) {
+        return from + "→" + to;
+    }
+    
+    // Desde WheelTimer: la invitación sigue sin respuesta pasado INVITATION_TIMEOUT
+    private void expireInvitation(String from, String to) {
+        String key = invitationKey(from, to);
+        WheelTimer.Timeout current = pendingInvitations.get(key);
+        // Si se ha vuelto a invitar, la entrada es la nueva (aún sin caducar) y se deja
+        if (current == null || !current.isExpired() || !pendingInvitations.remove(key, current)) return;
         
-        if (sessionId != null) {
-            GameSession session = gameSessions.get(sessionId);
-            if (session != null) {
-                session.makeMove(conn, column);
-            }
+        System.out.println("⌛ Invitación de " + from + " a " + to + " caducada");
+        sendInvitationExpired(findConnectionByName(from), to);
+        sendInvitationExpired(findConnectionByName(to), from);
+    }
+    
+    private void sendInvitationExpired(WebSocket conn, String otherPlayer) {
+        if (conn == null) return;
+        JSONObject expiredMsg = new JSONObject();
+        expiredMsg.put("type", "invitation");
+        expiredMsg.put("from", otherPlayer);
+        expiredMsg.put("invitationType", "expired");
+        Codecs.send(conn, expiredMsg);
+    }
+    
+    private void handleClientPlayBot(WebSocket conn, JSONObject message) {
+        ConnectionContext context = ConnectionContext.of(conn);
+        String playerName = context.getName();
+        if (playerName == null || context.isInGame()) return;
+        
+        BotDifficulty difficulty = BotDifficulty.fromString(message.optString("difficulty", null));
+        BotPlayer bot = new BotPlayer(difficulty, message.optString("engine", BotEngine.ALPHA_BETA));
+        
+        // El bot ocupa el lugar del jugador 2 dentro de una sesión normal
+        String sessionId = UUID.randomUUID().toString();
+        GameSession session = new GameSession(sessionId, conn, playerName);
+        gameSessions.put(sessionId, session);
+        joinSession(context, session);
+        session.addBotPlayer(bot);
+        
+        System.out.println("Partida creada: " + playerName + " vs " + bot.getName());
+        
+        markBusy(playerName);
+    }
+    
+    /**
+     * Mirar la partida de un jugador ("player") sin jugar. El espectador deja
+     * el tema del lobby y recibe la partida por los temas de espectadores (ver
+     * GameSession.addSpectator); no tiene sesión, así que sus jugadas, ratón y
+     * arrastres no llegan a la partida. Vuelve con clientBackToLobby.
+     */
+    private void handleClientSpectate(WebSocket conn, JSONObject message) {
+        ConnectionContext context = ConnectionContext.of(conn);
+        if (context.getName() == null || context.isInGame()) return;
+        
+        String playerName = message.optString("player", "");
+        ConnectionContext player = clientsByName.get(playerName);
+        GameSession session = player != null ? player.getSession() : null;
+        if (session == null || !gameSessions.containsKey(session.getSessionId())) {
+            JSONObject error = new JSONObject();
+            error.put("type", "error");
+            error.put("message", playerName + " no está jugando ninguna partida");
+            Codecs.send(conn, error);
+            return;
+        }
+        
+        if (context.getWatching() != session) {
+            stopWatching(context);
+            context.setWatching(session);
+            TopicBus.shared().unsubscribe(TopicBus.LOBBY, context);
+        }
+        session.addSpectator(context);
+        System.out.println("👀 " + context.getName() + " mira la partida " + session.getPlayer1Name()
+            + " vs " + session.getPlayer2Name());
+    }
+    
+    /** Deja de mirar la partida (si miraba alguna) y vuelve al tema del lobby */
+    private void stopWatching(ConnectionContext context) {
+        GameSession watching = context.getWatching();
+        if (watching == null) return;
+        context.setWatching(null);
+        watching.removeSpectator(context);
+        TopicBus.shared().subscribe(TopicBus.LOBBY, context);
+    }
+    
+    private void handleClientPlay(WebSocket conn, JSONObject message) {
+        handleClientPlay(conn, message.getInt("column"));
+    }
+    
+    private void handleClientPlay(WebSocket conn, int column) {
+        GameSession session = ConnectionContext.of(conn).getSession();
+        if (session != null) {
+            session.makeMove(conn, column);
         }
     }
 
     private void handleClientBackToLobby(WebSocket conn, JSONObject message) {
-        String playerName = connectedClients.get(conn);
-        String sessionId = clientToSession.get(conn);
+        ConnectionContext context = ConnectionContext.of(conn);
+        String playerName = context.getName();
+        GameSession session = context.getSession();
         
         System.out.println("Jugador " + playerName + " volviendo al lobby");
+        stopWatching(context);
         
         // Remover de la sesión de juego
-        if (sessionId != null) {
-            GameSession session = gameSessions.get(sessionId);
-            if (session != null) {
-                session.removePlayer(conn);
-                // Si la sesión queda vacía, eliminarla
-                if (!session.hasTwoPlayers()) {
-                    gameSessions.remove(sessionId);
-                    System.out.println("Sesión " + sessionId + " eliminada");
-                }
-            }
-            clientToSession.remove(conn);
+        if (session != null) {
+            leaveSession(context, session);
+            session.removePlayer(conn);
+            // Sin uno de los dos jugadores, eliminarla
+            endSession(session);
         }
         
-        // Enviar estado actualizado (sin sesión de juego)
-        sendGameStateToClient(conn);
-        broadcastPlayerList();
+        synchronized (lobby) {
+            broadcastToLobby(lobby.setBusy(playerName, false));
+            // Enviar estado actualizado (sin sesión de juego)
+            sendGameStateToClient(conn);
+        }
     }
 
     private void handleClientExit(WebSocket conn, JSONObject message) {
-        String playerName = connectedClients.get(conn);
+        String playerName = ConnectionContext.of(conn).getName();
         System.out.println("Jugador " + playerName + " saliendo");
         
         // Remover de sesión si está en una
@@ -354,116 +742,61 @@ public class GameWebSocketServer extends WebSocketServer {
         // El cierre de conexión se manejará en onClose
     }
     
-    private void handleClientMouseMoving(WebSocket conn, JSONObject message) {
-        double x = message.getDouble("x");
-        double y = message.getDouble("y");
-        
-        String playerName = connectedClients.get(conn);
-        String sessionId = clientToSession.get(conn);
-
-        System.out.println("Mouse move from " + playerName + ": (" + x + ", " + y + ")");
-        
-        if (sessionId != null) {
-            // Actualizar posición del mouse en la sesión de juego
-            GameSession session = gameSessions.get(sessionId);
-            if (session != null) {
-                session.updatePlayerMousePosition(playerName, x, y);
-                session.broadcastGameState();
-            }
+    private void handleClientResync(WebSocket conn) {
+        ConnectionContext context = ConnectionContext.of(conn);
+        GameSession session = context.getSession();
+        if (session != null) {
+            session.sendSnapshot(conn);
+        } else if (context.getWatching() != null) {
+            // Por el reparto de espectadores, en orden con sus parches
+            context.getWatching().addSpectator(context);
         } else {
-            // Actualizar posición del mouse global (fuera de partida)
-            updatePlayerMousePosition(playerName, x, y);
+            sendGameStateToClient(conn);
+        }
+    }
+    
+    private void handleClientMouseMoving(WebSocket conn, JSONObject message) {
+        handleClientMouseMoving(conn, message.getDouble("x"), message.getDouble("y"));
+    }
+    
+    private void handleClientMouseMoving(WebSocket conn, double x, double y) {
+        // Fuera de partida nadie ve el cursor: solo cuenta dentro de la sesión
+        ConnectionContext context = ConnectionContext.of(conn);
+        GameSession session = context.getSession();
+        if (session != null) {
+            session.updatePlayerMousePosition(context.getName(), x, y);
         }
     }
 
     private void handleClientDragPiece(WebSocket conn, JSONObject message) {
         try {
-            boolean isDragging = message.getBoolean("isDragging");
-            double x = message.getDouble("x");
-            double y = message.getDouble("y");
-            String pieceColor = message.getString("pieceColor");
-            
-            String playerName = connectedClients.get(conn);
-            String sessionId = clientToSession.get(conn);
-            
-            System.out.println("Drag from " + playerName + ": " + isDragging + " at (" + x + "," + y + ") color=" + pieceColor);
-            
-            if (sessionId != null) {
-                GameSession session = gameSessions.get(sessionId);
-                if (session != null) {
-                    // ✅ CORRECCIÓN: Llamar al método que hace broadcast automático
-                    session.updatePlayerDragInfo(playerName, isDragging, x, y, pieceColor);
-                }
-            }
+            handleClientDragPiece(conn, message.getBoolean("isDragging"),
+                message.getDouble("x"), message.getDouble("y"), message.getString("pieceColor"));
         } catch (Exception e) {
             System.err.println("Error handling drag piece: " + e.getMessage());
         }
     }
-
-    private void updatePlayerMousePosition(String playerName, double x, double y) {
-        // Buscar la conexión del jugador y actualizar su posición en todas las sesiones donde esté
-        for (Map.Entry<String, GameSession> entry : gameSessions.entrySet()) {
-            GameSession session = entry.getValue();
-            if (session.hasPlayerWithName(playerName)) {
-                session.updatePlayerMousePosition(playerName, x, y);
-            }
+    
+    private void handleClientDragPiece(WebSocket conn, boolean isDragging, double x, double y, String pieceColor) {
+        ConnectionContext context = ConnectionContext.of(conn);
+        GameSession session = context.getSession();
+        if (session != null) {
+            session.updatePlayerDragInfo(context.getName(), isDragging, x, y, pieceColor);
         }
     }
 
     public void broadcastDragUpdate(String playerName, boolean isDragging, double x, double y, String color) {
-        for (Map.Entry<String, GameSession> entry : gameSessions.entrySet()) {
-            GameSession session = entry.getValue();
-            if (session.hasPlayerWithName(playerName)) {
-                session.updatePlayerDragInfo(playerName, isDragging, x, y, color);
-                
-                // Broadcast inmediato solo del estado de drag
-                JSONObject dragUpdate = new JSONObject();
-                dragUpdate.put("type", "dragUpdate");
-                dragUpdate.put("player", playerName);
-                dragUpdate.put("dragging", isDragging);
-                dragUpdate.put("x", x);
-                dragUpdate.put("y", y);
-                dragUpdate.put("color", color);
-                
-                session.broadcastToPlayers(dragUpdate.toString());
-            }
+        ConnectionContext context = clientsByName.get(playerName);
+        GameSession session = context != null ? context.getSession() : null;
+        if (session != null) {
+            // Lo envía CursorConflator junto con el cursor
+            session.updatePlayerDragInfo(playerName, isDragging, x, y, color);
         }
     }
     
     private WebSocket findConnectionByName(String playerName) {
-        for (Map.Entry<WebSocket, String> entry : connectedClients.entrySet()) {
-            if (entry.getValue().equals(playerName)) {
-                return entry.getKey();
-            }
-        }
-        return null;
-    }
-    
-    private void broadcastPlayerList() {
-        // Enviar estado actualizado a todos los clientes
-        for (WebSocket conn : connectedClients.keySet()) {
-            sendCorrectGameStateToClient(conn);
-        }
-    }
-
-    private void sendCorrectGameStateToClient(WebSocket conn) {
-        try {
-            // Verificar si el cliente está en una sesión de juego
-            String sessionId = clientToSession.get(conn);
-            if (sessionId != null) {
-                // El cliente está en una partida, enviar estado de la sesión
-                GameSession session = gameSessions.get(sessionId);
-                if (session != null) {
-                    session.broadcastGameState();
-                    return; // Importante: salir aquí para no enviar estado global
-                }
-            }
-            
-            // Si no está en una sesión, enviar estado global
-            sendGameStateToClient(conn);
-        } catch (Exception e) {
-            System.err.println("Error enviando estado al cliente: " + e.getMessage());
-        }
+        ConnectionContext context = clientsByName.get(playerName);
+        return context != null ? context.getConnection() : null;
     }
     
     public static void main(String[] args) {
@@ -0,0 +1,55 @@
+package com.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+
+import com.shared.BinaryCodec;
+
+/**
+ * Mensaje saliente ya escrito como JSON (UTF-8), compartido por todos sus
+ * destinatarios. El JSON se escribe una sola vez; a cada cliente JSON se le
+ * entrega una vista de esos bytes (json()) y la librería, al enmarcarlo en
+ * sendFrame, todavía lo copia una vez por destinatario (ver FanoutBenchmark).
+ * Para los clientes binarios se obtiene el JSONObject, una sola vez, al
+ * primero que lo pida, y se guarda lo codificado para el siguiente: mientras
+ * su tabla de nombres sea la misma, no se vuelve a codificar.
+ */
+final class JsonFrame {
+
+    private final ByteBuffer json;
+    private JSONObject tree;
+    private BinaryCodec.Encoded binary; // La última codificación binaria
+
+    JsonFrame(byte[] json) {
+        this.json = ByteBuffer.wrap(json).asReadOnlyBuffer();
+    }
+
+    /** Vista propia del contenido: cada envío lee sin mover la posición de los demás */
+    ByteBuffer json() {
+        return json.duplicate();
+    }
+
+    int size() {
+        return json.remaining();
+    }
+
+    /** Contenido para un cliente binario; se reutiliza el del anterior si tenía la misma tabla de nombres */
+    synchronized ByteBuffer binary(BinaryCodec codec) {
+        binary = codec.encode(tree(), binary);
+        return binary.payload();
+    }
+
+    synchronized JSONObject tree() {
+        if (tree == null) {
+            tree = new JSONObject(StandardCharsets.UTF_8.decode(json()).toString());
+        }
+        return tree;
+    }
+
+    @Override
+    public String toString() {
+        return StandardCharsets.UTF_8.decode(json()).toString();
+    }
+}
@@ -0,0 +1,210 @@
+package com.server;
+
+import java.util.Arrays;
+
+/**
+ * Escritor JSON en streaming para los mensajes del servidor.
+ *
+ * Escribe directamente en un buffer de bytes reutilizable por hilo, sin
+ * montar JSONObject/JSONArray ni cadenas intermedias; la única reserva por
+ * mensaje es la copia final en el frame que comparten todos los
+ * destinatarios (la librería aún copia esos bytes al enmarcarlos para cada uno). Los números siguen el formato de org.json (los
+ * decimales enteros sin ".0"), así que lo que recibe un cliente es el mismo
+ * JSON que antes.
+ *
+ * Uso: JsonFrameWriter.start().beginObject().field("type", "countdown")...endObject().toFrame()
+ */
+final class JsonFrameWriter {
+
+    private static final ThreadLocal<JsonFrameWriter> LOCAL = ThreadLocal.withInitial(JsonFrameWriter::new);
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private byte[] buffer = new byte[4096];
+    private int length;
+    private boolean needComma;
+    // Para dar formato a los decimales no enteros sin crear un String
+    private final StringBuilder number = new StringBuilder(32);
+
+    private JsonFrameWriter() {}
+
+    /** El escritor del hilo actual, vacío */
+    static JsonFrameWriter start() {
+        JsonFrameWriter writer = LOCAL.get();
+        writer.length = 0;
+        writer.needComma = false;
+        return writer;
+    }
+
+    JsonFrameWriter beginObject() {
+        separator();
+        put('{');
+        needComma = false;
+        return this;
+    }
+
+    JsonFrameWriter endObject() {
+        put('}');
+        needComma = true;
+        return this;
+    }
+
+    JsonFrameWriter beginArray() {
+        separator();
+        put('[');
+        needComma = false;
+        return this;
+    }
+
+    JsonFrameWriter endArray() {
+        put(']');
+        needComma = true;
+        return this;
+    }
+
+    /** Nombre de campo; lo siguiente tiene que ser su valor */
+    JsonFrameWriter name(String name) {
+        separator();
+        writeString(name);
+        put(':');
+        needComma = false;
+        return this;
+    }
+
+    JsonFrameWriter value(String value) {
+        separator();
+        if (value == null) {
+            putAscii("null");
+        } else {
+            writeString(value);
+        }
+        needComma = true;
+        return this;
+    }
+
+    JsonFrameWriter value(long value) {
+        separator();
+        writeLong(value);
+        needComma = true;
+        return this;
+    }
+
+    JsonFrameWriter value(double value) {
+        separator();
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            // Como org.json: 610.0 se escribe 610
+            writeLong((long) value);
+        } else if (Double.isFinite(value)) {
+            number.setLength(0);
+            number.append(value);
+            for (int i = 0; i < number.length(); i++) put(number.charAt(i));
+        } else {
+            putAscii("null");
+        }
+        needComma = true;
+        return this;
+    }
+
+    JsonFrameWriter value(boolean value) {
+        separator();
+        putAscii(value ? "true" : "false");
+        needComma = true;
+        return this;
+    }
+
+    JsonFrameWriter field(String name, String value) { return name(name).value(value); }
+    JsonFrameWriter field(String name, long value) { return name(name).value(value); }
+    JsonFrameWriter field(String name, double value) { return name(name).value(value); }
+    JsonFrameWriter field(String name, boolean value) { return name(name).value(value); }
+
+    /** Copia el mensaje escrito en un frame que comparten todos sus destinatarios */
+    JsonFrame toFrame() {
+        return new JsonFrame(Arrays.copyOf(buffer, length));
+    }
+
+    int length() { return length; }
+
+    private void separator() {
+        if (needComma) put(',');
+    }
+
+    private void writeString(String value) {
+        put('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': put('\\'); put('"'); break;
+                case '\\': put('\\'); put('\\'); break;
+                case '\n': put('\\'); put('n'); break;
+                case '\r': put('\\'); put('r'); break;
+                case '\t': put('\\'); put('t'); break;
+                default:
+                    if (c < 0x20) {
+                        putAscii("\\u00");
+                        put((char) HEX[c >> 4]);
+                        put((char) HEX[c & 0xF]);
+                    } else if (c < 0x80) {
+                        put(c);
+                    } else {
+                        i = writeUtf8(value, i);
+                    }
+            }
+        }
+        put('"');
+    }
+
+    // Carácter no ASCII en UTF-8; @return el índice del último char consumido
+    private int writeUtf8(String value, int i) {
+        int codePoint = value.codePointAt(i);
+        ensure(4);
+        if (codePoint < 0x800) {
+            buffer[length++] = (byte) (0xC0 | codePoint >> 6);
+        } else if (codePoint < 0x10000) {
+            buffer[length++] = (byte) (0xE0 | codePoint >> 12);
+            buffer[length++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+        } else {
+            buffer[length++] = (byte) (0xF0 | codePoint >> 18);
+            buffer[length++] = (byte) (0x80 | (codePoint >> 12 & 0x3F));
+            buffer[length++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+        }
+        buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+        return i + Character.charCount(codePoint) - 1;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            putAscii("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+        ensure(20);
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // Las cifras han salido al revés
+        for (int a = start, b = length - 1; a < b; a++, b--) {
+            byte t = buffer[a];
+            buffer[a] = buffer[b];
+            buffer[b] = t;
+        }
+    }
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) put(text.charAt(i));
+    }
+
+    private void put(char c) {
+        ensure(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.server;
+
+/**
+ * Lector de mensajes JSON planos campo a campo, sin crear JSONObject.
+ *
+ * Pensado para los mensajes que llegan decenas de veces por segundo
+ * (clientMouseMoving, clientDragPiece, clientPlay): solo entiende objetos
+ * cuyos valores son números, booleanos, null o cadenas sin escapes. Con
+ * cualquier otra cosa next() devuelve false y failed() es true, y el mensaje
+ * se procesa por el camino normal con org.json.
+ *
+ * Uso:
+ *   JsonPullParser in = JsonPullParser.of(text);
+ *   while (in.next()) { if (in.nameIs("x")) x = in.number(); ... }
+ *   if (in.failed()) ...
+ */
+final class JsonPullParser {
+
+    private static final ThreadLocal<JsonPullParser> LOCAL = ThreadLocal.withInitial(JsonPullParser::new);
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private String text;
+    private int pos;
+    private boolean failed;
+    private boolean done;
+    private boolean first;
+    // Campo actual: el nombre y el valor son rangos [start, end) de text
+    private int nameStart, nameEnd;
+    private int valueStart, valueEnd;
+    private boolean valueIsString;
+
+    private JsonPullParser() {}
+
+    /** El lector del hilo actual, colocado al principio de text */
+    static JsonPullParser of(String text) {
+        JsonPullParser parser = LOCAL.get();
+        parser.text = text;
+        parser.pos = 0;
+        parser.failed = false;
+        parser.done = false;
+        parser.first = true;
+        parser.skipSpaces();
+        if (!parser.consume('{')) parser.fail();
+        return parser;
+    }
+
+    /** Avanza al siguiente campo; false al final del objeto o si hay algo que no sabe leer */
+    boolean next() {
+        if (failed || done) return false;
+        skipSpaces();
+        if (consume('}')) {
+            done = true;
+            return false;
+        }
+        if (!first && !consume(',')) return fail();
+        first = false;
+        skipSpaces();
+        if (!readString()) return fail();
+        nameStart = valueStart;
+        nameEnd = valueEnd;
+        skipSpaces();
+        if (!consume(':')) return fail();
+        skipSpaces();
+        if (pos >= text.length()) return fail();
+        char c = text.charAt(pos);
+        if (c == '"') {
+            if (!readString()) return fail();
+            valueIsString = true;
+        } else if (c == '{' || c == '[') {
+            return fail(); // Valores anidados: no es uno de los mensajes sencillos
+        } else {
+            valueStart = pos;
+            while (pos < text.length() && ",} \t\r\n".indexOf(text.charAt(pos)) < 0) pos++;
+            valueEnd = pos;
+            valueIsString = false;
+            if (valueStart == valueEnd) return fail();
+        }
+        return true;
+    }
+
+    boolean failed() {
+        return failed;
+    }
+
+    boolean nameIs(String name) {
+        return nameEnd - nameStart == name.length() && text.regionMatches(nameStart, name, 0, name.length());
+    }
+
+    /** El valor actual es la cadena expected (sin crear un String para compararla) */
+    boolean stringIs(String expected) {
+        return valueIsString && valueEnd - valueStart == expected.length()
+            && text.regionMatches(valueStart, expected, 0, expected.length());
+    }
+
+    String string() {
+        if (!valueIsString) {
+            fail();
+            return null;
+        }
+        return text.substring(valueStart, valueEnd);
+    }
+
+    boolean bool() {
+        if (!valueIsString && valueEnd - valueStart == 4 && text.startsWith("true", valueStart)) return true;
+        if (!valueIsString && valueEnd - valueStart == 5 && text.startsWith("false", valueStart)) return false;
+        fail();
+        return false;
+    }
+
+    /**
+     * Número del campo actual. Los habituales (hasta 15 cifras, sin
+     * exponente) se calculan aquí con un solo redondeo, igual que
+     * Double.parseDouble; el resto pasan por Double.parseDouble.
+     */
+    double number() {
+        if (valueIsString) {
+            fail();
+            return 0;
+        }
+        int i = valueStart;
+        boolean negative = text.charAt(i) == '-';
+        if (negative) i++;
+        long mantissa = 0;
+        int digits = 0;
+        boolean sawDigit = false;
+        int decimals = 0;
+        boolean point = false;
+        for (; i < valueEnd; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                sawDigit = true;
+                if (mantissa > 0) digits++;
+                if (point) decimals++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (i == valueEnd && sawDigit && digits <= 15 && decimals < POWERS_OF_TEN.length && (!point || decimals > 0)) {
+            double value = mantissa / POWERS_OF_TEN[decimals];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(text.substring(valueStart, valueEnd));
+        } catch (NumberFormatException e) {
+            fail();
+            return 0;
+        }
+    }
+
+    int integer() {
+        double value = number();
+        if (value != (int) value) fail();
+        return (int) value;
+    }
+
+    // Cadena entre comillas en pos: deja su contenido en [valueStart, valueEnd)
+    private boolean readString() {
+        if (!consume('"')) return false;
+        int start = pos;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                valueStart = start;
+                valueEnd = pos++;
+                return true;
+            }
+            if (c == '\\') return false; // Con escapes, mejor org.json
+            pos++;
+        }
+        return false;
+    }
+
+    private boolean consume(char c) {
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private boolean fail() {
+        failed = true;
+        return false;
+    }
+}
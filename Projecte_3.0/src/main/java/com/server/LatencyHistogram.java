@@ -0,0 +1,58 @@
+package com.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias sin locks: cubos de potencias de 2 en
+ * microsegundos (el cubo i cuenta lo que tarda menos de 2^i µs), así que
+ * record() es un incremento atómico y los percentiles salen con la precisión
+ * de un cubo. Basta para ver si algo tarda micros, milis o segundos.
+ */
+class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private volatile long maxNanos = 0;
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+
+    long getCount() { return count.get(); }
+
+    double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / 1e3 / n;
+    }
+
+    double getMaxMicros() { return maxNanos / 1e3; }
+
+    /** Cota superior (µs) del cubo donde cae el percentil p (0-100) */
+    long percentileMicros(double p) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long target = (long) Math.ceil(n * p / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return 1L << i;
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    /** "p50 ≤ 4 µs, p99 ≤ 64 µs, máx. 210 µs" para las estadísticas */
+    String summary() {
+        return String.format("p50 ≤ %d µs, p99 ≤ %d µs, máx. %.0f µs",
+            percentileMicros(50), percentileMicros(99), getMaxMicros());
+    }
+}
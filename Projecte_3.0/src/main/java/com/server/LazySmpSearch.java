@@ -0,0 +1,116 @@
+package com.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.shared.Bitboard;
+
+/**
+ * Búsqueda alfa-beta paralela tipo Lazy SMP.
+ *
+ * Todos los hilos buscan la misma posición con profundización iterativa y
+ * comparten una única TranspositionTable sin locks; lo que uno descubre lo
+ * aprovechan los demás a través de la tabla. El resultado es el del hilo
+ * principal (el que llama a search), los auxiliares solo aportan tabla.
+ *
+ * Límite global: entre todos los bots nunca hay más de MAX_THREADS hilos
+ * buscando. El hilo principal espera su permiso; los auxiliares solo se
+ * lanzan si quedan permisos libres, así las partidas contra bots no pueden
+ * dejar sin CPU a las sesiones entre personas. Se configura con
+ * -Dbot.maxThreads=N (por defecto, la mitad de los núcleos).
+ */
+public class LazySmpSearch {
+
+    public static final int MAX_THREADS = Integer.getInteger("bot.maxThreads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    // Compartidos con MctsSearch: el límite es para todos los motores
+    static final Semaphore THREAD_PERMITS = new Semaphore(MAX_THREADS);
+    static final ExecutorService HELPER_POOL =
+            Executors.newFixedThreadPool(MAX_THREADS, BotPlayer.daemonThreads("bot-helper-"));
+
+    private final TranspositionTable table;
+    private final AlphaBetaSearch[] workers;
+    private volatile AtomicBoolean stopFlag = new AtomicBoolean();
+
+    /**
+     * @param threads hilos que se intentarán usar (1 = búsqueda secuencial)
+     * @param tableSizeBits tamaño de la tabla compartida (2^bits entradas)
+     */
+    public LazySmpSearch(int threads, int tableSizeBits) {
+        this.table = new TranspositionTable(tableSizeBits);
+        this.workers = new AlphaBetaSearch[Math.max(1, Math.min(threads, MAX_THREADS))];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new AlphaBetaSearch(table);
+            workers[i].setHelperIndex(i);
+        }
+    }
+
+    /**
+     * Busca la mejor columna. Los nodos del resultado suman los de todos los hilos.
+     */
+    public SearchResult search(Bitboard position, int maxDepth, long budgetMillis) {
+        AtomicBoolean stop = new AtomicBoolean();
+        stopFlag = stop;
+
+        try {
+            THREAD_PERMITS.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new AlphaBetaSearch(table).search(position, 1, budgetMillis);
+        }
+
+        int helpers = 0;
+        while (helpers < workers.length - 1 && THREAD_PERMITS.tryAcquire()) {
+            helpers++;
+        }
+
+        List<Future<SearchResult>> helperResults = new ArrayList<>();
+        try {
+            for (int i = 1; i <= helpers; i++) {
+                AlphaBetaSearch helper = workers[i];
+                helperResults.add(HELPER_POOL.submit(() -> {
+                    try {
+                        return helper.search(position, maxDepth, budgetMillis, stop);
+                    } finally {
+                        THREAD_PERMITS.release();
+                    }
+                }));
+            }
+
+            SearchResult result = workers[0].search(position, maxDepth, budgetMillis, stop);
+
+            // El principal ha terminado: los auxiliares ya no aportan nada
+            stop.set(true);
+            long nodes = result.getNodes();
+            for (Future<SearchResult> future : helperResults) {
+                try {
+                    nodes += future.get().getNodes();
+                } catch (Exception e) {
+                    System.err.println("Error en hilo auxiliar del bot: " + e.getMessage());
+                }
+            }
+            result.setNodes(nodes);
+            result.setThreads(1 + helpers);
+            return result;
+        } finally {
+            THREAD_PERMITS.release();
+        }
+    }
+
+    /** Corta la búsqueda en curso en todos los hilos */
+    public void stop() {
+        stopFlag.set(true);
+    }
+
+    public void clearTable() {
+        table.clear();
+    }
+
+    public int getMaxThreads() { return workers.length; }
+}
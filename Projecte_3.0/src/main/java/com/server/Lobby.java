@@ -0,0 +1,128 @@
+package com.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.shared.Bitboard;
+
+/**
+ * Sala de espera: quién está conectado y si está en partida.
+ *
+ * Cada cambio sube la versión y produce un evento pequeño (lobbyPresence:
+ * joined, left, busy o available) en lugar de reenviar la lista entera. La
+ * foto completa (el serverData de siempre, con lobbyVersion) se escribe una
+ * vez por versión y la comparten todos los que la piden; el latido
+ * (lobbyHeartbeat) solo lleva la versión, para que un cliente que se haya
+ * perdido un evento pida la foto con clientResync.
+ *
+ * No envía nada: devuelve los frames y los reparte GameWebSocketServer,
+ * dentro de synchronized (lobby) para que lleguen en orden de versión.
+ */
+class Lobby {
+
+    private final Map<String, Boolean> players = new LinkedHashMap<>(); // Nombre → en partida
+    private long version = 0;
+
+    private JsonFrame cachedSnapshot;
+    private long cachedSnapshotVersion = -1;
+
+    // Estadísticas
+    private long events = 0;
+    private long snapshotsBuilt = 0;
+    private long snapshotsServed = 0;
+
+    /** @return el evento joined, o null si ya estaba */
+    synchronized JsonFrame join(String name) {
+        if (players.containsKey(name)) return null;
+        players.put(name, false);
+        return event("joined", name);
+    }
+
+    /** @return el evento left, o null si no estaba */
+    synchronized JsonFrame leave(String name) {
+        if (name == null || players.remove(name) == null) return null;
+        return event("left", name);
+    }
+
+    /** @return el evento busy/available, o null si no estaba o no cambia */
+    synchronized JsonFrame setBusy(String name, boolean busy) {
+        Boolean current = name != null ? players.get(name) : null;
+        if (current == null || current == busy) return null;
+        players.put(name, busy);
+        return event(busy ? "busy" : "available", name);
+    }
+
+    /** La lista completa en el formato de serverData; solo se reescribe si ha cambiado la versión */
+    synchronized JsonFrame snapshot() {
+        snapshotsServed++;
+        if (cachedSnapshotVersion == version) return cachedSnapshot;
+        snapshotsBuilt++;
+
+        JsonFrameWriter out = JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "serverData")
+            .field("lobbyVersion", version);
+
+        out.name("clientsList").beginArray();
+        for (Map.Entry<String, Boolean> player : players.entrySet()) {
+            out.beginObject()
+                .field("name", player.getKey())
+                .field("color", "GRAY") // Color por defecto
+                .field("mouseX", 0)
+                .field("mouseY", 0)
+                .field("role", "") // Rol vacío hasta que empiece el juego
+                .field("busy", player.getValue())
+                .endObject();
+        }
+        out.endArray();
+
+        out.name("objectsList").beginArray().endArray();
+
+        // Datos del juego vacíos: tablero sin fichas
+        out.name("game").beginObject()
+            .field("status", "waiting")
+            .field("turn", "")
+            .field("winner", "")
+            .name("board").beginArray();
+        for (int row = 0; row < Bitboard.ROWS; row++) {
+            out.beginArray();
+            for (int col = 0; col < Bitboard.COLS; col++) {
+                out.value(" ");
+            }
+            out.endArray();
+        }
+        out.endArray().endObject();
+
+        cachedSnapshot = out.endObject().toFrame();
+        cachedSnapshotVersion = version;
+        return cachedSnapshot;
+    }
+
+    synchronized JsonFrame heartbeat() {
+        return JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "lobbyHeartbeat")
+            .field("version", version)
+            .endObject()
+            .toFrame();
+    }
+
+    private JsonFrame event(String event, String name) {
+        version++;
+        events++;
+        return JsonFrameWriter.start()
+            .beginObject()
+            .field("type", "lobbyPresence")
+            .field("version", version)
+            .field("event", event)
+            .field("name", name)
+            .endObject()
+            .toFrame();
+    }
+
+    synchronized long getVersion() { return version; }
+    synchronized int getPlayerCount() { return players.size(); }
+    synchronized long getEvents() { return events; }
+    synchronized long getSnapshotsBuilt() { return snapshotsBuilt; }
+    synchronized long getSnapshotsServed() { return snapshotsServed; }
+}
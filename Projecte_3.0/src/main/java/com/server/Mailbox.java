@@ -0,0 +1,133 @@
+package com.server;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buzón de una GameSession (modelo de actor): todo lo que cambia o envía el
+ * estado de la partida entra aquí como un mensaje, y los mensajes de un buzón
+ * se procesan de uno en uno y en orden de llegada. Así la sesión no necesita
+ * locks: solo un hilo la toca a la vez.
+ *
+ * Los buzones no tienen hilo propio: cuando uno tiene mensajes se vacía en un
+ * pool compartido (un hilo por núcleo), de modo que sesiones distintas
+ * avanzan en paralelo y el hilo del WebSocket, los temporizadores y el bot
+ * solo encolan. Para no acaparar un hilo, cada pasada procesa como mucho
+ * BATCH mensajes y, si quedan más, vuelve a la cola del pool.
+ */
+final class Mailbox implements Executor {
+
+    private static final int BATCH = 64;
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), BotPlayer.daemonThreads("session-"));
+
+    private final ExecutorService workers;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Thread owner; // Hilo que está vaciando el buzón ahora mismo
+
+    // Métricas
+    private final AtomicInteger depth = new AtomicInteger();
+    private volatile int maxDepth = 0;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong processingNanos = new AtomicLong();
+    private volatile long maxProcessingNanos = 0;
+
+    Mailbox() {
+        this(WORKERS);
+    }
+
+    /** Buzón que se vacía en otro pool (ConnectionPipeline tiene el suyo) */
+    Mailbox(ExecutorService workers) {
+        this.workers = workers;
+    }
+
+    /** Encola un mensaje; vuelve enseguida */
+    @Override
+    public void execute(Runnable message) {
+        queue.add(message);
+        int d = depth.incrementAndGet();
+        if (d > maxDepth) maxDepth = d;
+        if (scheduled.compareAndSet(false, true)) {
+            workers.execute(this::drain);
+        }
+    }
+
+    /**
+     * Encola un mensaje y espera su resultado. Para quien necesita una
+     * respuesta fuera de la sesión (TournamentRunner); desde dentro del
+     * propio buzón se ejecuta directamente, si no se esperaría a sí mismo.
+     */
+    <T> T ask(Callable<T> message) {
+        if (Thread.currentThread() == owner) {
+            try {
+                return message.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                result.complete(message.call());
+            } catch (Throwable e) {
+                // También los Error: si no, quien espera se quedaría bloqueado para siempre
+                result.completeExceptionally(e);
+            }
+        });
+        return result.join();
+    }
+
+    private void drain() {
+        owner = Thread.currentThread();
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable message = queue.poll();
+                if (message == null) break;
+                depth.decrementAndGet();
+                long start = System.nanoTime();
+                try {
+                    message.run();
+                } catch (Exception e) {
+                    // Un mensaje con problemas no puede dejar la sesión sin procesar los siguientes
+                    System.err.println("Error procesando mensaje del buzón: " + e.getMessage());
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    processed.incrementAndGet();
+                    processingNanos.addAndGet(elapsed);
+                    if (elapsed > maxProcessingNanos) maxProcessingNanos = elapsed;
+                }
+            }
+        } finally {
+            owner = null;
+            scheduled.set(false);
+            // Lo que haya llegado mientras tanto (o lo que no cabía en esta pasada)
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+        }
+    }
+
+    /** Mensajes esperando a ser procesados */
+    int getDepth() { return depth.get(); }
+    int getMaxDepth() { return maxDepth; }
+    long getProcessed() { return processed.get(); }
+
+    double getAverageProcessingMicros() {
+        long count = processed.get();
+        return count == 0 ? 0 : processingNanos.get() / 1e3 / count;
+    }
+
+    double getMaxProcessingMicros() { return maxProcessingNanos / 1e3; }
+}
@@ -0,0 +1,375 @@
+package com.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.shared.Bitboard;
+
+/**
+ * Motor Monte Carlo Tree Search (UCT) del bot.
+ *
+ * El árbol no tiene objetos por nodo: cada nodo es un índice en varios arrays
+ * primitivos y los hijos de un nodo ocupan posiciones consecutivas. Los
+ * playouts no reservan memoria: cada hilo juega sobre su propio Bitboard.
+ *
+ * Paralelismo de árbol: todos los hilos recorren el mismo árbol. Al bajar por
+ * un nodo se le suma una pérdida virtual (visitas sin puntos) para que los
+ * demás hilos prefieran otras ramas mientras dura el playout; al subir el
+ * resultado se descuenta. Los hilos salen del mismo límite global que
+ * LazySmpSearch.
+ *
+ * La dificultad es el número de playouts por jugada (con el tiempo del nivel
+ * como tope).
+ *
+ * Los arrays del árbol (hasta unos 28 MB) se reservan en la primera búsqueda,
+ * no al crear el bot, y release() los suelta al acabar la partida.
+ */
+public class MctsSearch implements BotEngine {
+
+    private static final double EXPLORATION = 1.4;
+    private static final int VIRTUAL_LOSS = 3;
+
+    // 14 bytes por nodo: con 2^21 nodos, unos 28 MB en el nivel más alto
+    private static final int MAX_NODES = 1 << 21;
+
+    // Estado de firstChild: >0 índice del primer hijo
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = -1;
+
+    // Puntos en medios puntos desde el punto de vista de quien jugó hacia el nodo
+    private static final int WIN_POINTS = 2;
+    private static final int DRAW_POINTS = 1;
+
+    private static final int[] COLUMN_ORDER = {3, 2, 4, 1, 5, 0, 6};
+
+    private final int playouts;
+    private final long budgetMillis;
+    private final int capacity;
+    private final Worker[] workers;
+
+    // Árbol: null hasta la primera búsqueda y después de release(). Se asignan
+    // antes de lanzar los hilos auxiliares, que los ven al empezar su tarea
+    private AtomicIntegerArray firstChild;
+    private AtomicIntegerArray visits;
+    private AtomicIntegerArray points;
+    private byte[] childCount;
+    private byte[] moves;
+    private boolean searching = false;        // Con el lock del motor
+    private boolean releasePending = false;   // release() durante una búsqueda: al terminarla
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final AtomicInteger playoutCount = new AtomicInteger();
+
+    private volatile AtomicBoolean stopFlag = new AtomicBoolean();
+
+    public MctsSearch(BotDifficulty difficulty) {
+        this(difficulty.getPlayouts(), difficulty.getBudgetMillis(), difficulty.getThreads());
+    }
+
+    /**
+     * @param playouts playouts por jugada
+     * @param budgetMillis tiempo máximo por jugada
+     * @param threads hilos que se intentarán usar
+     */
+    public MctsSearch(int playouts, long budgetMillis, int threads) {
+        this.playouts = playouts;
+        this.budgetMillis = budgetMillis;
+        this.capacity = (int) Math.min(MAX_NODES, (long) playouts * Bitboard.COLS + 1);
+
+        this.workers = new Worker[Math.max(1, Math.min(threads, LazySmpSearch.MAX_THREADS))];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    @Override
+    public SearchResult search(Bitboard position) {
+        long start = System.nanoTime();
+        long deadline = start + budgetMillis * 1_000_000L;
+        AtomicBoolean stop = new AtomicBoolean();
+        stopFlag = stop;
+
+        SearchResult result = new SearchResult();
+
+        // Victoria inmediata: no hace falta simular nada
+        long wins = Bitboard.winningSpots(position.getPieces(position.currentPlayer()), position.getMask())
+                  & position.playableMask();
+        if (wins != 0) {
+            result.setMove(Long.numberOfTrailingZeros(wins) / Bitboard.H1);
+            result.setScore(1000);
+            return result;
+        }
+
+        synchronized (this) {
+            searching = true;
+            if (moves == null) {
+                firstChild = new AtomicIntegerArray(capacity);
+                visits = new AtomicIntegerArray(capacity);
+                points = new AtomicIntegerArray(capacity);
+                childCount = new byte[capacity];
+                moves = new byte[capacity];
+            }
+        }
+        try {
+            return searchTree(position, start, deadline, stop, result);
+        } finally {
+            synchronized (this) {
+                searching = false;
+                if (releasePending) freeTree();
+            }
+        }
+    }
+
+    private SearchResult searchTree(Bitboard position, long start, long deadline, AtomicBoolean stop, SearchResult result) {
+        // Árbol nuevo: solo la raíz
+        nodeCount.set(1);
+        playoutCount.set(0);
+        firstChild.set(0, UNEXPANDED);
+        visits.set(0, 0);
+        points.set(0, 0);
+
+        try {
+            LazySmpSearch.THREAD_PERMITS.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result;
+        }
+
+        int helpers = 0;
+        while (helpers < workers.length - 1 && LazySmpSearch.THREAD_PERMITS.tryAcquire()) {
+            helpers++;
+        }
+
+        List<Future<?>> helperRuns = new ArrayList<>();
+        int maxDepth;
+        try {
+            for (int i = 1; i <= helpers; i++) {
+                Worker helper = workers[i];
+                helperRuns.add(LazySmpSearch.HELPER_POOL.submit(() -> {
+                    try {
+                        helper.run(position, deadline, stop);
+                    } finally {
+                        LazySmpSearch.THREAD_PERMITS.release();
+                    }
+                }));
+            }
+
+            workers[0].run(position, deadline, stop);
+            stop.set(true);
+            maxDepth = workers[0].maxDepth;
+            for (int i = 0; i < helperRuns.size(); i++) {
+                try {
+                    helperRuns.get(i).get();
+                    maxDepth = Math.max(maxDepth, workers[i + 1].maxDepth);
+                } catch (Exception e) {
+                    System.err.println("Error en hilo auxiliar del bot: " + e.getMessage());
+                }
+            }
+        } finally {
+            LazySmpSearch.THREAD_PERMITS.release();
+        }
+
+        // La jugada más visitada es la más robusta
+        int first = firstChild.get(0);
+        int best = -1;
+        for (int i = 0; first > 0 && i < childCount[0]; i++) {
+            int child = first + i;
+            if (best < 0 || visits.get(child) > visits.get(best)) best = child;
+        }
+        if (best >= 0) {
+            result.setMove(moves[best]);
+            result.setScore(visits.get(best) > 0 ? points.get(best) * 500 / visits.get(best) : 0);
+        } else {
+            result.setMove(firstPlayable(position));
+        }
+
+        result.setDepth(maxDepth);
+        result.setPlayouts(Math.min(playoutCount.get(), playouts));
+        result.setNodes(Math.min(nodeCount.get(), moves.length));
+        result.setThreads(1 + helpers);
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000L);
+        return result;
+    }
+
+    @Override
+    public void stop() {
+        stopFlag.set(true);
+    }
+
+    @Override
+    public synchronized void release() {
+        if (searching) {
+            releasePending = true; // La búsqueda en curso aún usa el árbol
+        } else {
+            freeTree();
+        }
+    }
+
+    private void freeTree() {
+        releasePending = false;
+        firstChild = visits = points = null;
+        childCount = moves = null;
+    }
+
+    @Override
+    public String getLabel() {
+        return "MCTS";
+    }
+
+    /**
+     * Reserva e inicializa los hijos de un nodo. Solo un hilo expande cada nodo;
+     * los demás hacen el playout desde la hoja mientras tanto.
+     * @return true si el nodo tiene hijos al volver
+     */
+    private boolean expand(int node, Bitboard board) {
+        if (!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return firstChild.get(node) > 0;
+        }
+        long playable = board.playableMask();
+        int count = Long.bitCount(playable);
+        int base = nodeCount.getAndAdd(count);
+        if (base + count > moves.length) {
+            // Árbol lleno: el nodo se queda como hoja (EXPANDING) para siempre
+            return false;
+        }
+
+        int i = 0;
+        for (int col : COLUMN_ORDER) {
+            if ((playable & Bitboard.columnMask(col)) == 0) continue;
+            int child = base + i++;
+            moves[child] = (byte) col;
+            childCount[child] = 0;
+            visits.set(child, 0);
+            points.set(child, 0);
+            firstChild.set(child, UNEXPANDED);
+        }
+        childCount[node] = (byte) count;
+        // Escritura volátil: publica los hijos ya inicializados
+        firstChild.set(node, base);
+        return true;
+    }
+
+    /** UCT; un hijo sin visitar se elige antes que cualquier otro */
+    private int selectChild(int node, int first) {
+        double logParent = Math.log(Math.max(1, visits.get(node)));
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < childCount[node]; i++) {
+            int child = first + i;
+            int n = visits.get(child);
+            if (n == 0) return child;
+            double value = points.get(child) / (2.0 * n) + EXPLORATION * Math.sqrt(logParent / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private static int firstPlayable(Bitboard position) {
+        long playable = position.playableMask();
+        return playable == 0 ? -1 : Long.numberOfTrailingZeros(playable) / Bitboard.H1;
+    }
+
+    /** Estado propio de cada hilo: tablero de trabajo, camino y aleatoriedad */
+    private class Worker {
+        private final Bitboard board = new Bitboard();
+        private final int[] path = new int[Bitboard.CELLS + 1];
+        private final SplittableRandom random;
+        private int maxDepth;
+
+        Worker(int index) {
+            this.random = new SplittableRandom(0x4D435453L + index);
+        }
+
+        void run(Bitboard root, long deadline, AtomicBoolean stop) {
+            maxDepth = 0;
+            int budget = playouts;
+            while (!stop.get() && playoutCount.getAndIncrement() < budget) {
+                playout(root);
+                if (System.nanoTime() > deadline) break;
+            }
+        }
+
+        private void playout(Bitboard root) {
+            board.copyFrom(root);
+            int length = 0;
+            int node = 0;
+            path[length++] = node;
+            visits.addAndGet(node, VIRTUAL_LOSS);
+
+            // Selección y expansión
+            int winner = -2;
+            while (true) {
+                int first = firstChild.get(node);
+                if (first <= 0) {
+                    // Una hoja se expande la segunda vez que se pasa por ella
+                    boolean visited = node == 0 || visits.get(node) > VIRTUAL_LOSS;
+                    if (first != UNEXPANDED || !visited || !expand(node, board)) break;
+                    first = firstChild.get(node);
+                }
+                node = selectChild(node, first);
+                board.play(moves[node]);
+                visits.addAndGet(node, VIRTUAL_LOSS);
+                path[length++] = node;
+
+                if (board.lastMoveWon()) {
+                    winner = 1 - board.currentPlayer();
+                    break;
+                }
+                if (board.isFull()) {
+                    winner = -1;
+                    break;
+                }
+            }
+            maxDepth = Math.max(maxDepth, length - 1);
+
+            // Quien jugó hacia la hoja; hacia path[i] juega el contrario que hacia path[i + 1]
+            int mover = 1 - board.currentPlayer();
+
+            // Simulación
+            if (winner == -2) {
+                winner = rollout();
+            }
+
+            // Retropropagación
+            for (int i = length - 1; i >= 0; i--) {
+                int n = path[i];
+                int gained = winner == -1 ? DRAW_POINTS : winner == mover ? WIN_POINTS : 0;
+                points.addAndGet(n, gained);
+                visits.addAndGet(n, 1 - VIRTUAL_LOSS);
+                mover = 1 - mover;
+            }
+        }
+
+        /**
+         * Partida al azar hasta el final, ganando si se puede y tapando si hace
+         * falta. @return el jugador que gana o -1 si son tablas
+         */
+        private int rollout() {
+            while (true) {
+                int me = board.currentPlayer();
+                long mask = board.getMask();
+                long playable = board.playableMask();
+
+                if ((Bitboard.winningSpots(board.getPieces(me), mask) & playable) != 0) {
+                    return me;
+                }
+                long blocks = Bitboard.winningSpots(board.getPieces(1 - me), mask) & playable;
+                long choices = blocks != 0 ? blocks : playable;
+
+                // k-ésimo bit a 1 de choices
+                for (int k = random.nextInt(Long.bitCount(choices)); k > 0; k--) {
+                    choices &= choices - 1;
+                }
+                board.play(Long.numberOfTrailingZeros(choices) / Bitboard.H1);
+                if (board.isFull()) return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.shared.Bitboard;
+
+/**
+ * Libro de aperturas en disco, mapeado en memoria (fuera del heap).
+ *
+ * Formato (big-endian), generado por OpeningBookGenerator:
+ *   cabecera: MAGIC (int), VERSION (int), número de registros (int), profundidad (int)
+ *   registros de RECORD_SIZE bytes ordenados por clave:
+ *     clave canónica (long), puntuación (short), columna (byte), flags (byte)
+ *
+ * Las posiciones simétricas comparten registro (Bitboard.canonicalKey); si la
+ * posición consultada es el reflejo de la guardada, la columna se refleja.
+ * La búsqueda es binaria con lecturas absolutas, que son seguras entre hilos.
+ *
+ * Cada posición se busca hasta el final de la partida (SEARCH_DEPTH) pero con
+ * un tiempo fijo, así que solo los registros con FLAG_EXACT están resueltos;
+ * el resto son la jugada de una búsqueda heurística corta. Los bots solo usan
+ * los exactos (lookupExact): uno heurístico podría ser peor que lo que el
+ * propio bot encontraría buscando.
+ */
+public class OpeningBook {
+
+    static final int MAGIC = 0x43344243; // "C4BC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 12;
+
+    // La posición está resuelta (búsqueda completa o victoria/derrota forzada): la jugada es exacta
+    static final int FLAG_EXACT = 1;
+
+    // Profundidad con la que OpeningBookGenerator busca cada posición: hasta el final
+    public static final int SEARCH_DEPTH = Bitboard.CELLS;
+
+    public static final Path DEFAULT_PATH = Path.of("data", "opening-book.bin");
+
+    private static volatile OpeningBook shared = empty();
+
+    private final ByteBuffer records;
+    private final int count;
+    private final int depth;
+
+    private OpeningBook(ByteBuffer records, int count, int depth) {
+        this.records = records;
+        this.count = count;
+        this.depth = depth;
+    }
+
+    public static OpeningBook empty() {
+        return new OpeningBook(ByteBuffer.allocate(0), 0, -1);
+    }
+
+    /** Mapea el fichero en memoria; no lee los registros hasta que se consultan */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Formato de libro de aperturas no válido: " + path);
+            }
+            int count = buffer.getInt(8);
+            int depth = buffer.getInt(12);
+            if (buffer.limit() < HEADER_SIZE + (long) count * RECORD_SIZE) {
+                throw new IOException("Libro de aperturas truncado: " + path);
+            }
+            return new OpeningBook(buffer, count, depth);
+        }
+    }
+
+    /**
+     * Carga el libro compartido que consultan los bots. Si no existe o no se
+     * puede leer, los bots simplemente buscan desde la primera jugada.
+     */
+    public static void loadShared(Path path) {
+        if (!Files.exists(path)) {
+            System.out.println("📖 Sin libro de aperturas en " + path + " (genera uno con OpeningBookGenerator)");
+            return;
+        }
+        try {
+            shared = open(path);
+            System.out.println("📖 Libro de aperturas cargado: " + shared.count + " posiciones hasta " + shared.depth + " jugadas");
+        } catch (IOException e) {
+            System.err.println("Error cargando libro de aperturas: " + e.getMessage());
+        }
+    }
+
+    public static OpeningBook shared() {
+        return shared;
+    }
+
+    /** @return la columna del libro para la posición, o -1 si no está */
+    public int lookup(Bitboard position) {
+        return lookup(position, false);
+    }
+
+    /** @return la columna del libro si la posición está resuelta (FLAG_EXACT), o -1 */
+    public int lookupExact(Bitboard position) {
+        return lookup(position, true);
+    }
+
+    private int lookup(Bitboard position, boolean exactOnly) {
+        if (position.getMoveCount() > depth) return -1;
+
+        long key = position.positionKey();
+        long mirrorKey = position.mirrorKey();
+        boolean mirrored = mirrorKey < key;
+
+        int index = find(mirrored ? mirrorKey : key);
+        if (index < 0) return -1;
+        if (exactOnly && (records.get(HEADER_SIZE + index * RECORD_SIZE + 11) & FLAG_EXACT) == 0) return -1;
+
+        int column = records.get(HEADER_SIZE + index * RECORD_SIZE + 10);
+        return mirrored ? Bitboard.COLS - 1 - column : column;
+    }
+
+    private int find(long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = records.getLong(HEADER_SIZE + mid * RECORD_SIZE);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Getters
+    public int getCount() { return count; }
+    public int getDepth() { return depth; }
+}
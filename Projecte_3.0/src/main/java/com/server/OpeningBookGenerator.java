@@ -0,0 +1,128 @@
+package com.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import com.shared.Bitboard;
+
+/**
+ * Genera el libro de aperturas que lee OpeningBook.
+ *
+ * Recorre todas las posiciones alcanzables hasta N jugadas (sin repetir las
+ * simétricas), busca cada una en paralelo con un tiempo fijo y guarda la
+ * mejor columna ordenada por clave canónica.
+ *
+ * Con el tiempo por defecto casi ninguna posición de la apertura llega a
+ * resolverse: la mayoría de registros son heurísticos y los bots no los usan
+ * (ver OpeningBook.lookupExact). Para un libro útil hay que dar bastante más
+ * tiempo por posición o menos jugadas.
+ *
+ * Uso: ./run.sh com.server.OpeningBookGenerator [jugadas] [ms por posición] [fichero]
+ */
+public class OpeningBookGenerator {
+
+    // Con 6 jugadas salen ~11.000 posiciones: unos minutos con pocos núcleos.
+    // A partir de 8 el número de posiciones se multiplica por ~20.
+    private static final int DEFAULT_DEPTH = 6;
+    private static final long DEFAULT_BUDGET_MILLIS = 50;
+    private static final int TABLE_SIZE_BITS = 20;
+
+    public static void main(String[] args) throws IOException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        long budgetMillis = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_BUDGET_MILLIS;
+        Path output = args.length > 2 ? Path.of(args[2]) : OpeningBook.DEFAULT_PATH;
+
+        List<Bitboard> positions = new ArrayList<>();
+        collect(new Bitboard(), depth, new HashSet<>(), positions);
+
+        // Las más profundas primero: sus resultados quedan en la tabla de cada hilo
+        // y ayudan a resolver las posiciones anteriores a ellas
+        positions.sort((a, b) -> Integer.compare(b.getMoveCount(), a.getMoveCount()));
+        System.out.println("📖 " + positions.size() + " posiciones hasta " + depth + " jugadas, "
+            + budgetMillis + " ms por posición");
+
+        long[] keys = new long[positions.size()];
+        short[] scores = new short[positions.size()];
+        byte[] columns = new byte[positions.size()];
+        boolean[] exact = new boolean[positions.size()];
+        AtomicInteger solved = new AtomicInteger();
+
+        // Una búsqueda (y su tabla) por hilo del pool común
+        ThreadLocal<AlphaBetaSearch> searches = ThreadLocal.withInitial(() -> new AlphaBetaSearch(TABLE_SIZE_BITS));
+        AtomicInteger done = new AtomicInteger();
+        long start = System.currentTimeMillis();
+
+        IntStream.range(0, positions.size()).parallel().forEach(i -> {
+            Bitboard position = positions.get(i);
+            SearchResult result = searches.get().search(position, OpeningBook.SEARCH_DEPTH, budgetMillis);
+
+            // Se guarda la posición con su clave canónica; si es la reflejada, la columna también
+            boolean mirrored = position.mirrorKey() < position.positionKey();
+            keys[i] = position.canonicalKey();
+            scores[i] = (short) result.getScore();
+            columns[i] = (byte) (mirrored ? Bitboard.COLS - 1 - result.getMove() : result.getMove());
+            // Resuelta si la búsqueda llegó al final de la partida o encontró una victoria/derrota forzada
+            exact[i] = result.getDepth() >= Bitboard.CELLS - position.getMoveCount()
+                || Math.abs(result.getScore()) >= AlphaBetaSearch.WIN_THRESHOLD;
+            if (exact[i]) solved.incrementAndGet();
+
+            int count = done.incrementAndGet();
+            if (count % 1000 == 0) {
+                System.out.println("   " + count + "/" + positions.size());
+            }
+        });
+
+        write(output, depth, keys, scores, columns, exact);
+        System.out.println("✅ Libro guardado en " + output + " (" + Files.size(output) + " bytes, "
+            + (System.currentTimeMillis() - start) / 1000 + " s), " + solved.get() + " de "
+            + positions.size() + " posiciones resueltas");
+    }
+
+    /** Posiciones no terminadas con a lo sumo 'depth' jugadas, una por clase de simetría */
+    private static void collect(Bitboard board, int depth, Set<Long> seen, List<Bitboard> out) {
+        if (!seen.add(board.canonicalKey())) return;
+        out.add(new Bitboard(board));
+        if (board.getMoveCount() == depth) return;
+
+        for (int col = 0; col < Bitboard.COLS; col++) {
+            if (!board.canPlay(col)) continue;
+            board.play(col);
+            if (!board.lastMoveWon() && !board.isDraw()) {
+                collect(board, depth, seen, out);
+            }
+            board.undo();
+        }
+    }
+
+    private static void write(Path output, int depth, long[] keys, short[] scores, byte[] columns, boolean[] exact) throws IOException {
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(keys.length);
+            out.writeInt(depth);
+            for (int i : order) {
+                out.writeLong(keys[i]);
+                out.writeShort(scores[i]);
+                out.writeByte(columns[i]);
+                out.writeByte(exact[i] ? OpeningBook.FLAG_EXACT : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
+import org.json.JSONObject;
+
+/**
+ * Cola de salida de una conexión. Java-WebSocket guarda sin límite todo lo
+ * que se le envía, así que a un cliente con mala conexión se le acumulaban
+ * cursores y estados viejos. Aquí los frames esperan mientras el búfer de la
+ * librería pase de LOW_WATERMARK, y mientras esperan se pueden sustituir:
+ *
+ * - URGENT (invitaciones, errores, cuenta atrás): salen en el momento,
+ *   adelantando a cursores y latidos pero no a las fotos y parches que
+ *   esperaban (la cuenta atrás no puede llegar antes del serverData que da
+ *   el rol): esos salen justo delante.
+ * - SNAPSHOT y STATE (fotos, parches con las jugadas y el resultado, eventos
+ *   del lobby): en orden. Cada uno lleva su flujo (el tema de la partida o
+ *   del lobby); una foto completa sustituye a lo que quedaba pendiente de su
+ *   mismo flujo, porque ya lo incluye, pero no toca lo de los demás (la foto
+ *   del lobby al volver de una partida no se lleva el parche con el resultado).
+ * - CURSOR y HEARTBEAT: solo cuenta el último; el nuevo sustituye al que
+ *   esperaba.
+ *
+ * Si lo pendiente (el búfer de la librería más esta cola) sigue por encima de
+ * HIGH_WATERMARK sin bajar, pasados DOWNGRADE_AFTER_MS se dejan de enviar cursores y
+ * latidos hasta que baje de LOW_WATERMARK, y pasados EVICT_AFTER_MS se cierra
+ * la conexión.
+ *
+ * Los frames se codifican al salir, no al encolar: el códec binario recuerda
+ * los nombres que ya ha enviado, y un frame codificado y luego descartado lo
+ * desincronizaría del cliente.
+ */
+final class OutboundQueue {
+
+    enum Kind { URGENT, SNAPSHOT, STATE, CURSOR, HEARTBEAT }
+
+    static final int LOW_WATERMARK = 64 * 1024;
+    static final int HIGH_WATERMARK = 512 * 1024;
+    private static final long DOWNGRADE_AFTER_MS = 2000;
+    private static final long EVICT_AFTER_MS = 15000;
+    private static final long RETRY_MS = 20;
+
+    private static final AtomicLong TOTAL_EVICTIONS = new AtomicLong();
+
+    private final ConnectionContext context;
+    private final ArrayDeque<Pending> state = new ArrayDeque<>();
+    private JsonFrame cursor;
+    private JsonFrame heartbeat;
+    private boolean retryScheduled = false;
+
+    // Marcas de agua
+    private long highSince = 0;      // Desde cuándo está por encima de HIGH_WATERMARK (0 si no lo está)
+    private boolean downgraded = false;
+    private boolean evicted = false;
+
+    // Métricas
+    private int maxDepth = 0;
+    private long replaced = 0;        // Sustituidos por uno más nuevo antes de salir
+    private long dropped = 0;         // Descartados por ir degradado
+    private long downgrades = 0;
+    private long bufferedBytes = 0;   // Pendiente (librería + cola) en la última medida
+    private long maxBufferedBytes = 0;
+
+    /** Un SNAPSHOT o STATE en espera, con el flujo al que pertenece */
+    private static final class Pending {
+        final String stream;
+        final JsonFrame frame;
+
+        Pending(String stream, JsonFrame frame) {
+            this.stream = stream;
+            this.frame = frame;
+        }
+    }
+
+    OutboundQueue(ConnectionContext context) {
+        this.context = context;
+    }
+
+    synchronized void send(JSONObject message) {
+        Codecs.write(context, message);
+    }
+
+    /** stream: el flujo (tema) del frame; solo cuenta para SNAPSHOT y STATE */
+    synchronized void send(JsonFrame frame, Kind kind, String stream) {
+        if (kind == Kind.URGENT) {
+            while (!state.isEmpty()) {
+                Codecs.write(context, state.poll().frame);
+            }
+            Codecs.write(context, frame);
+            return;
+        }
+        if (downgraded && (kind == Kind.CURSOR || kind == Kind.HEARTBEAT)) {
+            // ¿Se ha puesto al día desde la última medida?
+            checkWatermarks(context.getConnection(), libraryBufferedBytes(context.getConnection()) + queuedBytes());
+            if (downgraded) {
+                dropped++;
+                return;
+            }
+        }
+        switch (kind) {
+            case SNAPSHOT:
+                int pending = state.size();
+                state.removeIf(p -> p.stream.equals(stream));
+                replaced += pending - state.size();
+                state.add(new Pending(stream, frame));
+                break;
+            case CURSOR:
+                if (cursor != null) replaced++;
+                cursor = frame;
+                break;
+            case HEARTBEAT:
+                if (heartbeat != null) replaced++;
+                heartbeat = frame;
+                break;
+            default:
+                state.add(new Pending(stream, frame));
+        }
+        flush();
+    }
+
+    /** Pasa a la librería lo que quepa por debajo de LOW_WATERMARK */
+    private synchronized void flush() {
+        retryScheduled = false;
+        WebSocket conn = context.getConnection();
+        if (!conn.isOpen()) {
+            state.clear();
+            cursor = heartbeat = null;
+            return;
+        }
+
+        long buffered = libraryBufferedBytes(conn);
+        while (buffered < LOW_WATERMARK) {
+            JsonFrame next;
+            if (!state.isEmpty()) {
+                next = state.poll().frame;
+            } else if (cursor != null) {
+                next = cursor;
+                cursor = null;
+            } else if (heartbeat != null) {
+                next = heartbeat;
+                heartbeat = null;
+            } else {
+                break;
+            }
+            buffered += Codecs.write(context, next);
+        }
+        checkWatermarks(conn, buffered + queuedBytes());
+        maxDepth = Math.max(maxDepth, getDepth());
+
+        if (getDepth() > 0 && !retryScheduled && !evicted) {
+            retryScheduled = true;
+            WheelTimer.shared().schedule(this::flush, RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // buffered: lo que aún no ha leído el cliente, en la librería y en esta cola
+    private void checkWatermarks(WebSocket conn, long buffered) {
+        bufferedBytes = buffered;
+        maxBufferedBytes = Math.max(maxBufferedBytes, buffered);
+        long now = System.currentTimeMillis();
+        if (buffered <= HIGH_WATERMARK) {
+            highSince = 0; // Los plazos cuentan solo mientras siga por encima, sin bajar
+        }
+        if (buffered < LOW_WATERMARK) {
+            downgraded = false;
+        } else if (buffered > HIGH_WATERMARK) {
+            if (highSince == 0) highSince = now;
+            if (!downgraded && now - highSince > DOWNGRADE_AFTER_MS) {
+                downgraded = true;
+                downgrades++;
+                dropped += (cursor != null ? 1 : 0) + (heartbeat != null ? 1 : 0);
+                cursor = heartbeat = null;
+                System.out.println("🐢 " + describe() + ": " + buffered / 1024 + " KB sin leer, sin cursores hasta que se ponga al día");
+            }
+            if (!evicted && now - highSince > EVICT_AFTER_MS) {
+                evicted = true;
+                TOTAL_EVICTIONS.incrementAndGet();
+                state.clear();
+                System.out.println("🐢 " + describe() + ": " + buffered / 1024 + " KB sin leer durante "
+                    + EVICT_AFTER_MS / 1000 + " s, se cierra la conexión");
+                conn.closeConnection(CloseFrame.TRY_AGAIN_LATER, "Cliente demasiado lento");
+            }
+        }
+    }
+
+    // Lo que la librería tiene pendiente de escribir en el socket
+    private static long libraryBufferedBytes(WebSocket conn) {
+        if (!(conn instanceof WebSocketImpl impl)) return 0;
+        long bytes = 0;
+        for (ByteBuffer buffer : impl.outQueue) {
+            bytes += buffer.remaining();
+        }
+        return bytes;
+    }
+
+    private long queuedBytes() {
+        long bytes = (cursor != null ? cursor.size() : 0) + (heartbeat != null ? heartbeat.size() : 0);
+        for (Pending pending : state) {
+            bytes += pending.frame.size();
+        }
+        return bytes;
+    }
+
+    private String describe() {
+        String name = context.getName();
+        return name != null ? name : String.valueOf(context.getConnection().getRemoteSocketAddress());
+    }
+
+    /** Conexiones cerradas por lentas desde que arrancó el servidor */
+    static long getTotalEvictions() { return TOTAL_EVICTIONS.get(); }
+
+    /** Frames esperando en esta cola (no cuenta el búfer de la librería) */
+    synchronized int getDepth() {
+        return state.size() + (cursor != null ? 1 : 0) + (heartbeat != null ? 1 : 0);
+    }
+
+    synchronized int getMaxDepth() { return maxDepth; }
+    synchronized long getReplaced() { return replaced; }
+    synchronized long getDropped() { return dropped; }
+    synchronized long getDowngrades() { return downgrades; }
+    synchronized boolean isDowngraded() { return downgraded; }
+    synchronized boolean isEvicted() { return evicted; }
+    synchronized long getBufferedBytes() { return bufferedBytes; }
+    synchronized long getMaxBufferedBytes() { return maxBufferedBytes; }
+
+    /** "cola 0 (máx. 3), 12 sustituidos, 0 descartados, pendiente 0 KB (máx. 80 KB)" */
+    synchronized String summary() {
+        return "cola " + getDepth() + " (máx. " + maxDepth + "), " + replaced + " sustituidos, " + dropped
+            + " descartados, pendiente " + bufferedBytes / 1024 + " KB (máx. " + maxBufferedBytes / 1024 + " KB)"
+            + (downgraded ? ", degradado" : "") + (evicted ? ", expulsado" : "");
+    }
+}
@@ -0,0 +1,34 @@
+package com.server;
+
+import com.shared.Bitboard;
+
+/**
+ * Evaluación heurística de una posición para la búsqueda del bot.
+ * Siempre puntúa desde el punto de vista del jugador "own".
+ */
+public final class PositionEvaluator {
+
+    // Columna central y columnas adyacentes
+    static final long CENTER_MASK = Bitboard.columnMask(3);
+    static final long NEAR_CENTER_MASK = Bitboard.columnMask(2) | Bitboard.columnMask(4);
+
+    static final int THREAT_WEIGHT = 16;
+    static final int CENTER_WEIGHT = 4;
+    static final int NEAR_CENTER_WEIGHT = 2;
+
+    // Las puntuaciones heurísticas nunca llegan a este valor (quedan por debajo de las de victoria)
+    public static final int MAX_EVAL = 1000;
+
+    private PositionEvaluator() {}
+
+    public static int evaluate(long own, long opp) {
+        long mask = own | opp;
+        int threats = Long.bitCount(Bitboard.winningSpots(own, mask))
+                    - Long.bitCount(Bitboard.winningSpots(opp, mask));
+        int center = Long.bitCount(own & CENTER_MASK) - Long.bitCount(opp & CENTER_MASK);
+        int nearCenter = Long.bitCount(own & NEAR_CENTER_MASK) - Long.bitCount(opp & NEAR_CENTER_MASK);
+
+        int score = threats * THREAT_WEIGHT + center * CENTER_WEIGHT + nearCenter * NEAR_CENTER_WEIGHT;
+        return Math.max(-MAX_EVAL + 1, Math.min(MAX_EVAL - 1, score));
+    }
+}
@@ -0,0 +1,52 @@
+package com.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Últimos frames numerados (serverData y serverPatch) de una partida, en un
+ * anillo de tamaño fijo. Cuando un jugador vuelve tras un corte con el
+ * último seq que aplicó, se le reenvían los que le faltan en lugar de una
+ * foto completa; si ya no están (el corte ha sido largo), since devuelve null
+ * y hay que mandar la foto.
+ *
+ * Solo lo usa el buzón de su GameSession: sin locks.
+ */
+final class ReplayBuffer {
+
+    private final long[] seqs;
+    private final JsonFrame[] frames;
+    private int next = 0;  // Posición donde irá el próximo frame
+    private int count = 0;
+
+    ReplayBuffer(int capacity) {
+        this.seqs = new long[capacity];
+        this.frames = new JsonFrame[capacity];
+    }
+
+    /** Guarda un frame enviado; los seq llegan consecutivos */
+    void add(long seq, JsonFrame frame) {
+        seqs[next] = seq;
+        frames[next] = frame;
+        next = (next + 1) % frames.length;
+        if (count < frames.length) count++;
+    }
+
+    /**
+     * Los frames posteriores a lastSeq, del más antiguo al más nuevo (vacío si
+     * no falta ninguno), o null si alguno ya ha salido del anillo.
+     */
+    List<JsonFrame> since(long lastSeq) {
+        if (count == 0 || lastSeq < 0) return null;
+        int oldest = (next - count + frames.length) % frames.length;
+        int newest = (next - 1 + frames.length) % frames.length;
+        // Ya no está en el anillo, o es un seq que esta partida no ha enviado
+        if (lastSeq < seqs[oldest] - 1 || lastSeq > seqs[newest]) return null;
+        List<JsonFrame> missing = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = (oldest + i) % frames.length;
+            if (seqs[index] > lastSeq) missing.add(frames[index]);
+        }
+        return missing;
+    }
+}
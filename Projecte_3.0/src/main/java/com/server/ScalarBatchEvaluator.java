@@ -0,0 +1,20 @@
+package com.server;
+
+/**
+ * Evaluación por lotes posición a posición. Es la referencia de
+ * VectorBatchEvaluator y la que se usa cuando la Vector API no está.
+ */
+public class ScalarBatchEvaluator implements BatchEvaluator {
+
+    @Override
+    public void evaluate(long[] own, long[] opp, long[] scores, int count) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = PositionEvaluator.evaluate(own[i], opp[i]);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "escalar";
+    }
+}
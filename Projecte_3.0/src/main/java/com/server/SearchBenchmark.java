@@ -0,0 +1,89 @@
+package com.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.shared.Bitboard;
+
+/**
+ * Mide el escalado de LazySmpSearch: tiempo hasta una profundidad fija y
+ * nodos/segundo con 1, 2, 4... hasta N hilos. Después, playouts/segundo de
+ * MctsSearch con los mismos hilos.
+ *
+ * Uso: ./run.sh com.server.SearchBenchmark [profundidad] [hilosMax]
+ */
+public class SearchBenchmark {
+
+    // Posiciones de prueba como secuencias de columnas (1-7)
+    private static final String[] POSITIONS = {
+        "",
+        "4453",
+        "44444323",
+        "3344556",
+    };
+
+    private static final int MCTS_PLAYOUTS = 200_000;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // Tiene que fijarse antes de que se cargue LazySmpSearch
+        if (System.getProperty("bot.maxThreads") == null) {
+            System.setProperty("bot.maxThreads", String.valueOf(maxThreads));
+        }
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int t = 1; t < maxThreads; t *= 2) threadCounts.add(t);
+        threadCounts.add(maxThreads);
+
+        System.out.println("Profundidad " + depth + ", hasta " + maxThreads + " hilos");
+        System.out.println("hilos\ttiempo(ms)\tnodos\tnodos/s\tspeedup");
+
+        long baseline = 0;
+        for (int threads : threadCounts) {
+            long totalMillis = 0;
+            long totalNodes = 0;
+            for (String moves : POSITIONS) {
+                // Tabla nueva en cada posición para no heredar trabajo de la anterior
+                LazySmpSearch search = new LazySmpSearch(threads, 22);
+                SearchResult result = search.search(fromMoves(moves), depth, AlphaBetaSearch.NO_TIME_LIMIT);
+                totalMillis += result.getElapsedMillis();
+                totalNodes += result.getNodes();
+            }
+            if (baseline == 0) baseline = Math.max(1, totalMillis);
+
+            long nodesPerSecond = totalNodes * 1000 / Math.max(1, totalMillis);
+            System.out.printf("%d\t%d\t%d\t%d\t%.2fx%n",
+                threads, totalMillis, totalNodes, nodesPerSecond, (double) baseline / Math.max(1, totalMillis));
+        }
+
+        System.out.println();
+        System.out.println("MCTS, " + MCTS_PLAYOUTS + " playouts por posición");
+        System.out.println("hilos\ttiempo(ms)\tplayouts/s\tspeedup");
+        long mctsBaseline = 0;
+        for (int threads : threadCounts) {
+            MctsSearch search = new MctsSearch(MCTS_PLAYOUTS, AlphaBetaSearch.NO_TIME_LIMIT, threads);
+            long totalMillis = 0;
+            long totalPlayouts = 0;
+            for (String moves : POSITIONS) {
+                SearchResult result = search.search(fromMoves(moves));
+                totalMillis += result.getElapsedMillis();
+                totalPlayouts += result.getPlayouts();
+            }
+            if (mctsBaseline == 0) mctsBaseline = Math.max(1, totalMillis);
+
+            System.out.printf("%d\t%d\t%d\t%.2fx%n", threads, totalMillis,
+                totalPlayouts * 1000 / Math.max(1, totalMillis), (double) mctsBaseline / Math.max(1, totalMillis));
+        }
+    }
+
+    /** Posición tras las jugadas dadas como columnas 1-7 ("4453"); la usa también SolverBenchmark */
+    static Bitboard fromMoves(String moves) {
+        Bitboard board = new Bitboard();
+        for (char c : moves.toCharArray()) {
+            board.play(c - '1');
+        }
+        return board;
+    }
+}
@@ -0,0 +1,73 @@
+package com.server;
+
+/**
+ * Resultado de una búsqueda del bot: mejor columna y estadísticas.
+ * Con MCTS, playouts es el número de partidas simuladas y score la tasa de
+ * victoria estimada de la columna elegida, en tanto por mil.
+ */
+public class SearchResult {
+    private int move = -1;
+    private int score;
+    private int depth;
+    private long nodes;
+    private long elapsedMillis;
+    private int threads = 1;
+    private long playouts;
+    private long tableProbes;
+    private long tableHits;
+
+    public SearchResult() {}
+
+    // Getters y setters
+    public int getMove() { return move; }
+    public void setMove(int move) { this.move = move; }
+
+    public int getScore() { return score; }
+    public void setScore(int score) { this.score = score; }
+
+    public int getDepth() { return depth; }
+    public void setDepth(int depth) { this.depth = depth; }
+
+    public long getNodes() { return nodes; }
+    public void setNodes(long nodes) { this.nodes = nodes; }
+
+    public long getElapsedMillis() { return elapsedMillis; }
+    public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+
+    public long getPlayouts() { return playouts; }
+    public void setPlayouts(long playouts) { this.playouts = playouts; }
+
+    public long getTableProbes() { return tableProbes; }
+    public void setTableProbes(long tableProbes) { this.tableProbes = tableProbes; }
+
+    public long getTableHits() { return tableHits; }
+    public void setTableHits(long tableHits) { this.tableHits = tableHits; }
+
+    /** Fracción de consultas a la tabla de transposiciones que encontraron la posición */
+    public double getTableHitRate() {
+        return tableProbes > 0 ? (double) tableHits / tableProbes : 0;
+    }
+
+    public long getNodesPerSecond() {
+        return elapsedMillis > 0 ? nodes * 1000 / elapsedMillis : nodes * 1000;
+    }
+
+    public long getPlayoutsPerSecond() {
+        return elapsedMillis > 0 ? playouts * 1000 / elapsedMillis : playouts * 1000;
+    }
+
+    @Override
+    public String toString() {
+        if (playouts > 0) {
+            return "columna=" + move + " victorias=" + score + "‰ profundidad=" + depth
+                + " playouts=" + playouts + " (" + elapsedMillis + " ms, " + threads + " hilos, "
+                + getPlayoutsPerSecond() + " playouts/s)";
+        }
+        return "columna=" + move + " puntuación=" + score + " profundidad=" + depth
+            + " nodos=" + nodes + " (" + elapsedMillis + " ms, " + threads + " hilos, "
+            + getNodesPerSecond() + " nodos/s)";
+    }
+}
@@ -0,0 +1,193 @@
+package com.server;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.shared.Bitboard;
+
+/**
+ * Simulador de partidas sin interfaz ni red, para generar datos de carga,
+ * ajustar los bots y sacar estadísticas.
+ *
+ * Las partidas se guardan en forma de arrays (struct-of-arrays): un long[]
+ * por color, un byte[] con la altura de cada columna de cada partida y un
+ * byte[] con el número de jugadas. Un lote de partidas avanza a la vez, una
+ * jugada por partida en cada pasada, así los datos se recorren en orden.
+ *
+ * Victoria y tablas se deciden igual que en GameSession (Bitboard.hasFour
+ * sobre las fichas de quien acaba de jugar; tablas con el tablero lleno).
+ * El trabajo se reparte entre núcleos con fork-join por rangos de partidas.
+ *
+ * Uso: ./run.sh com.server.SelfPlaySimulator [partidas] [política rojo] [política amarillo]
+ */
+public class SelfPlaySimulator {
+
+    // Partidas por lote; por debajo de esto fork-join ya no divide
+    private static final int BATCH_SIZE = 4096;
+
+    public static final int RED_WINS = 0;
+    public static final int YELLOW_WINS = 1;
+    public static final int DRAWS = 2;
+    public static final int MOVES = 3;
+
+    /** Cómo elige columna cada jugador simulado */
+    public enum Policy {
+        /** Cualquier columna libre al azar */
+        RANDOM,
+        /** Gana si puede, tapa si tiene que hacerlo y si no juega al azar */
+        GREEDY;
+
+        long candidates(long own, long opp, long mask, long playable) {
+            if (this == RANDOM) return playable;
+            long wins = Bitboard.winningSpots(own, mask) & playable;
+            if (wins != 0) return wins;
+            long blocks = Bitboard.winningSpots(opp, mask) & playable;
+            return blocks != 0 ? blocks : playable;
+        }
+
+        public static Policy fromString(String value) {
+            return value != null && value.equalsIgnoreCase("greedy") ? GREEDY : RANDOM;
+        }
+    }
+
+    private final Policy red;
+    private final Policy yellow;
+    private final long seed;
+
+    public SelfPlaySimulator(Policy red, Policy yellow, long seed) {
+        this.red = red;
+        this.yellow = yellow;
+        this.seed = seed;
+    }
+
+    /**
+     * Juega 'games' partidas en el pool común de fork-join.
+     * @return victorias de rojo, de amarillo, tablas y jugadas totales (índices RED_WINS...)
+     */
+    public long[] run(long games) {
+        return ForkJoinPool.commonPool().invoke(new Range(0, games));
+    }
+
+    /** Rango de partidas: se divide por la mitad hasta llegar a un lote (nunca se serializa) */
+    @SuppressWarnings("serial")
+    private class Range extends RecursiveTask<long[]> {
+        private final long from;
+        private final long to;
+
+        Range(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= BATCH_SIZE) {
+                // Semilla por lote: el resultado no depende de cómo se repartan los hilos
+                return new GameBatch((int) (to - from), new SplittableRandom(seed + from)).play(red, yellow);
+            }
+            long mid = (from + to) >>> 1;
+            Range left = new Range(from, mid);
+            left.fork();
+            long[] right = new Range(mid, to).compute();
+            long[] total = left.join();
+            for (int i = 0; i < total.length; i++) total[i] += right[i];
+            return total;
+        }
+    }
+
+    /** Lote de partidas en forma de arrays */
+    static final class GameBatch {
+        private final int size;
+        private final long[] redPieces;
+        private final long[] yellowPieces;
+        private final byte[] heights;
+        private final byte[] moveCount;
+        private final int[] active;
+        private final SplittableRandom random;
+
+        GameBatch(int size, SplittableRandom random) {
+            this.size = size;
+            this.redPieces = new long[size];
+            this.yellowPieces = new long[size];
+            this.heights = new byte[size * Bitboard.COLS];
+            this.moveCount = new byte[size];
+            this.active = new int[size];
+            this.random = random;
+        }
+
+        long[] play(Policy red, Policy yellow) {
+            long[] stats = new long[4];
+            int remaining = size;
+            for (int i = 0; i < size; i++) active[i] = i;
+
+            while (remaining > 0) {
+                int kept = 0;
+                for (int a = 0; a < remaining; a++) {
+                    int game = active[a];
+                    int outcome = step(game, (moveCount[game] & 1) == 0 ? red : yellow);
+                    if (outcome < 0) {
+                        active[kept++] = game;
+                    } else {
+                        stats[outcome]++;
+                        stats[MOVES] += moveCount[game];
+                    }
+                }
+                remaining = kept;
+            }
+            return stats;
+        }
+
+        /**
+         * Una jugada en la partida 'game'.
+         * @return -1 si sigue, o RED_WINS / YELLOW_WINS / DRAWS si ha terminado
+         */
+        private int step(int game, Policy policy) {
+            boolean redTurn = (moveCount[game] & 1) == 0;
+            long own = redTurn ? redPieces[game] : yellowPieces[game];
+            long opp = redTurn ? yellowPieces[game] : redPieces[game];
+            long mask = own | opp;
+            long playable = (mask + Bitboard.BOTTOM_MASK) & Bitboard.BOARD_MASK;
+
+            // k-ésimo bit a 1 de las candidatas
+            long choices = policy.candidates(own, opp, mask, playable);
+            for (int k = random.nextInt(Long.bitCount(choices)); k > 0; k--) {
+                choices &= choices - 1;
+            }
+            int col = Long.numberOfTrailingZeros(choices) / Bitboard.H1;
+
+            own |= Bitboard.columnBit(col, heights[game * Bitboard.COLS + col]++);
+            moveCount[game]++;
+            if (redTurn) {
+                redPieces[game] = own;
+            } else {
+                yellowPieces[game] = own;
+            }
+
+            if (Bitboard.hasFour(own)) return redTurn ? RED_WINS : YELLOW_WINS;
+            if (moveCount[game] == Bitboard.CELLS) return DRAWS;
+            return -1;
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        Policy red = Policy.fromString(args.length > 1 ? args[1] : null);
+        Policy yellow = Policy.fromString(args.length > 2 ? args[2] : null);
+
+        SelfPlaySimulator simulator = new SelfPlaySimulator(red, yellow, 42);
+        // Calentamiento del JIT
+        simulator.run(Math.min(games, 100_000));
+
+        long start = System.nanoTime();
+        long[] stats = simulator.run(games);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("🎲 " + games + " partidas " + red + " vs " + yellow + " con "
+            + ForkJoinPool.commonPool().getParallelism() + " hilos");
+        System.out.printf("   rojo %.1f%%, amarillo %.1f%%, tablas %.1f%%, %.1f jugadas por partida%n",
+            100.0 * stats[RED_WINS] / games, 100.0 * stats[YELLOW_WINS] / games,
+            100.0 * stats[DRAWS] / games, (double) stats[MOVES] / games);
+        System.out.printf("   %.2f s, %.0f partidas/s%n", seconds, games / seconds);
+    }
+}
@@ -11,6 +11,8 @@ public class ServerMain {
             }
         }
         
+        OpeningBook.loadShared(OpeningBook.DEFAULT_PATH);
+
         GameWebSocketServer server = new GameWebSocketServer(port);
         server.start();
         System.out.println("🎮 Servidor Conecta 4 iniciado en puerto: " + port);
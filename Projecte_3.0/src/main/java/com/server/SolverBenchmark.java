@@ -0,0 +1,126 @@
+package com.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import com.shared.Bitboard;
+
+/**
+ * Banco de pruebas del solver: resuelve por completo las posiciones de
+ * solver/positions.txt (grupos begin, middle y end), comprueba cada
+ * resultado contra su puntuación exacta conocida y saca por grupo tiempo
+ * medio, nodos medios, nodos/segundo y tasa de aciertos en la tabla de
+ * transposiciones.
+ *
+ * La salida es una línea JSON por grupo y una de resumen. Si algún resultado
+ * no coincide termina con código 1, así una regresión en la generación de
+ * jugadas, la detección de victoria o la búsqueda hace fallar el build.
+ *
+ * Sin JavaFX: mvn -P solverBenchmark verify [-Dsolver.groups=end,middle]
+ */
+public class SolverBenchmark {
+
+    private static final String POSITIONS = "/solver/positions.txt";
+    // Tabla nueva de 2^22 entradas por posición: los resultados no dependen del orden
+    private static final int TABLE_SIZE_BITS = 22;
+
+    public static void main(String[] args) throws IOException {
+        String groups = args.length > 0 ? args[0] : "all";
+        Map<String, List<String[]>> positions = load(groups);
+
+        int failures = 0;
+        long totalMillis = 0;
+        long totalNodes = 0;
+        int totalPositions = 0;
+
+        for (Map.Entry<String, List<String[]>> group : positions.entrySet()) {
+            long millis = 0;
+            long nodes = 0;
+            long probes = 0;
+            long hits = 0;
+            int correct = 0;
+
+            for (String[] position : group.getValue()) {
+                Bitboard board = SearchBenchmark.fromMoves(position[0]);
+                int expected = Integer.parseInt(position[1]);
+
+                SearchResult result = new AlphaBetaSearch(TABLE_SIZE_BITS)
+                    .search(board, Bitboard.CELLS, AlphaBetaSearch.NO_TIME_LIMIT);
+                int score = exactScore(result.getScore(), board.getMoveCount());
+                if (score == expected) {
+                    correct++;
+                } else {
+                    System.err.println("❌ " + group.getKey() + " " + position[0] + ": esperado " + expected + ", obtenido " + score);
+                }
+
+                millis += result.getElapsedMillis();
+                nodes += result.getNodes();
+                probes += result.getTableProbes();
+                hits += result.getTableHits();
+            }
+
+            int count = group.getValue().size();
+            failures += count - correct;
+            totalMillis += millis;
+            totalNodes += nodes;
+            totalPositions += count;
+
+            JSONObject line = new JSONObject();
+            line.put("group", group.getKey());
+            line.put("positions", count);
+            line.put("correct", correct);
+            line.put("meanMillis", (double) millis / count);
+            line.put("meanNodes", nodes / count);
+            line.put("nodesPerSecond", nodes * 1000 / Math.max(1, millis));
+            line.put("ttHitRate", probes > 0 ? (double) hits / probes : 0);
+            System.out.println(line);
+        }
+
+        JSONObject summary = new JSONObject();
+        summary.put("group", "total");
+        summary.put("positions", totalPositions);
+        summary.put("correct", totalPositions - failures);
+        summary.put("millis", totalMillis);
+        summary.put("nodesPerSecond", totalNodes * 1000 / Math.max(1, totalMillis));
+        System.out.println(summary);
+
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Puntuación de AlphaBetaSearch (victoria en N plies) al convenio de
+     * positions.txt: 22 - fichas del ganador al ganar, con signo.
+     */
+    static int exactScore(int score, int moveCount) {
+        if (Math.abs(score) < AlphaBetaSearch.WIN_THRESHOLD) return 0;
+        int ply = AlphaBetaSearch.WIN_SCORE - 1 - Math.abs(score);
+        int value = (Bitboard.CELLS + 1 - moveCount - ply) / 2;
+        return score > 0 ? value : -value;
+    }
+
+    private static Map<String, List<String[]>> load(String groups) throws IOException {
+        Map<String, List<String[]>> positions = new LinkedHashMap<>();
+        try (InputStream in = SolverBenchmark.class.getResourceAsStream(POSITIONS)) {
+            if (in == null) throw new IOException("No se encuentra " + POSITIONS);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                if (!groups.equals("all") && !List.of(groups.split(",")).contains(parts[0])) continue;
+                positions.computeIfAbsent(parts[0], g -> new ArrayList<>()).add(new String[] {parts[1], parts[2]});
+            }
+        }
+        return positions;
+    }
+}
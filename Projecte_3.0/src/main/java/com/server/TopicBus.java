@@ -0,0 +1,160 @@
+package com.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+/**
+ * Publicación por temas dentro del servidor. Cada conexión se suscribe solo
+ * a lo que muestra su pantalla:
+ *
+ * - LOBBY: eventos y latidos del lobby, para quien está en la sala de espera.
+ * - "session:<id>": fotos, parches y cuenta atrás de una partida.
+ * - "session:<id>:cursor": los cursores de esa partida.
+ * - "session:<id>:spectators" y "session:<id>:spectators:cursor": lo mismo
+ *   para quien mira la partida sin jugar (ver GameSession.addSpectator).
+ *
+ * Los suscriptores de un tema son un array que se copia al cambiar
+ * (copy-on-write): publicar no toma ningún lock, solo lee el array del
+ * momento y manda el frame (el mismo para todos) por la cola de salida de
+ * cada uno. Suscribirse o darse de baja es raro comparado con publicar.
+ *
+ * Publicar en un tema sin suscriptores no crea el tema (las partidas del
+ * torneo, sin conexiones, no dejan nada aquí).
+ */
+final class TopicBus {
+
+    static final String LOBBY = "lobby";
+
+    private static final TopicBus SHARED = new TopicBus();
+    private static final ConnectionContext[] NONE = new ConnectionContext[0];
+
+    static String sessionTopic(String sessionId) { return "session:" + sessionId; }
+    static String cursorTopic(String sessionId) { return "session:" + sessionId + ":cursor"; }
+    static String spectatorTopic(String sessionId) { return "session:" + sessionId + ":spectators"; }
+    static String spectatorCursorTopic(String sessionId) { return "session:" + sessionId + ":spectators:cursor"; }
+
+    /** Un tema con sus suscriptores y contadores */
+    static final class Topic {
+        private final String name;
+        private volatile ConnectionContext[] subscribers = NONE;
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        // Para el ritmo de publicación entre dos estadísticas (solo el hilo de las estadísticas)
+        private long sampledPublished = 0;
+        private long sampledAt = System.nanoTime();
+
+        private Topic(String name) {
+            this.name = name;
+        }
+
+        private synchronized boolean add(ConnectionContext subscriber) {
+            ConnectionContext[] current = subscribers;
+            for (ConnectionContext existing : current) {
+                if (existing == subscriber) return false;
+            }
+            ConnectionContext[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = subscriber;
+            subscribers = next;
+            return true;
+        }
+
+        private synchronized boolean remove(ConnectionContext subscriber) {
+            ConnectionContext[] current = subscribers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != subscriber) continue;
+                ConnectionContext[] next = new ConnectionContext[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscribers = next;
+                return true;
+            }
+            return false;
+        }
+
+        String getName() { return name; }
+        int getSubscriberCount() { return subscribers.length; }
+        long getPublished() { return published.get(); }
+        long getDelivered() { return delivered.get(); }
+
+        /** Mensajes por segundo publicados desde la llamada anterior */
+        double samplePublishRate() {
+            long now = System.nanoTime();
+            long count = published.get();
+            double rate = now > sampledAt ? (count - sampledPublished) * 1e9 / (now - sampledAt) : 0;
+            sampledPublished = count;
+            sampledAt = now;
+            return rate;
+        }
+    }
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+    static TopicBus shared() {
+        return SHARED;
+    }
+
+    void subscribe(String topic, ConnectionContext subscriber) {
+        if (topics.computeIfAbsent(topic, Topic::new).add(subscriber)) {
+            subscriber.getTopics().add(topic);
+        }
+    }
+
+    void unsubscribe(String topic, ConnectionContext subscriber) {
+        Topic current = topics.get(topic);
+        if (current != null) current.remove(subscriber);
+        subscriber.getTopics().remove(topic);
+    }
+
+    /** Al cerrar la conexión */
+    void unsubscribeAll(ConnectionContext subscriber) {
+        for (String topic : subscriber.getTopics()) {
+            unsubscribe(topic, subscriber);
+        }
+    }
+
+    /** Quita un tema que ya no se usará (las partidas terminadas) y da de baja a quien quedara */
+    void removeTopic(String topic) {
+        Topic removed = topics.remove(topic);
+        if (removed == null) return;
+        for (ConnectionContext subscriber : removed.subscribers) {
+            subscriber.getTopics().remove(topic);
+        }
+    }
+
+    void publish(String topic, JsonFrame frame, OutboundQueue.Kind kind) {
+        Topic current = topics.get(topic);
+        if (current == null) return;
+        ConnectionContext[] subscribers = current.subscribers;
+        current.published.incrementAndGet();
+        current.delivered.addAndGet(subscribers.length);
+        for (ConnectionContext subscriber : subscribers) {
+            Codecs.send(subscriber.getConnection(), frame, kind, topic);
+        }
+    }
+
+    void publish(String topic, JSONObject message) {
+        Topic current = topics.get(topic);
+        if (current == null) return;
+        ConnectionContext[] subscribers = current.subscribers;
+        current.published.incrementAndGet();
+        current.delivered.addAndGet(subscribers.length);
+        for (ConnectionContext subscriber : subscribers) {
+            Codecs.send(subscriber.getConnection(), message);
+        }
+    }
+
+    int getSubscriberCount(String topic) {
+        Topic current = topics.get(topic);
+        return current != null ? current.getSubscriberCount() : 0;
+    }
+
+    List<Topic> getTopics() {
+        return new ArrayList<>(topics.values());
+    }
+}
@@ -0,0 +1,283 @@
+package com.server;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.shared.Bitboard;
+
+/**
+ * Torneo entre configuraciones de bot, sin personas.
+ *
+ * Cada partida se juega en una GameSession real (startHeadless + playAs),
+ * así que pasa por las mismas reglas, validaciones y serialización que una
+ * partida del servidor y sirve también como prueba de carga de ese camino.
+ *
+ * Modos: todos contra todos (roundrobin) o el primero contra el resto
+ * (gauntlet). Cada apertura (todas las secuencias de N jugadas) se juega dos
+ * veces por emparejamiento, una con cada color. Las partidas se reparten
+ * entre núcleos; cada partida terminada se añade a games.csv y la
+ * clasificación (Elo con intervalo de confianza del 95 %) se reescribe en
+ * standings.txt, ambos en data/tournament-FECHA/.
+ *
+ * Jugadores: random, ab<profundidad> (alfa-beta, un hilo) y mcts<playouts>.
+ *
+ * Uso: ./run.sh com.server.TournamentRunner [roundrobin|gauntlet] [random,ab2,ab4,...] [jugadas de apertura] [hilos]
+ */
+public class TournamentRunner {
+
+    private static final String DEFAULT_PLAYERS = "random,ab2,ab4,ab6";
+    private static final int DEFAULT_OPENING_PLIES = 2;
+    private static final int STANDINGS_EVERY = 20;
+
+    // Previa de Elo: una tabla virtual contra cada rival, para que 100 % o 0 % no den infinito
+    private static final double PRIOR_DRAWS = 1.0;
+
+    /** Un jugador del torneo; se crea uno nuevo por partida */
+    interface Contestant {
+        int chooseMove(Bitboard position);
+    }
+
+    private final List<String> players;
+    private final List<int[]> pairings = new ArrayList<>();
+    private final List<int[]> openings;
+
+    // Resultados acumulados: puntos (en medios puntos) y partidas por pareja
+    private final int[][] halfPoints;
+    private final int[][] games;
+    private final AtomicInteger finished = new AtomicInteger();
+
+    private final Path outputDir;
+    private final PrintWriter gamesLog;
+    private final PrintStream console;
+
+    public TournamentRunner(String mode, List<String> players, int openingPlies, Path outputDir) throws IOException {
+        this.players = players;
+        this.openings = openings(openingPlies);
+        this.halfPoints = new int[players.size()][players.size()];
+        this.games = new int[players.size()][players.size()];
+        this.outputDir = outputDir;
+        this.console = System.out;
+
+        for (int a = 0; a < players.size(); a++) {
+            for (int b = a + 1; b < players.size(); b++) {
+                if (mode.equalsIgnoreCase("gauntlet") && a != 0) continue;
+                pairings.add(new int[] {a, b});
+            }
+        }
+
+        Files.createDirectories(outputDir);
+        this.gamesLog = new PrintWriter(Files.newBufferedWriter(outputDir.resolve("games.csv")));
+        gamesLog.println("red,yellow,opening,result,moves,millis");
+        gamesLog.flush();
+    }
+
+    public void run(int threads) throws InterruptedException {
+        int total = pairings.size() * openings.size() * 2;
+        console.println("🏆 " + players + ", " + pairings.size() + " emparejamientos, " + openings.size()
+            + " aperturas, " + total + " partidas con " + threads + " hilos");
+        console.println("   Resultados en " + outputDir);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, BotPlayer.daemonThreads("tournament-"));
+        long start = System.currentTimeMillis();
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (int[] pairing : pairings) {
+                for (int[] opening : openings) {
+                    pending.add(pool.submit(() -> playGame(pairing[0], pairing[1], opening)));
+                    pending.add(pool.submit(() -> playGame(pairing[1], pairing[0], opening)));
+                }
+            }
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    console.println("Error en partida del torneo: " + e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        writeStandings();
+        console.println();
+        console.print(standings());
+        console.printf("%d partidas en %.1f s%n", finished.get(), (System.currentTimeMillis() - start) / 1000.0);
+        gamesLog.close();
+    }
+
+    private void playGame(int red, int yellow, int[] opening) {
+        String redName = players.get(red);
+        String yellowName = players.get(yellow) + (players.get(yellow).equals(redName) ? "'" : "");
+        Contestant[] contestants = {contestant(redName), contestant(players.get(yellow))};
+
+        long start = System.currentTimeMillis();
+        GameSession session = GameSession.headless(UUID.randomUUID().toString(), redName, yellowName);
+
+        int moves = 0;
+        for (int col : opening) {
+            if (session.isGameFinished()) break;
+            session.playAs(session.getCurrentTurn(), col);
+            moves++;
+        }
+        while (!session.isGameFinished()) {
+            Bitboard position = session.getBoardSnapshot();
+            int col = contestants[position.currentPlayer()].chooseMove(position);
+            if (!session.playAs(session.getCurrentTurn(), col)) {
+                throw new IllegalStateException(players.get(position.currentPlayer() == 0 ? red : yellow)
+                    + " ha jugado una columna no válida: " + col);
+            }
+            moves++;
+        }
+
+        // Medios puntos de rojo: 2 victoria, 1 tablas, 0 derrota
+        String winner = session.getWinner();
+        int redHalfPoints = winner.equals("draw") ? 1 : winner.equals(redName) ? 2 : 0;
+        record(red, yellow, redHalfPoints, openingText(opening), moves, System.currentTimeMillis() - start);
+    }
+
+    private synchronized void record(int red, int yellow, int redHalfPoints, String opening, int moves, long millis) {
+        halfPoints[red][yellow] += redHalfPoints;
+        halfPoints[yellow][red] += 2 - redHalfPoints;
+        games[red][yellow]++;
+        games[yellow][red]++;
+
+        String result = redHalfPoints == 2 ? "1-0" : redHalfPoints == 1 ? "1/2-1/2" : "0-1";
+        gamesLog.println(players.get(red) + "," + players.get(yellow) + "," + opening + "," + result + "," + moves + "," + millis);
+        gamesLog.flush();
+
+        if (finished.incrementAndGet() % STANDINGS_EVERY == 0) {
+            writeStandings();
+            console.println("   " + finished.get() + " partidas");
+        }
+    }
+
+    private synchronized void writeStandings() {
+        try {
+            Files.writeString(outputDir.resolve("standings.txt"), standings());
+        } catch (IOException e) {
+            console.println("Error escribiendo clasificación: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Elo por máxima verosimilitud (modelo logístico, tablas como medio punto)
+     * con intervalo del 95 % a partir de la información de Fisher. El primer
+     * jugador "random", o si no hay el primero de la lista, vale 0.
+     */
+    synchronized String standings() {
+        int n = players.size();
+        double[] elo = new double[n];
+        double scale = Math.log(10) / 400;
+
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            double maxStep = 0;
+            for (int i = 0; i < n; i++) {
+                double score = 0;
+                double expected = 0;
+                double information = 0;
+                for (int j = 0; j < n; j++) {
+                    if (i == j || games[i][j] == 0) continue;
+                    double p = 1 / (1 + Math.pow(10, (elo[j] - elo[i]) / 400));
+                    double count = games[i][j] + PRIOR_DRAWS;
+                    score += halfPoints[i][j] / 2.0 + PRIOR_DRAWS / 2;
+                    expected += count * p;
+                    information += count * p * (1 - p) * scale;
+                }
+                if (information == 0) continue;
+                double step = (score - expected) / information;
+                elo[i] += step;
+                maxStep = Math.max(maxStep, Math.abs(step));
+            }
+            if (maxStep < 0.01) break;
+        }
+
+        int anchor = Math.max(0, players.indexOf("random"));
+        double offset = elo[anchor];
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-12s %8s %8s %8s %6s%n", "jugador", "elo", "±95%", "puntos", "partidas"));
+        for (int i = 0; i < n; i++) {
+            double information = 0;
+            int played = 0;
+            int points = 0;
+            for (int j = 0; j < n; j++) {
+                if (i == j || games[i][j] == 0) continue;
+                double p = 1 / (1 + Math.pow(10, (elo[j] - elo[i]) / 400));
+                information += (games[i][j] + PRIOR_DRAWS) * p * (1 - p) * scale * scale;
+                played += games[i][j];
+                points += halfPoints[i][j];
+            }
+            double interval = information > 0 ? 1.96 / Math.sqrt(information) : 0;
+            text.append(String.format("%-12s %8.0f %8.0f %8.1f %6d%n",
+                players.get(i), elo[i] - offset, interval, points / 2.0, played));
+        }
+        return text.toString();
+    }
+
+    private static Contestant contestant(String spec) {
+        if (spec.startsWith("ab")) {
+            int depth = Integer.parseInt(spec.substring(2));
+            AlphaBetaSearch search = new AlphaBetaSearch(16);
+            return position -> search.search(position, depth, AlphaBetaSearch.NO_TIME_LIMIT).getMove();
+        }
+        if (spec.startsWith("mcts")) {
+            MctsSearch search = new MctsSearch(Integer.parseInt(spec.substring(4)), AlphaBetaSearch.NO_TIME_LIMIT, 1);
+            return position -> search.search(position).getMove();
+        }
+        SplittableRandom random = new SplittableRandom();
+        return position -> {
+            int col;
+            do {
+                col = random.nextInt(Bitboard.COLS);
+            } while (!position.canPlay(col));
+            return col;
+        };
+    }
+
+    /** Todas las secuencias de 'plies' columnas que no terminan la partida */
+    private static List<int[]> openings(int plies) {
+        List<int[]> result = new ArrayList<>();
+        int combinations = (int) Math.pow(Bitboard.COLS, plies);
+        for (int code = 0; code < combinations; code++) {
+            int[] moves = new int[plies];
+            Bitboard board = new Bitboard();
+            boolean valid = true;
+            for (int i = 0, rest = code; i < plies; i++, rest /= Bitboard.COLS) {
+                moves[i] = rest % Bitboard.COLS;
+                if (board.play(moves[i]) < 0 || board.lastMoveWon()) valid = false;
+            }
+            if (valid) result.add(moves);
+        }
+        return result;
+    }
+
+    private static String openingText(int[] opening) {
+        StringBuilder text = new StringBuilder();
+        for (int col : opening) text.append(col + 1);
+        return text.length() == 0 ? "-" : text.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "roundrobin";
+        List<String> players = List.of((args.length > 1 ? args[1] : DEFAULT_PLAYERS).split(","));
+        int openingPlies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_OPENING_PLIES;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path outputDir = Path.of("data", "tournament-" + stamp);
+        new TournamentRunner(mode, players, openingPlies, outputDir).run(threads);
+    }
+}
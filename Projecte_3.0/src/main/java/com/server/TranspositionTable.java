@@ -0,0 +1,73 @@
+package com.server;
+
+import java.util.Arrays;
+
+/**
+ * Tabla de transposiciones indexada por el hash Zobrist de la posición,
+ * compartida sin locks entre los hilos de una búsqueda Lazy SMP.
+ *
+ * Cada entrada ocupa dos longs consecutivos del array: (clave ^ datos, datos).
+ * Al leer se comprueba que (slot0 ^ slot1) == clave; si otro hilo ha escrito
+ * a medias la entrada, la comprobación falla y se trata como un fallo de tabla,
+ * así que no hace falta sincronizar nada.
+ *
+ * Los datos empaquetan puntuación (16 bits), profundidad (6 bits), tipo de
+ * cota (2 bits) y mejor columna (4 bits). Reemplazo: se sobrescribe si la
+ * clave es distinta o si la nueva búsqueda es al menos igual de profunda.
+ */
+public class TranspositionTable {
+
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private final long[] slots;
+    private final int indexMask;
+
+    public TranspositionTable(int sizeBits) {
+        int size = 1 << sizeBits;
+        this.slots = new long[size * 2];
+        this.indexMask = size - 1;
+    }
+
+    /** @return la entrada empaquetada, o 0 si la posición no está en la tabla */
+    public int probe(long key) {
+        int index = ((int) key & indexMask) << 1;
+        long data = slots[index + 1];
+        return (slots[index] ^ data) == key ? (int) data : 0;
+    }
+
+    public void store(long key, int score, int depth, int flag, int move) {
+        int index = ((int) key & indexMask) << 1;
+        long old = slots[index + 1];
+        if ((slots[index] ^ old) == key && depth < depth((int) old)) return;
+
+        long data = pack(score, depth, flag, move) & 0xFFFFFFFFL;
+        slots[index] = key ^ data;
+        slots[index + 1] = data;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+    }
+
+    /** Tamaño de la tabla en bytes */
+    public long sizeInBytes() {
+        return (long) slots.length * Long.BYTES;
+    }
+
+    // ===== EMPAQUETADO =====
+
+    static int pack(int score, int depth, int flag, int move) {
+        return (score & 0xFFFF) | (depth & 0x3F) << 16 | flag << 22 | (move + 1) << 24;
+    }
+
+    public static int score(int entry) { return (short) entry; }
+
+    public static int depth(int entry) { return (entry >>> 16) & 0x3F; }
+
+    public static int flag(int entry) { return (entry >>> 22) & 0x3; }
+
+    /** @return la mejor columna guardada, o -1 si no hay */
+    public static int move(int entry) { return ((entry >>> 24) & 0xF) - 1; }
+}
@@ -0,0 +1,80 @@
+package com.server;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import com.shared.Bitboard;
+
+/**
+ * Evaluación por lotes con la Vector API: cada carril de un LongVector es el
+ * bitboard de una posición, así que amenazas, centro y columnas cercanas se
+ * calculan para varias posiciones con cada instrucción (4 con AVX2, 8 con
+ * AVX-512). Las posiciones que sobran al final del lote van por la vía escalar.
+ *
+ * Necesita --add-modules jdk.incubator.vector al compilar y al ejecutar;
+ * BatchEvaluator.create() recurre a ScalarBatchEvaluator si no está.
+ */
+public class VectorBatchEvaluator implements BatchEvaluator {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    // Desplazamientos horizontales y diagonales (la vertical se trata aparte)
+    private static final int[] LINE_SHIFTS = {Bitboard.H1, Bitboard.H1 - 1, Bitboard.H1 + 1};
+
+    @Override
+    public void evaluate(long[] own, long[] opp, long[] scores, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector o = LongVector.fromArray(SPECIES, own, i);
+            LongVector p = LongVector.fromArray(SPECIES, opp, i);
+            LongVector empty = o.or(p).lanewise(VectorOperators.XOR, Bitboard.BOARD_MASK);
+
+            LongVector threats = bitCount(winningSpots(o, empty)).sub(bitCount(winningSpots(p, empty)));
+            LongVector center = bitCount(o.and(PositionEvaluator.CENTER_MASK))
+                .sub(bitCount(p.and(PositionEvaluator.CENTER_MASK)));
+            LongVector nearCenter = bitCount(o.and(PositionEvaluator.NEAR_CENTER_MASK))
+                .sub(bitCount(p.and(PositionEvaluator.NEAR_CENTER_MASK)));
+
+            threats.mul(PositionEvaluator.THREAT_WEIGHT)
+                .add(center.mul(PositionEvaluator.CENTER_WEIGHT))
+                .add(nearCenter.mul(PositionEvaluator.NEAR_CENTER_WEIGHT))
+                .max(-PositionEvaluator.MAX_EVAL + 1)
+                .min(PositionEvaluator.MAX_EVAL - 1)
+                .intoArray(scores, i);
+        }
+        for (; i < count; i++) {
+            scores[i] = PositionEvaluator.evaluate(own[i], opp[i]);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vectorial (" + SPECIES.length() + " carriles)";
+    }
+
+    /** Bitboard.winningSpots carril a carril */
+    private static LongVector winningSpots(LongVector own, LongVector empty) {
+        LongVector r = shl(own, 1).and(shl(own, 2)).and(shl(own, 3));
+        for (int d : LINE_SHIFTS) {
+            LongVector p = shl(own, d).and(shl(own, 2 * d));
+            r = r.or(p.and(shl(own, 3 * d))).or(p.and(shr(own, d)));
+            p = shr(own, d).and(shr(own, 2 * d));
+            r = r.or(p.and(shl(own, d))).or(p.and(shr(own, 3 * d)));
+        }
+        return r.and(empty);
+    }
+
+    private static LongVector shl(LongVector v, int n) {
+        return v.lanewise(VectorOperators.LSHL, n);
+    }
+
+    private static LongVector shr(LongVector v, int n) {
+        return v.lanewise(VectorOperators.LSHR, n);
+    }
+
+    private static LongVector bitCount(LongVector v) {
+        return v.lanewise(VectorOperators.BIT_COUNT);
+    }
+}
@@ -0,0 +1,228 @@
+package com.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Temporizador compartido del servidor: una rueda de tiempo (hashed timing
+ * wheel) con un único hilo, en lugar de un java.util.Timer (y su hilo) por
+ * partida.
+ *
+ * La rueda tiene WHEEL_SIZE casillas de TICK_MS cada una; una tarea va a la
+ * casilla de su instante con las vueltas que le faltan, así que programar y
+ * cancelar son O(1) y el hilo solo mira una casilla por tick. La precisión es
+ * de un tick: suficiente para la cuenta atrás, los latidos, los cursores y las
+ * invitaciones caducadas.
+ *
+ * Las tareas se ejecutan en el hilo de la rueda, así que tienen que ser
+ * cortas (enviar mensajes, cambiar estado); nada de cálculos del bot.
+ *
+ * Uso: WheelTimer.shared().schedule(tarea, 4, TimeUnit.SECONDS) devuelve un
+ * Timeout con cancel().
+ */
+public class WheelTimer {
+
+    public static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 512; // Potencia de 2: la casilla sale con una máscara
+
+    private static final WheelTimer SHARED = new WheelTimer();
+
+    /** Una tarea programada; cancel() es O(1): la casilla la descarta al pasar */
+    public static final class Timeout {
+        private static final int WAITING = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private final WheelTimer timer;
+        private final Runnable task;
+        private final long periodNanos; // 0 si es de una sola vez
+        private long deadline;          // En nanos desde startTime
+        private long remainingRounds;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        // Lista doble de su casilla (solo la toca el hilo de la rueda)
+        private Timeout next, prev;
+        private Bucket bucket;
+
+        private Timeout(WheelTimer timer, Runnable task, long deadline, long periodNanos) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        /** @return false si ya se había ejecutado o cancelado */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) return false;
+            timer.pending.decrementAndGet();
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() { return state.get() == CANCELLED; }
+        public boolean isExpired() { return state.get() == EXPIRED; }
+    }
+
+    private static final class Bucket {
+        private Timeout head, tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) return;
+            if (timeout.prev != null) timeout.prev.next = timeout.next; else head = timeout.next;
+            if (timeout.next != null) timeout.next.prev = timeout.prev; else tail = timeout.prev;
+            timeout.next = timeout.prev = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+    private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+    private final long startTime = System.nanoTime();
+    // Los demás hilos solo tocan estas colas; las casillas son del hilo de la rueda
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private long tick = 0;
+
+    // Métricas
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private volatile long lastTickLagNanos = 0;
+    private volatile long maxTickLagNanos = 0;
+
+    WheelTimer() {
+        for (int i = 0; i < WHEEL_SIZE; i++) wheel[i] = new Bucket();
+        Thread worker = BotPlayer.daemonThreads("timer-wheel-").newThread(this::run);
+        worker.start();
+    }
+
+    public static WheelTimer shared() {
+        return SHARED;
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return add(new Timeout(this, task, now() + Math.max(0, unit.toNanos(delay)), 0));
+    }
+
+    /**
+     * Repite la tarea cada period desde initialDelay. Cada ejecución se
+     * programa desde el instante teórico de la anterior, así que el ritmo
+     * medio no se desvía aunque un tick llegue tarde.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        long periodNanos = Math.max(1, unit.toNanos(period));
+        return add(new Timeout(this, task, now() + Math.max(0, unit.toNanos(initialDelay)), periodNanos));
+    }
+
+    /** Tareas programadas que aún no se han ejecutado ni cancelado */
+    public long getPendingTimers() { return pending.get(); }
+    public long getExpiredTimers() { return expired.get(); }
+    /** Retraso del último tick sobre su hora teórica, y el máximo visto (ms) */
+    public double getLastTickLagMs() { return lastTickLagNanos / 1e6; }
+    public double getMaxTickLagMs() { return maxTickLagNanos / 1e6; }
+
+    private Timeout add(Timeout timeout) {
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    private long now() {
+        return System.nanoTime() - startTime;
+    }
+
+    private void run() {
+        while (true) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleep = deadline - now();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            long lag = Math.max(0, now() - deadline);
+            lastTickLagNanos = lag;
+            if (lag > maxTickLagNanos) maxTickLagNanos = lag;
+
+            removeCancelled();
+            transferAdded();
+            expire(wheel[(int) (tick & (WHEEL_SIZE - 1))]);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() == Timeout.WAITING) place(timeout);
+        }
+    }
+
+    // Casilla y vueltas según el deadline (antes de procesar la casilla de este
+    // tick); lo que ya ha vencido va al tick actual
+    private void place(Timeout timeout) {
+        long targetTick = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos - 1);
+        timeout.remainingRounds = (targetTick - tick) / WHEEL_SIZE;
+        wheel[(int) (targetTick & (WHEEL_SIZE - 1))].add(timeout);
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                bucket.remove(timeout);
+                if (timeout.periodNanos > 0) {
+                    runPeriodic(timeout);
+                } else if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+                    pending.decrementAndGet();
+                    expired.incrementAndGet();
+                    runTask(timeout);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    // Las periódicas siguen WAITING (se pueden cancelar) y vuelven a la rueda
+    private void runPeriodic(Timeout timeout) {
+        if (timeout.state.get() != Timeout.WAITING) return;
+        expired.incrementAndGet();
+        runTask(timeout);
+        if (timeout.state.get() == Timeout.WAITING) {
+            // Se coloca en el siguiente tick, cuando esta casilla ya está recorrida
+            timeout.deadline += timeout.periodNanos;
+            added.add(timeout);
+        }
+    }
+
+    private void runTask(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (Exception e) {
+            // Una tarea con problemas no puede parar la rueda
+            System.err.println("Error en tarea del temporizador: " + e.getMessage());
+        }
+    }
+}
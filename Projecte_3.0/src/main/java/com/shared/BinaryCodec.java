@@ -0,0 +1,530 @@
+package com.shared;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Formato binario compacto para los mensajes frecuentes de la partida.
+ *
+ * Cada frame empieza con un byte de tipo. Los enteros van como varint (las
+ * coordenadas, redondeadas a píxel y en zigzag), el tablero en 11 bytes (2
+ * bits por casilla) y las casillas sueltas en un byte (columna << 3 | fila).
+ *
+ * Los jugadores se nombran por su índice en la última foto completa
+ * (serverData con seq) que ha pasado por este códec; un nombre que no está en
+ * la tabla va escrito entero. Por eso cada conexión necesita su propia
+ * instancia y los frames se tienen que enviar en el orden en que se codifican.
+ *
+ * Cualquier mensaje con otra forma (lobby, invitaciones, errores, campos
+ * nuevos...) viaja como JSON dentro de un frame de tipo T_JSON, así el códec
+ * no tiene que conocer todos los mensajes.
+ */
+public class BinaryCodec implements MessageCodec {
+
+    static final int T_JSON = 0;
+    static final int T_SERVER_DATA = 1;
+    static final int T_SERVER_PATCH = 2;
+    static final int T_CURSOR_UPDATE = 3;
+    static final int T_COUNTDOWN = 4;
+    static final int T_MOUSE_MOVING = 5;
+    static final int T_DRAG_PIECE = 6;
+    static final int T_PLAY = 7;
+
+    private static final List<String> STATUSES = List.of("waiting", "countdown", "playing", "win", "draw");
+    private static final List<String> CELLS = List.of(" ", "R", "Y");
+    private static final int BOARD_BYTES = (Bitboard.CELLS * 2 + 7) / 8;
+    private static final int NO_CELL = 0xFF;
+
+    // Campos presentes en un serverPatch
+    private static final int P_CELLS = 1;
+    private static final int P_STATUS = 2;
+    private static final int P_TURN = 4;
+    private static final int P_WINNER = 8;
+    private static final int P_LAST_MOVE = 16;
+    private static final int P_WIN_LINE = 32;
+
+    // Campos presentes en cada cursor de un cursorUpdate
+    private static final int C_MOUSE = 1;
+    private static final int C_DRAG = 2;
+    private static final int C_DRAGGING = 4;
+
+    // Jugadores de la última foto completa: el índice + 1 es su id en el cable
+    private List<String> names = new ArrayList<>();
+
+    @Override
+    public String getProtocol() {
+        return BINARY_PROTOCOL;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    /**
+     * Un mensaje ya codificado con una tabla de nombres concreta. Lo que se
+     * reparte a varias conexiones (los dos jugadores, los espectadores) casi
+     * siempre las encuentra con la misma tabla, así que basta con codificarlo
+     * una vez (ver encode(message, previous)).
+     */
+    public static final class Encoded {
+        private final List<String> namesBefore;
+        private final List<String> namesAfter;
+        private final ByteBuffer payload;
+
+        private Encoded(List<String> namesBefore, List<String> namesAfter, ByteBuffer payload) {
+            this.namesBefore = namesBefore;
+            this.namesAfter = namesAfter;
+            this.payload = payload.asReadOnlyBuffer();
+        }
+
+        /** Vista propia del contenido, como JsonFrame.json() */
+        public ByteBuffer payload() {
+            return payload.duplicate();
+        }
+    }
+
+    /**
+     * Como encode(message), pero si previous se codificó con la misma tabla de
+     * nombres que tiene ahora este códec se reutiliza tal cual, y la tabla
+     * queda como la dejó aquella codificación. Las tablas no se modifican
+     * nunca (una foto nueva pone otra), así que se pueden compartir.
+     */
+    public synchronized Encoded encode(JSONObject message, Encoded previous) {
+        if (previous != null && previous.namesBefore.equals(names)) {
+            names = previous.namesAfter;
+            return previous;
+        }
+        List<String> before = names;
+        ByteBuffer payload = encode(message);
+        return new Encoded(before, names, payload);
+    }
+
+    @Override
+    public synchronized ByteBuffer encode(JSONObject message) {
+        Writer out = new Writer();
+        try {
+            if (encodeKnown(message, out)) return out.toBuffer();
+        } catch (RuntimeException e) {
+            // Forma inesperada: se envía como JSON
+        }
+        out = new Writer();
+        out.write(T_JSON);
+        out.writeBytes(message.toString().getBytes(StandardCharsets.UTF_8));
+        return out.toBuffer();
+    }
+
+    private boolean encodeKnown(JSONObject message, Writer out) {
+        switch (message.optString("type")) {
+            case "serverData":
+                if (!message.has("seq")) return false; // Estado del lobby: va como JSON
+                encodeServerData(message, out);
+                return true;
+            case "serverPatch":
+                encodeServerPatch(message, out);
+                return true;
+            case "cursorUpdate":
+                encodeCursorUpdate(message, out);
+                return true;
+            case "countdown":
+                onlyKeys(message, "type", "count");
+                out.write(T_COUNTDOWN);
+                out.writeVarint(message.getInt("count"));
+                return true;
+            case "clientMouseMoving":
+                onlyKeys(message, "type", "x", "y");
+                out.write(T_MOUSE_MOVING);
+                out.writeCoordinate(message.getDouble("x"));
+                out.writeCoordinate(message.getDouble("y"));
+                return true;
+            case "clientDragPiece":
+                onlyKeys(message, "type", "isDragging", "x", "y", "pieceColor");
+                out.write(T_DRAG_PIECE);
+                out.write(message.getBoolean("isDragging") ? 1 : 0);
+                out.writeCoordinate(message.getDouble("x"));
+                out.writeCoordinate(message.getDouble("y"));
+                out.writeString(message.getString("pieceColor"));
+                return true;
+            case "clientPlay":
+                onlyKeys(message, "type", "column");
+                out.write(T_PLAY);
+                out.write(message.getInt("column"));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void encodeServerData(JSONObject message, Writer out) {
+        onlyKeys(message, "type", "seq", "clientsList", "objectsList", "game");
+        JSONObject game = message.getJSONObject("game");
+        onlyKeys(game, "status", "turn", "winner", "lastMove", "board", "winLine");
+
+        out.write(T_SERVER_DATA);
+        out.writeVarint(message.getLong("seq"));
+        out.write(code(STATUSES, game.getString("status")));
+
+        // La tabla nueva solo sustituye a la anterior si todo el mensaje se ha podido codificar
+        List<String> newNames = new ArrayList<>();
+        JSONArray clients = message.getJSONArray("clientsList");
+        out.write(clients.length());
+        for (int i = 0; i < clients.length(); i++) {
+            JSONObject client = clients.getJSONObject(i);
+            onlyKeys(client, "name", "color", "role", "mouseX", "mouseY");
+            out.writeString(client.getString("name"));
+            out.writeString(client.getString("color"));
+            out.writeString(client.getString("role"));
+            out.writeCoordinate(client.getDouble("mouseX"));
+            out.writeCoordinate(client.getDouble("mouseY"));
+            newNames.add(client.getString("name"));
+        }
+
+        writeName(out, newNames, game.getString("turn"));
+        writeName(out, newNames, game.getString("winner"));
+        out.write(game.has("lastMove") ? cell(game.getJSONObject("lastMove")) : NO_CELL);
+        writeBoard(out, game.getJSONArray("board"));
+        writeCells(out, game.optJSONArray("winLine"));
+
+        names = newNames;
+    }
+
+    private void encodeServerPatch(JSONObject message, Writer out) {
+        onlyKeys(message, "type", "seq", "game");
+        JSONObject game = message.getJSONObject("game");
+        onlyKeys(game, "cells", "status", "turn", "winner", "lastMove", "winLine");
+
+        int flags = (game.has("cells") ? P_CELLS : 0) | (game.has("status") ? P_STATUS : 0)
+                  | (game.has("turn") ? P_TURN : 0) | (game.has("winner") ? P_WINNER : 0)
+                  | (game.has("lastMove") ? P_LAST_MOVE : 0) | (game.has("winLine") ? P_WIN_LINE : 0);
+        out.write(T_SERVER_PATCH);
+        out.writeVarint(message.getLong("seq"));
+        out.write(flags);
+
+        if ((flags & P_CELLS) != 0) {
+            JSONArray cells = game.getJSONArray("cells");
+            out.write(cells.length());
+            for (int i = 0; i < cells.length(); i++) {
+                JSONObject cell = cells.getJSONObject(i);
+                out.write(cell(cell));
+                out.write(code(CELLS, cell.getString("v")));
+            }
+        }
+        if ((flags & P_STATUS) != 0) out.write(code(STATUSES, game.getString("status")));
+        if ((flags & P_TURN) != 0) writeName(out, names, game.getString("turn"));
+        if ((flags & P_WINNER) != 0) writeName(out, names, game.getString("winner"));
+        if ((flags & P_LAST_MOVE) != 0) out.write(cell(game.getJSONObject("lastMove")));
+        if ((flags & P_WIN_LINE) != 0) writeCells(out, game.getJSONArray("winLine"));
+    }
+
+    private void encodeCursorUpdate(JSONObject message, Writer out) {
+        onlyKeys(message, "type", "cursors");
+        JSONArray cursors = message.getJSONArray("cursors");
+        out.write(T_CURSOR_UPDATE);
+        out.write(cursors.length());
+        for (int i = 0; i < cursors.length(); i++) {
+            JSONObject cursor = cursors.getJSONObject(i);
+            onlyKeys(cursor, "player", "x", "y", "dragging", "dragX", "dragY", "color");
+            int flags = (cursor.has("x") ? C_MOUSE : 0) | (cursor.has("dragging") ? C_DRAG : 0)
+                      | (cursor.optBoolean("dragging") ? C_DRAGGING : 0);
+            writeName(out, names, cursor.getString("player"));
+            out.write(flags);
+            if ((flags & C_MOUSE) != 0) {
+                out.writeCoordinate(cursor.getDouble("x"));
+                out.writeCoordinate(cursor.getDouble("y"));
+            }
+            if ((flags & C_DRAG) != 0) {
+                out.writeCoordinate(cursor.getDouble("dragX"));
+                out.writeCoordinate(cursor.getDouble("dragY"));
+                out.writeString(cursor.getString("color"));
+            }
+        }
+    }
+
+    @Override
+    public synchronized JSONObject decode(ByteBuffer payload) {
+        Reader in = new Reader(payload);
+        int type = in.read();
+        JSONObject message = new JSONObject();
+        switch (type) {
+            case T_JSON:
+                return new JSONObject(in.readRemainingString());
+            case T_SERVER_DATA:
+                return decodeServerData(in);
+            case T_SERVER_PATCH:
+                return decodeServerPatch(in);
+            case T_CURSOR_UPDATE:
+                return decodeCursorUpdate(in);
+            case T_COUNTDOWN:
+                message.put("type", "countdown");
+                message.put("count", in.readVarint());
+                return message;
+            case T_MOUSE_MOVING:
+                message.put("type", "clientMouseMoving");
+                message.put("x", in.readCoordinate());
+                message.put("y", in.readCoordinate());
+                return message;
+            case T_DRAG_PIECE:
+                message.put("type", "clientDragPiece");
+                message.put("isDragging", in.read() != 0);
+                message.put("x", in.readCoordinate());
+                message.put("y", in.readCoordinate());
+                message.put("pieceColor", in.readString());
+                return message;
+            case T_PLAY:
+                message.put("type", "clientPlay");
+                message.put("column", in.read());
+                return message;
+            default:
+                throw new IllegalArgumentException("Tipo de mensaje binario desconocido: " + type);
+        }
+    }
+
+    private JSONObject decodeServerData(Reader in) {
+        JSONObject message = new JSONObject();
+        message.put("type", "serverData");
+        message.put("seq", in.readVarint());
+        JSONObject game = new JSONObject();
+        game.put("status", STATUSES.get(in.read()));
+
+        List<String> newNames = new ArrayList<>();
+        JSONArray clients = new JSONArray();
+        int count = in.read();
+        for (int i = 0; i < count; i++) {
+            JSONObject client = new JSONObject();
+            client.put("name", in.readString());
+            client.put("color", in.readString());
+            client.put("role", in.readString());
+            client.put("mouseX", in.readCoordinate());
+            client.put("mouseY", in.readCoordinate());
+            clients.put(client);
+            newNames.add(client.getString("name"));
+        }
+        message.put("clientsList", clients);
+        message.put("objectsList", new JSONArray()); // Fichas fijas: el cliente no las usa
+
+        game.put("turn", readName(in, newNames));
+        game.put("winner", readName(in, newNames));
+        int lastMove = in.read();
+        if (lastMove != NO_CELL) game.put("lastMove", cellJson(lastMove));
+        game.put("board", readBoard(in));
+        JSONArray winLine = readCells(in);
+        if (!winLine.isEmpty()) game.put("winLine", winLine);
+        message.put("game", game);
+
+        names = newNames;
+        return message;
+    }
+
+    private JSONObject decodeServerPatch(Reader in) {
+        JSONObject message = new JSONObject();
+        message.put("type", "serverPatch");
+        message.put("seq", in.readVarint());
+        int flags = in.read();
+
+        JSONObject game = new JSONObject();
+        if ((flags & P_CELLS) != 0) {
+            JSONArray cells = new JSONArray();
+            int count = in.read();
+            for (int i = 0; i < count; i++) {
+                JSONObject cell = cellJson(in.read());
+                cell.put("v", CELLS.get(in.read()));
+                cells.put(cell);
+            }
+            game.put("cells", cells);
+        }
+        if ((flags & P_STATUS) != 0) game.put("status", STATUSES.get(in.read()));
+        if ((flags & P_TURN) != 0) game.put("turn", readName(in, names));
+        if ((flags & P_WINNER) != 0) game.put("winner", readName(in, names));
+        if ((flags & P_LAST_MOVE) != 0) game.put("lastMove", cellJson(in.read()));
+        if ((flags & P_WIN_LINE) != 0) game.put("winLine", readCells(in));
+        message.put("game", game);
+        return message;
+    }
+
+    private JSONObject decodeCursorUpdate(Reader in) {
+        JSONArray cursors = new JSONArray();
+        int count = in.read();
+        for (int i = 0; i < count; i++) {
+            JSONObject cursor = new JSONObject();
+            cursor.put("player", readName(in, names));
+            int flags = in.read();
+            if ((flags & C_MOUSE) != 0) {
+                cursor.put("x", in.readCoordinate());
+                cursor.put("y", in.readCoordinate());
+            }
+            if ((flags & C_DRAG) != 0) {
+                cursor.put("dragging", (flags & C_DRAGGING) != 0);
+                cursor.put("dragX", in.readCoordinate());
+                cursor.put("dragY", in.readCoordinate());
+                cursor.put("color", in.readString());
+            }
+            cursors.put(cursor);
+        }
+        JSONObject message = new JSONObject();
+        message.put("type", "cursorUpdate");
+        message.put("cursors", cursors);
+        return message;
+    }
+
+    // ---- Piezas comunes ----
+
+    private static void onlyKeys(JSONObject json, String... allowed) {
+        Set<String> keys = Set.of(allowed);
+        for (String key : json.keySet()) {
+            if (!keys.contains(key)) throw new IllegalArgumentException("Campo sin formato binario: " + key);
+        }
+    }
+
+    private static int code(List<String> values, String value) {
+        int code = values.indexOf(value);
+        if (code < 0) throw new IllegalArgumentException("Valor sin código: " + value);
+        return code;
+    }
+
+    private static int cell(JSONObject move) {
+        int col = move.getInt("col");
+        int row = move.getInt("row");
+        if (col < 0 || col >= Bitboard.COLS || row < 0 || row >= Bitboard.ROWS) {
+            throw new IllegalArgumentException("Casilla fuera del tablero");
+        }
+        return col << 3 | row;
+    }
+
+    private static JSONObject cellJson(int cell) {
+        JSONObject move = new JSONObject();
+        move.put("col", cell >>> 3);
+        move.put("row", cell & 7);
+        return move;
+    }
+
+    private static void writeName(Writer out, List<String> table, String name) {
+        int index = table.indexOf(name);
+        out.writeVarint(index + 1);
+        if (index < 0) out.writeString(name);
+    }
+
+    private static String readName(Reader in, List<String> table) {
+        int id = (int) in.readVarint();
+        return id == 0 ? in.readString() : table.get(id - 1);
+    }
+
+    private static void writeBoard(Writer out, JSONArray board) {
+        byte[] packed = new byte[BOARD_BYTES];
+        for (int row = 0; row < Bitboard.ROWS; row++) {
+            JSONArray cells = board.getJSONArray(row);
+            for (int col = 0; col < Bitboard.COLS; col++) {
+                int index = row * Bitboard.COLS + col;
+                packed[index >> 2] |= (byte) (code(CELLS, cells.getString(col)) << ((index & 3) * 2));
+            }
+        }
+        out.writeBytes(packed);
+    }
+
+    private static JSONArray readBoard(Reader in) {
+        byte[] packed = in.readBytes(BOARD_BYTES);
+        JSONArray board = new JSONArray();
+        for (int row = 0; row < Bitboard.ROWS; row++) {
+            JSONArray cells = new JSONArray();
+            for (int col = 0; col < Bitboard.COLS; col++) {
+                int index = row * Bitboard.COLS + col;
+                cells.put(CELLS.get((packed[index >> 2] >> ((index & 3) * 2)) & 3));
+            }
+            board.put(cells);
+        }
+        return board;
+    }
+
+    private static void writeCells(Writer out, JSONArray cells) {
+        int count = cells != null ? cells.length() : 0;
+        out.write(count);
+        for (int i = 0; i < count; i++) {
+            out.write(cell(cells.getJSONObject(i)));
+        }
+    }
+
+    private static JSONArray readCells(Reader in) {
+        JSONArray cells = new JSONArray();
+        int count = in.read();
+        for (int i = 0; i < count; i++) {
+            cells.put(cellJson(in.read()));
+        }
+        return cells;
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+        Writer() {
+            super(64);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        // Píxel entero en zigzag: los negativos pequeños también ocupan poco
+        void writeCoordinate(double value) {
+            long pixel = Math.round(value);
+            writeVarint((pixel << 1) ^ (pixel >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int read() {
+            return buffer.get() & 0xFF;
+        }
+
+        byte[] readBytes(int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+        }
+
+        long readCoordinate() {
+            long zigzag = readVarint();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        String readString() {
+            return new String(readBytes((int) readVarint()), StandardCharsets.UTF_8);
+        }
+
+        String readRemainingString() {
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+}
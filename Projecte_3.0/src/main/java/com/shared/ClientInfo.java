@@ -6,6 +6,7 @@ public class ClientInfo {
     private double mouseX;
     private double mouseY;
     private String role;
+    private boolean busy; // En el lobby: ya está jugando una partida
     private DragInfo dragInfo = new DragInfo();
     
     public ClientInfo() {}
@@ -26,6 +27,9 @@ public class ClientInfo {
     public String getRole() { return role; }
     public void setRole(String role) { this.role = role; }
     
+    public boolean isBusy() { return busy; }
+    public void setBusy(boolean busy) { this.busy = busy; }
+    
     // Getters y setters para DragInfo
     public DragInfo getDragInfo() { return dragInfo; }
     public void setDragInfo(DragInfo dragInfo) { this.dragInfo = dragInfo; }
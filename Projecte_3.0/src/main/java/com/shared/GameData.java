@@ -1,11 +1,14 @@
 package com.shared;
 
+import java.util.List;
+
 public class GameData {
     private String status;
     private String[][] board;
     private String turn;
     private Move lastMove;
     private String winner;
+    private List<Move> winLine;
     
     public GameData() {}
     
@@ -24,4 +27,8 @@ public class GameData {
     
     public String getWinner() { return winner; }
     public void setWinner(String winner) { this.winner = winner; }
+    
+    // Las 4 casillas ganadoras (vacío/null mientras nadie ha ganado)
+    public List<Move> getWinLine() { return winLine; }
+    public void setWinLine(List<Move> winLine) { this.winLine = winLine; }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.shared;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+
+/** Mensajes como texto JSON: el formato de siempre */
+public class JsonCodec implements MessageCodec {
+
+    @Override
+    public String getProtocol() {
+        return JSON_PROTOCOL;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return false;
+    }
+
+    @Override
+    public ByteBuffer encode(JSONObject message) {
+        return ByteBuffer.wrap(message.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public JSONObject decode(ByteBuffer payload) {
+        return new JSONObject(StandardCharsets.UTF_8.decode(payload).toString());
+    }
+}
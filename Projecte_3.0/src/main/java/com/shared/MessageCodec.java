@@ -0,0 +1,39 @@
+package com.shared;
+
+import java.nio.ByteBuffer;
+
+import org.json.JSONObject;
+
+/**
+ * Formato de los mensajes en el cable. El código del juego (GameSession,
+ * Main.handleServerMessage) sigue trabajando con JSONObject; el códec de cada
+ * conexión decide cómo viajan.
+ *
+ * Cliente y servidor lo acuerdan en el handshake con la cabecera
+ * Sec-WebSocket-Protocol: el cliente ofrece BINARY_PROTOCOL y JSON_PROTOCOL y
+ * el servidor elige. Un cliente antiguo que no envía la cabecera sigue con
+ * JSON en frames de texto.
+ *
+ * Una instancia por conexión: el códec binario recuerda los nombres de los
+ * jugadores de la última foto completa.
+ */
+public interface MessageCodec {
+
+    String JSON_PROTOCOL = "conecta4.json";
+    String BINARY_PROTOCOL = "conecta4.bin";
+
+    String getProtocol();
+
+    /** true si los mensajes van en frames binarios, false si van en frames de texto */
+    boolean isBinary();
+
+    /** Contenido del frame (UTF-8 en el códec JSON) */
+    ByteBuffer encode(JSONObject message);
+
+    JSONObject decode(ByteBuffer payload);
+
+    /** Códec para el protocolo acordado; JSON si no hay protocolo o no se conoce */
+    static MessageCodec forProtocol(String protocol) {
+        return BINARY_PROTOCOL.equals(protocol) ? new BinaryCodec() : new JsonCodec();
+    }
+}